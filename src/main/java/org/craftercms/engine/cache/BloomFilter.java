@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+/**
+ * Simple Bloom filter of strings, used to answer quickly that a path is definitely not in a set without looking it up.
+ * It uses double hashing of two independent 32-bit hashes of the string to get the bits of each element.
+ *
+ * <p>The filter is not thread-safe while elements are being added, but it can be read concurrently once it's
+ * published.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final int numBits;
+    private final int numHashes;
+
+    /**
+     * Creates a new filter sized for the given elements.
+     *
+     * @param expectedElements  the number of elements that will be added
+     * @param falsePositiveRate the max false positive rate when the expected elements have been added
+     */
+    public BloomFilter(int expectedElements, double falsePositiveRate) {
+        int elements = Math.max(1, expectedElements);
+        long optimalBits = (long) Math.ceil(-elements * Math.log(falsePositiveRate) / (LN2 * LN2));
+
+        numBits = (int) Math.max(Long.SIZE, Math.min(optimalBits, Integer.MAX_VALUE - Long.SIZE));
+        numHashes = Math.max(1, (int) Math.round((double) numBits / elements * LN2));
+        bits = new long[(numBits + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    public void add(String element) {
+        int hash1 = element.hashCode();
+        int hash2 = secondHash(element);
+
+        for (int i = 0; i < numHashes; i++) {
+            int bit = getBit(hash1, hash2, i);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns false if the element has definitely not been added, true if it might have been added.
+     */
+    public boolean mightContain(String element) {
+        int hash1 = element.hashCode();
+        int hash2 = secondHash(element);
+
+        for (int i = 0; i < numHashes; i++) {
+            int bit = getBit(hash1, hash2, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int getBit(int hash1, int hash2, int i) {
+        return ((hash1 + i * hash2) & Integer.MAX_VALUE) % numBits;
+    }
+
+    /**
+     * FNV-1a hash of the chars of the string, which is independent of {@link String#hashCode()}.
+     */
+    private static int secondHash(String element) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < element.length(); i++) {
+            hash ^= element.charAt(i);
+            hash *= 0x01000193;
+        }
+
+        // Never 0, so the hashes of an element don't all point to the same bit
+        return hash | 1;
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent loads of the same missing cache key, so that only one thread executes the loader while the
+ * rest wait for its result (single-flight), and keeps statistics of the loads.
+ *
+ * <p>The {@link CacheTemplate} already locks the key while the loader is executed, so concurrent misses don't load
+ * the same object twice, but the other threads wait for the lock without any limit or visibility. With
+ * {@link #getObject(CacheTemplate, Context, CachingOptions, Callback, Object...)} the whole lookup and store of the
+ * cache template is coalesced: the load is only finished after the object is in the cache, so a thread that misses
+ * the cache right before that finds the load still in flight, and one that misses it right after finds the object
+ * when the cache template looks it up again.</p>
+ *
+ * <p>Threads only wait for the load of another thread up to a max time, after which they execute the loader
+ * themselves without going through the cache template (which would make them wait for the key lock again), so a
+ * stuck load doesn't block every request that needs the same object.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class CacheLoadCoalescer {
+
+    public static final String STAT_LOADS = "loads";
+    public static final String STAT_COALESCED_LOADS = "coalescedLoads";
+    public static final String STAT_IN_FLIGHT_LOADS = "inFlightLoads";
+    public static final String STAT_TIMED_OUT_WAITS = "timedOutWaits";
+
+    public static final long DEFAULT_MAX_WAIT_TIME = TimeUnit.SECONDS.toMillis(30);
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheLoadCoalescer.class);
+
+    protected final ConcurrentMap<Object, CompletableFuture<Object>> inFlightLoads;
+    protected final LongAdder loads;
+    protected final LongAdder coalescedLoads;
+    protected final LongAdder timedOutWaits;
+    protected volatile long maxWaitTime;
+
+    public CacheLoadCoalescer() {
+        inFlightLoads = new ConcurrentHashMap<>();
+        loads = new LongAdder();
+        coalescedLoads = new LongAdder();
+        timedOutWaits = new LongAdder();
+        maxWaitTime = DEFAULT_MAX_WAIT_TIME;
+    }
+
+    /**
+     * Sets the max time in milliseconds a thread waits for the load of another thread before executing the loader
+     * itself.
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * Returns the object from the cache, or loads it and puts it in the cache if it's not there. Concurrent misses
+     * of the same key are coalesced, including the store of the object in the cache.
+     *
+     * @param cacheTemplate     the cache template
+     * @param context           the context (its ID and cache version are part of the key)
+     * @param cachingOptions    the caching options used when the object is loaded, can be null
+     * @param loader            the loader that retrieves the object
+     * @param keyElements       the elements that conform the rest of the key
+     *
+     * @return the cached or loaded object
+     */
+    public <T> T getObject(CacheTemplate cacheTemplate, Context context, CachingOptions cachingOptions,
+                           Callback<T> loader, Object... keyElements) {
+        T item = getIfCached(cacheTemplate, context, cachingOptions, keyElements);
+        if (item != null) {
+            return item;
+        }
+
+        return load(Arrays.asList(context.getId(), context.getCacheVersion(), Arrays.asList(keyElements)),
+                    () -> getFromTemplate(cacheTemplate, context, cachingOptions, loader, keyElements), loader);
+    }
+
+    /**
+     * Returns the object if it's already in the cache, without loading it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getIfCached(CacheTemplate cacheTemplate, Context context, CachingOptions cachingOptions,
+                             Object... keyElements) {
+        try {
+            return (T) getFromTemplate(cacheTemplate, context, cachingOptions, () -> {
+                throw CacheMissException.INSTANCE;
+            }, keyElements);
+        } catch (RuntimeException e) {
+            if (e == CacheMissException.INSTANCE || e.getCause() == CacheMissException.INSTANCE) {
+                return null;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Executes the loader for the key formed by the context and the key elements, or waits for the result of the load
+     * if another thread is already executing it.
+     *
+     * @param context       the context (its ID and cache version are part of the key)
+     * @param loader        the loader that retrieves the object
+     * @param keyElements   the elements that conform the rest of the key
+     *
+     * @return the loaded object
+     */
+    public <T> T load(Context context, Callback<T> loader, Object... keyElements) {
+        return load(Arrays.asList(context.getId(), context.getCacheVersion(), Arrays.asList(keyElements)), loader);
+    }
+
+    /**
+     * Executes the loader for the key, or waits for the result of the load if another thread is already
+     * executing it.
+     *
+     * @param key       the key of the object
+     * @param loader    the loader that retrieves the object
+     *
+     * @return the loaded object
+     */
+    public <T> T load(Object key, Callback<T> loader) {
+        return load(key, loader, loader);
+    }
+
+    /**
+     * Executes the loader for the key, or waits for the result of the load if another thread is already
+     * executing it. If the wait times out, the timeout loader is executed instead.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T load(Object key, Callback<T> loader, Callback<T> timeoutLoader) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+
+        if (inFlightLoad != null) {
+            coalescedLoads.increment();
+
+            try {
+                return (T) waitFor(inFlightLoad);
+            } catch (TimeoutException e) {
+                timedOutWaits.increment();
+
+                logger.warn("Load of cache key {} took more than {} ms, loading it again", key, maxWaitTime);
+
+                return timeoutLoader.execute();
+            }
+        }
+
+        loads.increment();
+
+        try {
+            T result = loader.execute();
+            load.complete(result);
+
+            return result;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(key, load);
+        }
+    }
+
+    /**
+     * Returns the number of loads actually executed.
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * Returns the number of loads that waited for the result of another thread instead of being executed.
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.sum();
+    }
+
+    /**
+     * Returns the number of threads that stopped waiting for the load of another thread because it took too long.
+     */
+    public long getTimedOutWaitCount() {
+        return timedOutWaits.sum();
+    }
+
+    /**
+     * Returns the number of loads being currently executed.
+     */
+    public int getInFlightLoadCount() {
+        return inFlightLoads.size();
+    }
+
+    /**
+     * Returns the load statistics as a map, useful for REST responses.
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put(STAT_LOADS, getLoadCount());
+        stats.put(STAT_COALESCED_LOADS, getCoalescedLoadCount());
+        stats.put(STAT_IN_FLIGHT_LOADS, getInFlightLoadCount());
+        stats.put(STAT_TIMED_OUT_WAITS, getTimedOutWaitCount());
+
+        return stats;
+    }
+
+    protected Object waitFor(CompletableFuture<Object> load) throws TimeoutException {
+        try {
+            return load.get(maxWaitTime, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Interrupted while waiting for the load of a cache key", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    protected <T> T getFromTemplate(CacheTemplate cacheTemplate, Context context, CachingOptions cachingOptions,
+                                    Callback<T> loader, Object... keyElements) {
+        if (cachingOptions != null) {
+            return cacheTemplate.getObject(context, cachingOptions, loader, keyElements);
+        } else {
+            return cacheTemplate.getObject(context, loader, keyElements);
+        }
+    }
+
+    /**
+     * Thrown by the loader used to check if an item is already cached. It's a singleton without stack trace since
+     * it's only used for control flow.
+     */
+    private static class CacheMissException extends RuntimeException {
+
+        private static final CacheMissException INSTANCE = new CacheMissException();
+
+        private CacheMissException() {
+            super("Item not in cache", null, false, false);
+        }
+
+    }
+
+}
@@ -144,7 +144,7 @@ public class CacheWarmingAwareContentStoreAdapterDecorator implements ContentSto
 
     protected <T> T executeIfNotPreloadedOrIfExistsInPreloadedPaths(PreloadedFoldersAwareContext contextWrapper,
                                                                     String path, Supplier<T> actualCall) {
-        PreloadedFolder preloadedAncestor = findPreloadedAncestor(contextWrapper.getPreloadedFolders(), path);
+        PreloadedFolder preloadedAncestor = findPreloadedAncestor(contextWrapper.getPreloadedFolderIndex(), path);
         if (preloadedAncestor != null) {
             Boolean exists = preloadedAncestor.exists(path);
             // Don't proceed if path is preloaded and doesn't exist (null means the path's level wasn't preloaded)
@@ -158,11 +158,8 @@ public class CacheWarmingAwareContentStoreAdapterDecorator implements ContentSto
         return actualCall.get();
     }
 
-    protected PreloadedFolder findPreloadedAncestor(List<PreloadedFolder> preloadedFolders, String path) {
-        return preloadedFolders.stream()
-                               .filter(folder -> path.startsWith(folder.getPath()))
-                               .findFirst()
-                               .orElse(null);
+    protected PreloadedFolder findPreloadedAncestor(PreloadedFolderIndex preloadedFolderIndex, String path) {
+        return preloadedFolderIndex.findAncestor(path);
     }
 
 }
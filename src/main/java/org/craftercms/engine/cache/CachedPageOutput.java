@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a rendered page response (status, content type, headers and body), as stored by the
+ * {@link PageOutputCache}.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class CachedPageOutput {
+
+    protected final int status;
+    protected final String contentType;
+    protected final Map<String, List<String>> headers;
+    protected final byte[] content;
+    protected final long creationTime;
+
+    public CachedPageOutput(int status, String contentType, Map<String, List<String>> headers, byte[] content) {
+        this.status = status;
+        this.contentType = contentType;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.content = content;
+        this.creationTime = System.currentTimeMillis();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    /**
+     * Returns true if the output is older than the specified max age.
+     *
+     * @param maxAge the max age in milliseconds, or a value less or equal than 0 if the output never expires
+     */
+    public boolean isExpired(long maxAge) {
+        return maxAge > 0 && System.currentTimeMillis() - creationTime > maxAge;
+    }
+
+    /**
+     * Writes the cached status, headers and content to the specified response.
+     *
+     * @param response the response to write to
+     *
+     * @throws IOException if an error occurs while writing the content
+     */
+    public void writeTo(HttpServletResponse response) throws IOException {
+        response.setStatus(status);
+
+        if (StringUtils.isNotEmpty(contentType)) {
+            response.setContentType(contentType);
+        }
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            boolean first = true;
+            for (String value : header.getValue()) {
+                if (first) {
+                    response.setHeader(header.getKey(), value);
+                    first = false;
+                } else {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+        }
+
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+    }
+
+    @Override
+    public String toString() {
+        return "CachedPageOutput{" +
+               "status=" + status +
+               ", contentType='" + contentType + '\'' +
+               ", headers=" + headers +
+               ", contentLength=" + content.length +
+               '}';
+    }
+
+}
@@ -17,19 +17,25 @@ package org.craftercms.engine.cache;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
 import org.craftercms.core.service.Item;
 import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.CacheUtils;
+import org.craftercms.engine.util.concurrent.RateLimiter;
 import org.craftercms.engine.util.store.decorators.DecoratedStoreAdapterContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -43,9 +49,14 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
 
     private static final Logger logger = LoggerFactory.getLogger(ContentStoreAdapterPreloadedFoldersBasedCacheWarmer.class);
 
+    public static final String PRELOADED_FOLDERS_SNAPSHOT_NAME = "preloadedFolders";
+
     protected boolean warmUpEnabled;
     protected Map<String, Integer> descriptorPreloadFolders;
     protected Map<String, Integer> contentPreloadFolders;
+    protected SiteSnapshotStore snapshotStore;
+    protected ForkJoinPool warmUpPool;
+    protected RateLimiter storeRateLimiter;
 
     /**
      * Sets if warm up is enabled
@@ -73,6 +84,30 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
         this.contentPreloadFolders = CacheUtils.parsePreloadFoldersList(contentPreloadFolders);
     }
 
+    /**
+     * Sets the store used to save the listings of the preloaded folders, so that the next time the site context is
+     * created for the same content version the folders can be preloaded without listing them again.
+     */
+    public void setSnapshotStore(SiteSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Sets the pool used to preload the sub-folders in parallel. If not set, or if its parallelism is 1, the folders
+     * are preloaded one at a time by the thread that performs the warm up.
+     */
+    public void setWarmUpPool(ForkJoinPool warmUpPool) {
+        this.warmUpPool = warmUpPool;
+    }
+
+    /**
+     * Sets the max number of calls per second made to the content store adapters by the warm up of all sites, to
+     * limit the I/O load. 0 for no limit.
+     */
+    public void setMaxStoreCallsPerSecond(int maxStoreCallsPerSecond) {
+        this.storeRateLimiter = maxStoreCallsPerSecond > 0 ? new RateLimiter(maxStoreCallsPerSecond) : null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -85,15 +120,148 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
             throw new IllegalStateException("PreloadedFoldersAwareContext expected but not found");
         }
 
+        List<PreloadedFolderListing> listings = getListingsFromSnapshot();
+        if (listings != null) {
+            for (PreloadedFolderListing listing : listings) {
+                preloadFolder(contextWrapper, listing, preloadedFolders);
+            }
+        } else {
+            listings = new ArrayList<>();
+
+            for (Map.Entry<String, Integer> entry : getContentPreloadFolders().entrySet()) {
+                preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), true, preloadedFolders, listings);
+            }
+
+            for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
+                preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), false, preloadedFolders, listings);
+            }
+
+            // Only save complete listings, a failed folder will be listed again next time
+            if (listings.size() == preloadedFolders.size()) {
+                saveListingsToSnapshot(listings);
+            }
+        }
+
+        contextWrapper.setPreloadedFolders(preloadedFolders);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean warmUpPaths(Context context, Collection<String> changedPaths) {
+        PreloadedFoldersAwareContext contextWrapper = findPreloadedFoldersAwareContext(context);
+
+        if (contextWrapper == null) {
+            throw new IllegalStateException("PreloadedFoldersAwareContext expected but not found");
+        }
+
+        List<PreloadedFolder> currentFolders = contextWrapper.getPreloadedFolders();
+        List<PreloadedFolder> preloadedFolders = new ArrayList<>();
+
         for (Map.Entry<String, Integer> entry : getContentPreloadFolders().entrySet()) {
-            preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), true, preloadedFolders);
+            PreloadedFolder folder = updatePreloadedFolder(contextWrapper, entry.getKey(), entry.getValue(), true,
+                                                           currentFolders, changedPaths);
+            if (folder == null) {
+                return false;
+            }
+
+            preloadedFolders.add(folder);
         }
 
         for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
-            preloadFolder(contextWrapper, entry.getKey(), entry.getValue(), false, preloadedFolders);
+            PreloadedFolder folder = updatePreloadedFolder(contextWrapper, entry.getKey(), entry.getValue(), false,
+                                                           currentFolders, changedPaths);
+            if (folder == null) {
+                return false;
+            }
+
+            preloadedFolders.add(folder);
         }
 
         contextWrapper.setPreloadedFolders(preloadedFolders);
+
+        return true;
+    }
+
+    /**
+     * Preloads again the changed paths that are under a preloaded folder, and returns a copy of the folder with the
+     * created paths added to the descendants and the deleted ones removed. Returns null if the folder wasn't
+     * preloaded by the last warm up.
+     */
+    protected PreloadedFolder updatePreloadedFolder(PreloadedFoldersAwareContext contextWrapper, String path,
+                                                    int depth, boolean contentOnly,
+                                                    List<PreloadedFolder> currentFolders,
+                                                    Collection<String> changedPaths) {
+        path = ContentStoreUtils.normalizePath(path);
+
+        String folderPath = StringUtils.appendIfMissing(path, "/");
+        PreloadedFolder currentFolder = currentFolders.stream()
+                                                      .filter(folder -> folder.getPath().equals(folderPath))
+                                                      .filter(folder -> folder.getDepth() == depth)
+                                                      .findFirst()
+                                                      .orElse(null);
+        if (currentFolder == null) {
+            logger.info("Folder [{}] with depth {} wasn't preloaded by the last warm up", path, depth);
+            return null;
+        }
+
+        Context actualContext = contextWrapper.getActualContext();
+        Set<String> descendants = new TreeSet<>(currentFolder.getDescendants());
+        Set<String> changedFolders = new TreeSet<>();
+
+        for (String changedPath : changedPaths) {
+            String normalizedPath = ContentStoreUtils.normalizePath(changedPath);
+            // Skip the paths outside the folder or below the preload depth
+            if (!normalizedPath.startsWith(currentFolder.getPath()) || currentFolder.exists(normalizedPath) == null) {
+                continue;
+            }
+
+            acquireStorePermit();
+
+            Item item = actualContext.getStoreAdapter().findItem(actualContext, null, normalizedPath, !contentOnly);
+            if (item != null) {
+                logger.debug("Preloading changed path [{}]", normalizedPath);
+
+                if (contentOnly && !item.isFolder()) {
+                    acquireStorePermit();
+
+                    actualContext.getStoreAdapter().findContent(actualContext, null, normalizedPath);
+                }
+
+                descendants.add(normalizedPath);
+
+                // The parent folders could also be new
+                for (String parent = getParentPath(normalizedPath); parent.length() > path.length();
+                     parent = getParentPath(parent)) {
+                    descendants.add(parent);
+                }
+            } else {
+                logger.debug("Removing deleted path [{}] from preloaded folder [{}]", normalizedPath, path);
+
+                descendants.remove(normalizedPath);
+                descendants.removeIf(descendant -> descendant.startsWith(normalizedPath + "/"));
+            }
+
+            changedFolders.add(getParentPath(normalizedPath));
+        }
+
+        // The listings of the parent folders were evicted with the changed paths
+        for (String changedFolder : changedFolders) {
+            acquireStorePermit();
+
+            if (!contentOnly) {
+                actualContext.getStoreAdapter().findItem(actualContext, null, changedFolder, true);
+            }
+
+            actualContext.getStoreAdapter().findItems(actualContext, null, changedFolder);
+        }
+
+        return new PreloadedFolder(path, depth, descendants);
+    }
+
+    protected String getParentPath(String path) {
+        return StringUtils.defaultIfEmpty(StringUtils.substringBeforeLast(path, "/"), "/");
     }
 
     protected PreloadedFoldersAwareContext findPreloadedFoldersAwareContext(Context context) {
@@ -107,7 +275,8 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
     }
 
     protected void preloadFolder(PreloadedFoldersAwareContext contextWrapper, String path, int depth,
-                                 boolean contentOnly, List<PreloadedFolder> preloadedFolders) {
+                                 boolean contentOnly, List<PreloadedFolder> preloadedFolders,
+                                 List<PreloadedFolderListing> listings) {
         path = ContentStoreUtils.normalizePath(path);
 
         Context actualContext = contextWrapper.getActualContext();
@@ -122,11 +291,16 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
             throw new IllegalStateException("Can't preload folder " + path + ": it doesn't exist or is not a folder");
         }
 
-        Set<String> preloadedDescendants = new TreeSet<>();
+        PreloadedFolderListing listing = new PreloadedFolderListing(path, depth, contentOnly);
+        // The children can be preloaded by several threads at the same time
+        listing.setDescendants(new ConcurrentSkipListSet<>());
+        listing.setFolders(new ConcurrentSkipListSet<>());
 
         try {
-            preloadFolderChildren(actualContext, path, depth, contentOnly, preloadedDescendants);
-            preloadedFolders.add(new PreloadedFolder(path, depth, preloadedDescendants));
+            preloadFolderChildren(actualContext, path, depth, contentOnly, listing.getDescendants(),
+                                  listing.getFolders());
+            preloadedFolders.add(new PreloadedFolder(path, depth, listing.getDescendants()));
+            listings.add(listing);
         } catch (Exception e) {
             logger.error("Error while preloading folder [{}]", path, e);
         }
@@ -138,17 +312,38 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
     }
 
     protected void preloadFolderChildren(Context context, String path, int depth, boolean contentOnly,
-                                         Set<String> preloadedPaths) {
-        if (depth == ContentStoreService.UNLIMITED_TREE_DEPTH || depth >= 1) {
-            if (depth >= 1) {
-                depth--;
+                                         Set<String> preloadedPaths, Set<String> preloadedFolderPaths) {
+        if (isParallelWarmUp()) {
+            warmUpPool.invoke(new PreloadFolderTask(context, path, depth, contentOnly, preloadedPaths,
+                                                    preloadedFolderPaths));
+        } else {
+            List<String> childFolders = preloadChildren(context, path, depth, contentOnly, preloadedPaths,
+                                                        preloadedFolderPaths);
+            for (String childFolder : childFolders) {
+                preloadFolderChildren(context, childFolder, getChildDepth(depth), contentOnly, preloadedPaths,
+                                      preloadedFolderPaths);
             }
+        }
+    }
+
+    /**
+     * Preloads the direct children of a folder, and returns the paths of the child folders whose children should
+     * be preloaded next.
+     */
+    protected List<String> preloadChildren(Context context, String path, int depth, boolean contentOnly,
+                                           Set<String> preloadedPaths, Set<String> preloadedFolderPaths) {
+        List<String> childFolders = new ArrayList<>();
+
+        if (depth == ContentStoreService.UNLIMITED_TREE_DEPTH || depth >= 1) {
+            acquireStorePermit();
 
             List<Item> children = context.getStoreAdapter().findItems(context, null, path);
             if (CollectionUtils.isNotEmpty(children)) {
                 for (Item item : children) {
                     String childPath = item.getUrl();
 
+                    acquireStorePermit();
+
                     if (item.isFolder()) {
                         logger.debug("Preloading folder [{}]", childPath);
                         if (!contentOnly) {
@@ -156,8 +351,9 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
                         }
 
                         preloadedPaths.add(childPath);
+                        preloadedFolderPaths.add(childPath);
 
-                        preloadFolderChildren(context, childPath, depth, contentOnly, preloadedPaths);
+                        childFolders.add(childPath);
                     } else if (contentOnly) {
                         logger.debug("Preloading content [{}]", childPath);
                         context.getStoreAdapter().findContent(context, null, childPath);
@@ -172,6 +368,147 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
                 }
             }
         }
+
+        return childFolders;
+    }
+
+    protected int getChildDepth(int depth) {
+        return depth == ContentStoreService.UNLIMITED_TREE_DEPTH ? depth : depth - 1;
+    }
+
+    protected boolean isParallelWarmUp() {
+        return warmUpPool != null && warmUpPool.getParallelism() > 1;
+    }
+
+    protected void acquireStorePermit() {
+        if (storeRateLimiter != null) {
+            storeRateLimiter.acquire();
+        }
+    }
+
+    /**
+     * Preloads a folder using the listing from a previous preload, without listing the folder again.
+     */
+    protected void preloadFolder(PreloadedFoldersAwareContext contextWrapper, PreloadedFolderListing listing,
+                                 List<PreloadedFolder> preloadedFolders) {
+        String path = listing.getPath();
+        int depth = listing.getDepth();
+
+        Context actualContext = contextWrapper.getActualContext();
+        StopWatch stopWatch = new StopWatch();
+
+        logger.info("Starting preload of folder [{}] with depth {} from snapshot", path, depth);
+
+        stopWatch.start();
+
+        try {
+            actualContext.getStoreAdapter().findItem(actualContext, null, path, true);
+
+            if (isChildrenListed(listing, path)) {
+                acquireStorePermit();
+
+                actualContext.getStoreAdapter().findItems(actualContext, null, path);
+            }
+
+            if (isParallelWarmUp()) {
+                warmUpPool.invoke(new PreloadDescendantsTask(actualContext, listing,
+                                                             new ArrayList<>(listing.getDescendants())));
+            } else {
+                listing.getDescendants().forEach(descendant -> preloadDescendant(actualContext, listing, descendant));
+            }
+
+            preloadedFolders.add(new PreloadedFolder(path, depth, listing.getDescendants()));
+        } catch (Exception e) {
+            logger.error("Error while preloading folder [{}]", path, e);
+        }
+
+        stopWatch.stop();
+
+        logger.info("Preload of folder [{}] with depth {} completed in {} secs", path, depth,
+                    stopWatch.getTime(TimeUnit.SECONDS));
+    }
+
+    protected void preloadDescendant(Context context, PreloadedFolderListing listing, String descendant) {
+        acquireStorePermit();
+
+        boolean folder = listing.getFolders().contains(descendant);
+        if (!listing.isContentOnly()) {
+            context.getStoreAdapter().findItem(context, null, descendant, true);
+        } else if (!folder) {
+            context.getStoreAdapter().findContent(context, null, descendant);
+        }
+
+        // Also cache the children list of the folder, like preloadChildren does when the folder is listed
+        if (folder && isChildrenListed(listing, descendant)) {
+            acquireStorePermit();
+
+            context.getStoreAdapter().findItems(context, null, descendant);
+        }
+    }
+
+    /**
+     * Returns true if the children of the folder are within the depth of the listing, so they were listed when the
+     * listing was created.
+     */
+    protected boolean isChildrenListed(PreloadedFolderListing listing, String folder) {
+        int depth = listing.getDepth();
+        if (depth == ContentStoreService.UNLIMITED_TREE_DEPTH) {
+            return true;
+        }
+
+        String root = listing.getPath();
+        if (folder.equals(root)) {
+            return depth >= 1;
+        }
+
+        // The number of slashes in the path relative to the root is the level of the folder
+        String relativePath = root.equals("/") ? folder : StringUtils.removeStart(folder, root);
+
+        return StringUtils.countMatches(relativePath, '/') < depth;
+    }
+
+    /**
+     * Returns the listings saved in the snapshot of the current site, only if they match the folders that are
+     * currently configured to be preloaded.
+     */
+    protected List<PreloadedFolderListing> getListingsFromSnapshot() {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (snapshotStore == null || siteContext == null) {
+            return null;
+        }
+
+        PreloadedFolderListing[] snapshot = snapshotStore.load(siteContext, PRELOADED_FOLDERS_SNAPSHOT_NAME,
+                                                               PreloadedFolderListing[].class);
+        if (snapshot == null) {
+            return null;
+        }
+
+        List<PreloadedFolderListing> listings = Arrays.asList(snapshot);
+        Map<String, Integer> contentPreloadFolders = getContentPreloadFolders();
+        Map<String, Integer> descriptorPreloadFolders = getDescriptorPreloadFolders();
+
+        if (listings.size() == contentPreloadFolders.size() + descriptorPreloadFolders.size() &&
+            isInListings(contentPreloadFolders, true, listings) &&
+            isInListings(descriptorPreloadFolders, false, listings)) {
+            return listings;
+        } else {
+            logger.debug("The preload folders of site '{}' changed, ignoring snapshot", siteContext.getSiteName());
+
+            return null;
+        }
+    }
+
+    protected boolean isInListings(Map<String, Integer> preloadFolders, boolean contentOnly,
+                                   List<PreloadedFolderListing> listings) {
+        return preloadFolders.entrySet().stream().allMatch(entry -> listings.stream().anyMatch(
+            listing -> listing.isFor(ContentStoreUtils.normalizePath(entry.getKey()), entry.getValue(), contentOnly)));
+    }
+
+    protected void saveListingsToSnapshot(List<PreloadedFolderListing> listings) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (snapshotStore != null && siteContext != null) {
+            snapshotStore.save(siteContext, PRELOADED_FOLDERS_SNAPSHOT_NAME, listings);
+        }
     }
 
     protected Map<String, Integer> getDescriptorPreloadFolders() {
@@ -192,4 +529,113 @@ public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmer implements Cont
         }
     }
 
+    /**
+     * Base task for the parallel warm up, that runs with the site context of the thread that created it, so that the
+     * store adapters can use the site (e.g. to coalesce cache loads).
+     */
+    protected abstract static class SiteAwareAction extends RecursiveAction {
+
+        protected final SiteContext siteContext;
+
+        protected SiteAwareAction() {
+            this.siteContext = SiteContext.getCurrent();
+        }
+
+        @Override
+        protected void compute() {
+            // A pool thread can run a task of another site while it waits for its own subtasks
+            SiteContext previous = SiteContext.getCurrent();
+            boolean switchContext = siteContext != null && previous != siteContext;
+
+            if (switchContext) {
+                SiteContext.setCurrent(siteContext);
+            }
+
+            try {
+                doCompute();
+            } finally {
+                if (switchContext) {
+                    if (previous != null) {
+                        SiteContext.setCurrent(previous);
+                    } else {
+                        SiteContext.clear();
+                    }
+                }
+            }
+        }
+
+        protected abstract void doCompute();
+
+    }
+
+    /**
+     * Task that preloads the children of a folder, and then forks a new task for each child folder.
+     */
+    protected class PreloadFolderTask extends SiteAwareAction {
+
+        protected final Context context;
+        protected final String path;
+        protected final int depth;
+        protected final boolean contentOnly;
+        protected final Set<String> preloadedPaths;
+        protected final Set<String> preloadedFolderPaths;
+
+        public PreloadFolderTask(Context context, String path, int depth, boolean contentOnly,
+                                 Set<String> preloadedPaths, Set<String> preloadedFolderPaths) {
+            this.context = context;
+            this.path = path;
+            this.depth = depth;
+            this.contentOnly = contentOnly;
+            this.preloadedPaths = preloadedPaths;
+            this.preloadedFolderPaths = preloadedFolderPaths;
+        }
+
+        @Override
+        protected void doCompute() {
+            List<String> childFolders = preloadChildren(context, path, depth, contentOnly, preloadedPaths,
+                                                        preloadedFolderPaths);
+            if (!childFolders.isEmpty()) {
+                List<PreloadFolderTask> subtasks = new ArrayList<>(childFolders.size());
+                for (String childFolder : childFolders) {
+                    subtasks.add(new PreloadFolderTask(context, childFolder, getChildDepth(depth), contentOnly,
+                                                       preloadedPaths, preloadedFolderPaths));
+                }
+
+                invokeAll(subtasks);
+            }
+        }
+
+    }
+
+    /**
+     * Task that preloads the descendants of a folder listed in a snapshot, splitting them in halves until there are
+     * few enough to be preloaded by a single thread.
+     */
+    protected class PreloadDescendantsTask extends SiteAwareAction {
+
+        protected static final int MAX_DESCENDANTS_PER_TASK = 32;
+
+        protected final Context context;
+        protected final PreloadedFolderListing listing;
+        protected final List<String> descendants;
+
+        public PreloadDescendantsTask(Context context, PreloadedFolderListing listing, List<String> descendants) {
+            this.context = context;
+            this.listing = listing;
+            this.descendants = descendants;
+        }
+
+        @Override
+        protected void doCompute() {
+            int size = descendants.size();
+            if (size <= MAX_DESCENDANTS_PER_TASK) {
+                descendants.forEach(descendant -> preloadDescendant(context, listing, descendant));
+            } else {
+                invokeAll(new PreloadDescendantsTask(context, listing, descendants.subList(0, size / 2)),
+                          new PreloadDescendantsTask(context, listing, descendants.subList(size / 2, size)));
+            }
+        }
+
+    }
+
 }
@@ -16,15 +16,18 @@
 package org.craftercms.engine.cache;
 
 import org.apache.commons.collections4.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
+import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.util.CacheUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -74,25 +77,47 @@ public class ContentStoreServiceTreeBasedContextCacheWarmer implements ContextCa
     @Override
     public void warmUpCache(Context context) {
         for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
-            String treeRoot = entry.getKey();
-            int depth = entry.getValue();
-            StopWatch stopWatch = new StopWatch();
+            preloadTree(context, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean warmUpPaths(Context context, Collection<String> changedPaths) {
+        for (Map.Entry<String, Integer> entry : getDescriptorPreloadFolders().entrySet()) {
+            String treeRoot = ContentStoreUtils.normalizePath(entry.getKey());
+            String treeRootPrefix = StringUtils.appendIfMissing(treeRoot, "/");
+
+            // Only the trees that contain a changed path were evicted
+            if (changedPaths.stream()
+                            .map(ContentStoreUtils::normalizePath)
+                            .anyMatch(path -> path.equals(treeRoot) || path.startsWith(treeRootPrefix))) {
+                preloadTree(context, entry.getKey(), entry.getValue());
+            }
+        }
 
-            logger.info("Starting preload of tree [{}] with depth {}", treeRoot, depth);
+        return true;
+    }
 
-            stopWatch.start();
+    protected void preloadTree(Context context, String treeRoot, int depth) {
+        StopWatch stopWatch = new StopWatch();
 
-            try {
-                contentStoreService.getTree(context, treeRoot, depth);
-            } catch (Exception e) {
-                logger.error("Error while preloading tree at [{}]", treeRoot, e);
-            }
+        logger.info("Starting preload of tree [{}] with depth {}", treeRoot, depth);
 
-            stopWatch.stop();
+        stopWatch.start();
 
-            logger.info("Preload of tree [{}] with depth {} completed in {} secs", treeRoot, depth,
-                        stopWatch.getTime(TimeUnit.SECONDS));
+        try {
+            contentStoreService.getTree(context, treeRoot, depth);
+        } catch (Exception e) {
+            logger.error("Error while preloading tree at [{}]", treeRoot, e);
         }
+
+        stopWatch.stop();
+
+        logger.info("Preload of tree [{}] with depth {} completed in {} secs", treeRoot, depth,
+                    stopWatch.getTime(TimeUnit.SECONDS));
     }
 
     protected Map<String, Integer> getDescriptorPreloadFolders() {
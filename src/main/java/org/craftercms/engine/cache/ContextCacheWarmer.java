@@ -17,6 +17,8 @@ package org.craftercms.engine.cache;
 
 import org.craftercms.core.service.Context;
 
+import java.util.Collection;
+
 /**
  * Helper class that's used to warm up the cache of a context. Normally several of these will be used by the
  * {@link SiteCacheWarmer} to do a full warm up.
@@ -33,4 +35,15 @@ public interface ContextCacheWarmer {
      */
     void warmUpCache(Context context);
 
+    /**
+     * Warms up again the entries of the changed paths in the cache associated to the context, after they have been
+     * evicted.
+     *
+     * @param context       the context
+     * @param changedPaths  the paths that were created, updated or deleted
+     *
+     * @return false if the changes can't be warmed up incrementally and a full warm up is needed
+     */
+    boolean warmUpPaths(Context context, Collection<String> changedPaths);
+
 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.core.util.ContentStoreUtils;
+import org.craftercms.engine.event.SiteContextDestroyedEvent;
+import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.ApplicationListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the content store paths requested by the site requests, keeping per site a bounded {@link TopKSketch} of
+ * the hot paths, so that they can be preloaded first by the cache warm up. The paths are sampled by the services
+ * that serve them (like the {@link org.craftercms.engine.service.SiteItemService}), so that every request is counted
+ * and not only the ones that miss the cache.
+ *
+ * <p>The hot paths are saved periodically with the {@link SiteSnapshotStore}, and when they're loaded again after a
+ * restart their counts are halved, so that the old traffic weighs less than the new one. They're loaded in the
+ * background, never by the request threads, and when the context of a site is destroyed they're saved and dropped
+ * from memory, so the sites that are deleted don't keep their paths.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class HotPathSampler implements InitializingBean, DisposableBean,
+                                       ApplicationListener<SiteContextDestroyedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotPathSampler.class);
+
+    public static final String HOT_PATHS_SNAPSHOT_NAME = "hotPaths";
+
+    private static final String ITEM_PREFIX = "item:";
+    private static final String CONTENT_PREFIX = "content:";
+
+    protected boolean enabled;
+    protected int sampleRate;
+    protected int capacity;
+    protected int persistInterval;
+    protected SiteSnapshotStore snapshotStore;
+    protected ScheduledExecutorService persistExecutor;
+    protected final Map<String, TopKSketch> sketches;
+    protected final Set<String> loadingSiteNames;
+    protected final Set<String> loadedSiteNames;
+    protected ScheduledFuture<?> persistTask;
+
+    public HotPathSampler() {
+        sketches = new ConcurrentHashMap<>();
+        loadingSiteNames = ConcurrentHashMap.newKeySet();
+        loadedSiteNames = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Sets if the requested paths should be sampled.
+     */
+    @Required
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the rate of sampling: 1 out of every {@code sampleRate} requested paths is counted.
+     */
+    @Required
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Sets the max number of paths counted per site.
+     */
+    @Required
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the interval, in seconds, at which the hot paths are saved. 0 to save them only on shutdown.
+     */
+    @Required
+    public void setPersistInterval(int persistInterval) {
+        this.persistInterval = persistInterval;
+    }
+
+    @Required
+    public void setSnapshotStore(SiteSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    /**
+     * Sets the executor used to save and load the hot paths.
+     */
+    @Required
+    public void setPersistExecutor(ScheduledExecutorService persistExecutor) {
+        this.persistExecutor = persistExecutor;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled && (sampleRate < 1 || capacity < 1)) {
+            throw new IllegalStateException("The sample rate and capacity of the hot paths must be greater than 0");
+        }
+
+        if (enabled && persistInterval > 0 && snapshotStore.isEnabled()) {
+            persistTask = persistExecutor.scheduleWithFixedDelay(this::persist, persistInterval, persistInterval,
+                                                                 TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (persistTask != null) {
+            persistTask.cancel(false);
+        }
+
+        persist();
+    }
+
+    /**
+     * Samples a path that was requested as an item (with its descriptor).
+     */
+    public void sampleItem(String path) {
+        sample(ITEM_PREFIX, path);
+    }
+
+    /**
+     * Samples a path that was requested as content.
+     */
+    public void sampleContent(String path) {
+        sample(CONTENT_PREFIX, path);
+    }
+
+    /**
+     * Returns the hot paths of the site, from the most to the least requested.
+     *
+     * @param siteName  the name of the site
+     * @param max       the max number of paths to return
+     */
+    public List<HotPath> getHotPaths(String siteName, int max) {
+        List<HotPath> hotPaths = new ArrayList<>();
+        if (enabled) {
+            getSketch(siteName).getTop(max).forEach((key, count) -> {
+                boolean content = key.startsWith(CONTENT_PREFIX);
+                String path = StringUtils.substringAfter(key, ":");
+
+                hotPaths.add(new HotPath(path, content, count));
+            });
+        }
+
+        return hotPaths;
+    }
+
+    /**
+     * Saves the hot paths of all the sites sampled so far.
+     */
+    public void persist() {
+        sketches.forEach(this::save);
+    }
+
+    /**
+     * Saves and drops the hot paths of the site, they're loaded again when the site is requested.
+     */
+    @Override
+    public void onApplicationEvent(SiteContextDestroyedEvent event) {
+        String siteName = event.getSiteContext().getSiteName();
+        TopKSketch sketch = sketches.remove(siteName);
+
+        if (sketch != null) {
+            save(siteName, sketch);
+        }
+    }
+
+    protected void sample(String prefix, String path) {
+        if (!enabled || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return;
+        }
+
+        // Only count the paths requested by the users, not the ones loaded by warm ups (including the warm up renders,
+        // which override the context) or jobs
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null && RequestContext.getCurrent() != null && !siteContext.isContextOverridden()) {
+            String siteName = siteContext.getSiteName();
+            TopKSketch sketch = sketches.get(siteName);
+
+            if (sketch != null) {
+                sketch.add(prefix + ContentStoreUtils.normalizePath(path));
+            } else {
+                startSketchLoad(siteName);
+            }
+        }
+    }
+
+    /**
+     * Loads the saved hot paths of the site in the background. The samples taken while they're loaded are discarded.
+     */
+    protected void startSketchLoad(String siteName) {
+        if (loadingSiteNames.add(siteName)) {
+            try {
+                persistExecutor.execute(() -> {
+                    try {
+                        getSketch(siteName);
+                    } finally {
+                        loadingSiteNames.remove(siteName);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                loadingSiteNames.remove(siteName);
+            }
+        }
+    }
+
+    protected TopKSketch getSketch(String siteName) {
+        return sketches.computeIfAbsent(siteName, this::loadSketch);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected TopKSketch loadSketch(String siteName) {
+        TopKSketch sketch = new TopKSketch(capacity);
+
+        // Only the counts saved before the startup are halved, not the ones saved when the site context was destroyed
+        boolean firstLoad = loadedSiteNames.add(siteName);
+
+        Map<String, Number> counts = snapshotStore.loadAnyVersion(siteName, HOT_PATHS_SNAPSHOT_NAME, Map.class);
+        if (counts != null) {
+            logger.debug("Loaded {} hot paths of site '{}'", counts.size(), siteName);
+
+            counts.forEach((key, count) -> sketch.add(key, firstLoad? Math.max(1, count.longValue() / 2) :
+                                                                    count.longValue()));
+        }
+
+        return sketch;
+    }
+
+    protected void save(String siteName, TopKSketch sketch) {
+        if (!enabled || !snapshotStore.isEnabled()) {
+            return;
+        }
+
+        try {
+            snapshotStore.saveAnyVersion(siteName, HOT_PATHS_SNAPSHOT_NAME, sketch.getTop(capacity));
+        } catch (Exception e) {
+            logger.warn("Unable to save hot paths of site '{}'", siteName, e);
+        }
+    }
+
+    /**
+     * A path that has been requested frequently.
+     */
+    public static class HotPath {
+
+        private final String path;
+        private final boolean content;
+        private final long count;
+
+        public HotPath(String path, boolean content, long count) {
+            this.path = path;
+            this.content = content;
+            this.count = count;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns true if the path was requested as content, false if it was requested as an item.
+         */
+        public boolean isContent() {
+            return content;
+        }
+
+        /**
+         * Returns the (estimated) number of times the path was sampled.
+         */
+        public long getCount() {
+            return count;
+        }
+
+    }
+
+}
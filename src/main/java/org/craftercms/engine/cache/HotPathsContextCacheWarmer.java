@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.ContentStoreUtils;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.store.decorators.DecoratedStoreAdapterContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ContextCacheWarmer} that preloads the paths most requested by the users of the site, as sampled by the
+ * {@link HotPathSampler}, so the warm up covers the real traffic even outside the preloaded folders. It should be
+ * the first of the cache warmers, so that the hot paths are warm as soon as possible.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class HotPathsContextCacheWarmer implements ContextCacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotPathsContextCacheWarmer.class);
+
+    protected boolean warmUpEnabled;
+    protected HotPathSampler hotPathSampler;
+    protected int maxPaths;
+
+    /**
+     * Sets if warm up is enabled
+     */
+    @Required
+    public void setWarmUpEnabled(boolean warmUpEnabled) {
+        this.warmUpEnabled = warmUpEnabled;
+    }
+
+    @Required
+    public void setHotPathSampler(HotPathSampler hotPathSampler) {
+        this.hotPathSampler = hotPathSampler;
+    }
+
+    /**
+     * Sets the max number of hot paths to preload per site.
+     */
+    @Required
+    public void setMaxPaths(int maxPaths) {
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warmUpCache(Context context) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (!warmUpEnabled || !hotPathSampler.isEnabled() || siteContext == null) {
+            return;
+        }
+
+        List<HotPathSampler.HotPath> hotPaths = hotPathSampler.getHotPaths(siteContext.getSiteName(), maxPaths);
+        if (hotPaths.isEmpty()) {
+            return;
+        }
+
+        StopWatch stopWatch = new StopWatch();
+
+        logger.info("Starting preload of {} hot paths", hotPaths.size());
+
+        stopWatch.start();
+
+        preloadHotPaths(context, hotPaths);
+
+        stopWatch.stop();
+
+        logger.info("Preload of {} hot paths completed in {} secs", hotPaths.size(),
+                    stopWatch.getTime(TimeUnit.SECONDS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean warmUpPaths(Context context, Collection<String> changedPaths) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (!warmUpEnabled || !hotPathSampler.isEnabled() || siteContext == null) {
+            return true;
+        }
+
+        Set<String> normalizedPaths = changedPaths.stream()
+                                                  .map(ContentStoreUtils::normalizePath)
+                                                  .collect(Collectors.toSet());
+        List<HotPathSampler.HotPath> changedHotPaths =
+            hotPathSampler.getHotPaths(siteContext.getSiteName(), maxPaths).stream()
+                          .filter(hotPath -> normalizedPaths.contains(hotPath.getPath()))
+                          .collect(Collectors.toList());
+
+        preloadHotPaths(context, changedHotPaths);
+
+        return true;
+    }
+
+    protected void preloadHotPaths(Context context, List<HotPathSampler.HotPath> hotPaths) {
+        // Go directly to the actual store adapter, like the requests that were sampled
+        Context actualContext = getActualContext(context);
+
+        for (HotPathSampler.HotPath hotPath : hotPaths) {
+            String path = hotPath.getPath();
+            try {
+                if (hotPath.isContent()) {
+                    logger.debug("Preloading hot content [{}]", path);
+                    actualContext.getStoreAdapter().findContent(actualContext, null, path);
+                } else {
+                    logger.debug("Preloading hot item [{}]", path);
+                    actualContext.getStoreAdapter().findItem(actualContext, null, path, true);
+                }
+            } catch (Exception e) {
+                logger.debug("Error while preloading hot path [{}]", path, e);
+            }
+        }
+    }
+
+    protected Context getActualContext(Context context) {
+        Context current = context;
+        while (current instanceof DecoratedStoreAdapterContext) {
+            if (current instanceof PreloadedFoldersAwareContext) {
+                return ((PreloadedFoldersAwareContext) current).getActualContext();
+            }
+
+            current = ((DecoratedStoreAdapterContext) current).getActualContext();
+        }
+
+        return context;
+    }
+
+}
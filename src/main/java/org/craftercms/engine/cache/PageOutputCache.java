@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.craftercms.commons.lang.RegexUtils;
+import org.craftercms.engine.event.CacheClearStartedEvent;
+import org.craftercms.engine.event.SiteContextDestroyedEvent;
+import org.craftercms.engine.event.SiteEvent;
+import org.craftercms.engine.mobile.UserAgentTemplateDetector;
+import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.security.CrafterPageAccessManager;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.TargetIdManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpMethod;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-site cache of the final rendered output of Crafter pages. Only the responses of anonymous GET requests are
+ * cached, and only for sites that have enabled it in their configuration. The key of each entry varies by request URI
+ * and query string, locale, current target ID, user agent template prefix and the current user roles.
+ *
+ * <p>All the entries of a site are dropped when the site cache is cleared or the site context is destroyed.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class PageOutputCache implements ApplicationListener<SiteEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageOutputCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES_PER_SITE = 1000;
+
+    protected boolean enabled;
+    protected int maxEntriesPerSite;
+    protected long maxAge;
+    protected TargetIdManager targetIdManager;
+    protected UserAgentTemplateDetector userAgentTemplateDetector;
+    protected CrafterPageAccessManager accessManager;
+    protected ConcurrentMap<String, Map<Object, CachedPageOutput>> siteCaches;
+
+    public PageOutputCache() {
+        maxEntriesPerSite = DEFAULT_MAX_ENTRIES_PER_SITE;
+        siteCaches = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets if the page output cache is enabled for this Engine instance. Each site still needs to enable it in its
+     * configuration.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the max number of rendered pages that can be cached per site. The least recently used entries are
+     * evicted first.
+     */
+    public void setMaxEntriesPerSite(int maxEntriesPerSite) {
+        this.maxEntriesPerSite = maxEntriesPerSite;
+    }
+
+    /**
+     * Sets the max time in seconds an entry can be served from the cache. 0 or less means entries are only dropped
+     * on cache clear.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge * 1000;
+    }
+
+    @Required
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
+    @Required
+    public void setUserAgentTemplateDetector(UserAgentTemplateDetector userAgentTemplateDetector) {
+        this.userAgentTemplateDetector = userAgentTemplateDetector;
+    }
+
+    @Required
+    public void setAccessManager(CrafterPageAccessManager accessManager) {
+        this.accessManager = accessManager;
+    }
+
+    /**
+     * Returns true if the output of the current request to a page can be cached: the cache is enabled for both the
+     * instance and the current site, the request is an anonymous GET and the URI is not excluded by the site. The
+     * output of the warm up renders is never cached, since it comes from a cache version that hasn't been switched.
+     *
+     * @param request the current request
+     */
+    public boolean isCacheable(HttpServletRequest request) {
+        if (!enabled || !HttpMethod.GET.matches(request.getMethod())) {
+            return false;
+        }
+
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext == null || siteContext.isFallback() || siteContext.isContextOverridden() ||
+            !SiteProperties.isPageOutputCacheEnabled()) {
+            return false;
+        }
+
+        String[] excludePatterns = SiteProperties.getPageOutputCacheExcludePatterns();
+        if (ArrayUtils.isNotEmpty(excludePatterns) && RegexUtils.matchesAny(request.getRequestURI(), excludePatterns)) {
+            return false;
+        }
+
+        return accessManager.isAnonymous();
+    }
+
+    /**
+     * Creates the key for the output of the current request.
+     *
+     * @param request   the current request
+     * @param locale    the locale the page is being rendered with
+     */
+    public Object createKey(HttpServletRequest request, Locale locale) {
+        String targetId = SiteProperties.isTargetingEnabled()? targetIdManager.getCurrentTargetId() : null;
+
+        return Arrays.asList(request.getRequestURI(), request.getQueryString(), locale, targetId,
+                             userAgentTemplateDetector.resolveAgentTemplatePrefix(request),
+                             accessManager.getCurrentRoles());
+    }
+
+    /**
+     * Returns the cached output for the given site and key, or null if there's none or if it has expired.
+     */
+    public CachedPageOutput get(String siteName, Object key) {
+        Map<Object, CachedPageOutput> cache = siteCaches.get(siteName);
+        if (cache != null) {
+            CachedPageOutput output = cache.get(key);
+            if (output != null) {
+                if (!output.isExpired(maxAge)) {
+                    logger.debug("Page output cache hit for site '{}' and key {}", siteName, key);
+
+                    return output;
+                }
+
+                cache.remove(key);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Caches the output for the given site and key.
+     */
+    public void put(String siteName, Object key, CachedPageOutput output) {
+        logger.debug("Caching page output {} for site '{}' and key {}", output, siteName, key);
+
+        siteCaches.computeIfAbsent(siteName, name -> createSiteCache()).put(key, output);
+    }
+
+    /**
+     * Drops all the cached outputs of the given site.
+     */
+    public void clear(String siteName) {
+        if (siteCaches.remove(siteName) != null) {
+            logger.debug("Page output cache cleared for site '{}'", siteName);
+        }
+    }
+
+    @Override
+    public void onApplicationEvent(SiteEvent event) {
+        if (event instanceof CacheClearStartedEvent || event instanceof SiteContextDestroyedEvent) {
+            clear(event.getSiteContext().getSiteName());
+        }
+    }
+
+    protected Map<Object, CachedPageOutput> createSiteCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<Object, CachedPageOutput>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedPageOutput> eldest) {
+                return size() > maxEntriesPerSite;
+            }
+
+        });
+    }
+
+}
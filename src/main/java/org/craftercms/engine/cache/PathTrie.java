@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Compact map of content store paths to values, where the paths share the nodes of their common parent folders.
+ * The names of the nodes are interned, so the same names in different folders (or sites) are stored only once, and
+ * the children of each node are kept in a sorted array. Lookups don't create any substrings of the path.
+ *
+ * <p>The trie is not thread-safe while it's being built, but it can be read concurrently once it's published.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+class PathTrie<T> {
+
+    private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+    private final Node<T> root;
+    private int size;
+
+    public PathTrie() {
+        root = new Node<>("");
+    }
+
+    /**
+     * Returns the number of paths in the trie.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Associates the value to the path.
+     *
+     * @param path  the path, absolute and normalized (no trailing slash)
+     * @param value the value, can't be null
+     */
+    public void put(String path, T value) {
+        Node<T> node = root;
+        int start = 1;
+        int length = path.length();
+
+        while (start < length) {
+            int end = getSegmentEnd(path, start);
+            node = node.getOrAddChild(path, start, end);
+            start = end + 1;
+        }
+
+        if (node.value == null) {
+            size++;
+        }
+
+        node.value = value;
+    }
+
+    /**
+     * Returns the value associated to the path, or null if there's none.
+     */
+    public T get(String path) {
+        Node<T> node = root;
+        int start = 1;
+        int length = path.length();
+
+        while (start < length && node != null) {
+            int end = getSegmentEnd(path, start);
+            node = node.getChild(path, start, end);
+            start = end + 1;
+        }
+
+        return node != null ? node.value : null;
+    }
+
+    public boolean contains(String path) {
+        return get(path) != null;
+    }
+
+    /**
+     * Returns the value of the closest ancestor of the path that has one (the path itself is not considered), or
+     * null if there's none.
+     */
+    public T getNearestAncestorValue(String path) {
+        Node<T> node = root;
+        T ancestorValue = null;
+        int start = 1;
+        int length = path.length();
+
+        while (start < length && node != null) {
+            if (node.value != null) {
+                ancestorValue = node.value;
+            }
+
+            int end = getSegmentEnd(path, start);
+            node = node.getChild(path, start, end);
+            start = end + 1;
+        }
+
+        return ancestorValue;
+    }
+
+    /**
+     * Calls the consumer with each path and value in the trie.
+     */
+    public void forEach(BiConsumer<String, T> consumer) {
+        forEach(root, new StringBuilder(), consumer);
+    }
+
+    /**
+     * Trims the arrays of children to their actual size, to free the memory reserved for new children. Should be
+     * called once all the paths have been added.
+     */
+    public void trim() {
+        trim(root);
+    }
+
+    private void forEach(Node<T> node, StringBuilder path, BiConsumer<String, T> consumer) {
+        int length = path.length();
+
+        if (node.value != null) {
+            consumer.accept(length > 0 ? path.toString() : "/", node.value);
+        }
+
+        for (int i = 0; i < node.childCount; i++) {
+            Node<T> child = node.children[i];
+
+            path.append('/').append(child.name);
+            forEach(child, path, consumer);
+            path.setLength(length);
+        }
+    }
+
+    private void trim(Node<T> node) {
+        if (node.children.length > node.childCount) {
+            Node<T>[] children = newArray(node.childCount);
+            System.arraycopy(node.children, 0, children, 0, node.childCount);
+
+            node.children = children;
+        }
+
+        for (int i = 0; i < node.childCount; i++) {
+            trim(node.children[i]);
+        }
+    }
+
+    private static int getSegmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+
+        return end >= 0 ? end : path.length();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newArray(int length) {
+        return length > 0 ? new Node[length] : (Node<T>[]) NO_CHILDREN;
+    }
+
+    private static final class Node<T> {
+
+        private final String name;
+        private Node<T>[] children;
+        private int childCount;
+        private T value;
+
+        private Node(String name) {
+            this.name = name;
+            this.children = newArray(0);
+        }
+
+        private Node<T> getChild(String path, int start, int end) {
+            int index = indexOf(path, start, end);
+
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node<T> getOrAddChild(String path, int start, int end) {
+            int index = indexOf(path, start, end);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            Node<T> child = new Node<>(path.substring(start, end).intern());
+            int insertionPoint = -(index + 1);
+
+            if (childCount == children.length) {
+                Node<T>[] newChildren = newArray(Math.max(4, childCount * 2));
+                System.arraycopy(children, 0, newChildren, 0, childCount);
+
+                children = newChildren;
+            }
+
+            System.arraycopy(children, insertionPoint, children, insertionPoint + 1, childCount - insertionPoint);
+            children[insertionPoint] = child;
+            childCount++;
+
+            return child;
+        }
+
+        /**
+         * Binary search of the child with the name in the given range of the path, returns
+         * {@code -(insertion point) - 1} if not found, like {@link java.util.Arrays#binarySearch}.
+         */
+        private int indexOf(String path, int start, int end) {
+            // Children are usually added in order, so check the last one first
+            if (childCount > 0 && compare(children[childCount - 1].name, path, start, end) < 0) {
+                return -(childCount + 1);
+            }
+
+            int low = 0;
+            int high = childCount - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(children[mid].name, path, start, end);
+
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+
+            return -(low + 1);
+        }
+
+        private static int compare(String name, String path, int start, int end) {
+            int length = end - start;
+            int min = Math.min(name.length(), length);
+
+            for (int i = 0; i < min; i++) {
+                int diff = name.charAt(i) - path.charAt(start + i);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+
+            return name.length() - length;
+        }
+
+    }
+
+}
@@ -18,25 +18,44 @@ package org.craftercms.engine.cache;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.core.service.ContentStoreService;
 
+import java.util.Collection;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
- * Represents a folder in the content store that has been preloaded in the cache.
+ * Represents a folder in the content store that has been preloaded in the cache. The preloaded descendants are kept
+ * in a {@link PathTrie}, with a {@link BloomFilter} in front to answer quickly for the paths that don't exist.
  *
  * @author avasquez
  * @since 3.1.4
  */
 public class PreloadedFolder {
 
+    private static final double DESCENDANTS_FILTER_FALSE_POSITIVE_RATE = 0.01;
+
     private String path;
     private int depth;
-    private Set<String> descendants;
+    private int pathDepth;
+    private PathTrie<Boolean> descendants;
+    private BloomFilter descendantsFilter;
 
-    public PreloadedFolder(String path, int depth, Set<String> descendants) {
+    public PreloadedFolder(String path, int depth, Collection<String> descendants) {
         this.path = StringUtils.appendIfMissing(path, "/");
         this.depth = depth;
-        this.descendants = descendants;
+        this.pathDepth = getPathDepth(this.path);
+        this.descendants = new PathTrie<>();
+        this.descendantsFilter = new BloomFilter(descendants != null ? descendants.size() : 0,
+                                                 DESCENDANTS_FILTER_FALSE_POSITIVE_RATE);
+
+        if (descendants != null) {
+            for (String descendant : descendants) {
+                this.descendants.put(descendant, Boolean.TRUE);
+                this.descendantsFilter.add(descendant);
+            }
+        }
+
+        this.descendants.trim();
     }
 
     /**
@@ -46,6 +65,23 @@ public class PreloadedFolder {
         return path;
     }
 
+    /**
+     * Returns the preload depth of the folder.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns a copy of the paths of the preloaded descendants.
+     */
+    public Set<String> getDescendants() {
+        Set<String> paths = new TreeSet<>();
+        descendants.forEach((descendant, value) -> paths.add(descendant));
+
+        return paths;
+    }
+
     /**
      * Returns:
      *
@@ -56,23 +92,20 @@ public class PreloadedFolder {
      * </ul>
      */
     public Boolean exists(String descendant) {
-        if (depth == ContentStoreService.UNLIMITED_TREE_DEPTH) {
-            return descendants.contains(descendant);
+        if (depth != ContentStoreService.UNLIMITED_TREE_DEPTH && getPathDepth(descendant) - pathDepth > depth) {
+            return null;
         } else {
-            int childDepth = getDepth(descendant);
-            if (childDepth > depth) {
-                return null;
-            } else {
-                return descendants.contains(descendant);
-            }
+            return descendantsFilter.mightContain(descendant) && descendants.contains(descendant);
         }
     }
 
-    private int getDepth(String child) {
-        String afterParentPath = StringUtils.substringAfter(child, path);
-        String[] pathComponents = afterParentPath.split("/");
+    /**
+     * Returns the number of folders in the path, without splitting it.
+     */
+    private static int getPathDepth(String path) {
+        int slashes = StringUtils.countMatches(path, '/');
 
-        return pathComponents.length;
+        return path.endsWith("/") ? slashes - 1 : slashes;
     }
 
     @Override
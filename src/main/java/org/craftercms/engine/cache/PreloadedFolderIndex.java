@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index of the {@link PreloadedFolder}s of a context by path, so that the preloaded ancestor of a path can be found
+ * without checking every folder.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+class PreloadedFolderIndex {
+
+    public static final PreloadedFolderIndex EMPTY = new PreloadedFolderIndex(Collections.emptyList());
+
+    private final List<PreloadedFolder> folders;
+    private final PathTrie<PreloadedFolder> foldersByPath;
+
+    public PreloadedFolderIndex(List<PreloadedFolder> folders) {
+        this.folders = Collections.unmodifiableList(folders);
+        this.foldersByPath = new PathTrie<>();
+
+        for (PreloadedFolder folder : folders) {
+            String path = StringUtils.defaultIfEmpty(StringUtils.removeEnd(folder.getPath(), "/"), "/");
+            // Like before, if the same folder is preloaded twice (e.g. with different depths) the first one is used
+            if (!foldersByPath.contains(path)) {
+                foldersByPath.put(path, folder);
+            }
+        }
+
+        foldersByPath.trim();
+    }
+
+    public List<PreloadedFolder> getFolders() {
+        return folders;
+    }
+
+    /**
+     * Returns the closest preloaded folder that contains the path, or null if the path isn't under any preloaded
+     * folder.
+     */
+    public PreloadedFolder findAncestor(String path) {
+        return foldersByPath.getNearestAncestorValue(path);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Listing of the descendants of a preloaded folder, saved in the site snapshot so that the folder can be preloaded
+ * again without walking the folder tree.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class PreloadedFolderListing {
+
+    private String path;
+    private int depth;
+    private boolean contentOnly;
+    private Set<String> descendants;
+    private Set<String> folders;
+
+    public PreloadedFolderListing() {
+        descendants = new TreeSet<>();
+        folders = new TreeSet<>();
+    }
+
+    public PreloadedFolderListing(String path, int depth, boolean contentOnly) {
+        this();
+        this.path = path;
+        this.depth = depth;
+        this.contentOnly = contentOnly;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Returns true if only the content of the files was preloaded, false if the descriptors were preloaded.
+     */
+    public boolean isContentOnly() {
+        return contentOnly;
+    }
+
+    public void setContentOnly(boolean contentOnly) {
+        this.contentOnly = contentOnly;
+    }
+
+    /**
+     * Returns the paths of all the preloaded descendants (files and folders).
+     */
+    public Set<String> getDescendants() {
+        return descendants;
+    }
+
+    public void setDescendants(Set<String> descendants) {
+        this.descendants = descendants;
+    }
+
+    /**
+     * Returns the paths of the descendants that are folders.
+     */
+    public Set<String> getFolders() {
+        return folders;
+    }
+
+    public void setFolders(Set<String> folders) {
+        this.folders = folders;
+    }
+
+    /**
+     * Returns true if this listing was done for the given folder, depth and type of preload.
+     */
+    public boolean isFor(String path, int depth, boolean contentOnly) {
+        return this.path.equals(path) && this.depth == depth && this.contentOnly == contentOnly;
+    }
+
+}
@@ -20,7 +20,6 @@ import org.craftercms.core.service.Context;
 import org.craftercms.core.store.ContentStoreAdapter;
 import org.craftercms.engine.util.store.decorators.DecoratedStoreAdapterContext;
 
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -42,18 +41,21 @@ class PreloadedFoldersAwareContext extends DecoratedStoreAdapterContext {
         this.cacheService = cacheService;
     }
 
-    @SuppressWarnings("unchecked")
     public List<PreloadedFolder> getPreloadedFolders() {
-        List<PreloadedFolder> folders = (List<PreloadedFolder>) cacheService.get(this, PRELOADED_FOLDERS_CACHE_KEY);
-        if (folders != null) {
-            return folders;
+        return getPreloadedFolderIndex().getFolders();
+    }
+
+    public PreloadedFolderIndex getPreloadedFolderIndex() {
+        PreloadedFolderIndex index = (PreloadedFolderIndex) cacheService.get(this, PRELOADED_FOLDERS_CACHE_KEY);
+        if (index != null) {
+            return index;
         } else {
-            return Collections.emptyList();
+            return PreloadedFolderIndex.EMPTY;
         }
     }
 
     public void setPreloadedFolders(List<PreloadedFolder> preloadedFolders) {
-        cacheService.put(this, PRELOADED_FOLDERS_CACHE_KEY, preloadedFolders);
+        cacheService.put(this, PRELOADED_FOLDERS_CACHE_KEY, new PreloadedFolderIndex(preloadedFolders));
     }
 
     @Override
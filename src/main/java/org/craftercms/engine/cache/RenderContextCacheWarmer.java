@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.ContentStoreUtils;
+import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@link ContextCacheWarmer} that renders the top pages of the site against the context being warmed up, so that
+ * everything loaded by the rendering (pages, components, navigation, script results, view resolution) is already in
+ * cache when the new cache is switched. The URLs are the ones configured for all sites, the ones configured by the
+ * site and, if there's a {@link HotPathSampler}, the pages most requested by the users.
+ *
+ * <p>Each URL is requested through the local server with a one-time token, which the
+ * {@link org.craftercms.engine.servlet.filter.SiteContextResolvingFilter} uses to resolve the site context and to
+ * override its context during the request. The output of the renders is discarded. It should be the last of the
+ * cache warmers, so that the renders find the content already preloaded.</p>
+ *
+ * <p>Only the sites that are ready are rendered: the warm up done while a site context is being created runs before
+ * the init script and maybe before the server accepts requests, so it's left to the other cache warmers.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class RenderContextCacheWarmer implements ContextCacheWarmer, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderContextCacheWarmer.class);
+
+    public static final String WARM_UP_TOKEN_HEADER_NAME = "X-Crafter-Warm-Up-Token";
+
+    private static final String DESCRIPTOR_EXTENSION = ".xml";
+    private static final String INDEX_PAGE_SUFFIX = "/index";
+    private static final int TOKEN_LENGTH = 32;
+
+    protected boolean warmUpEnabled;
+    protected boolean enabled;
+    protected String baseUrl;
+    protected String[] urls;
+    protected String pagesPath;
+    protected HotPathSampler hotPathSampler;
+    protected int maxLearnedUrls;
+    protected int timeout;
+    protected CloseableHttpClient httpClient;
+    protected final Map<String, WarmUp> warmUps;
+    protected final SecureRandom random;
+
+    public RenderContextCacheWarmer() {
+        warmUps = new ConcurrentHashMap<>();
+        random = new SecureRandom();
+    }
+
+    /**
+     * Sets if warm up is enabled
+     */
+    @Required
+    public void setWarmUpEnabled(boolean warmUpEnabled) {
+        this.warmUpEnabled = warmUpEnabled;
+    }
+
+    /**
+     * Sets if the pages should be rendered during the warm up.
+     */
+    @Required
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the URL used to make requests to the local server (e.g. {@code http://localhost:8080}). Required when the
+     * renders are enabled.
+     */
+    @Required
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = StringUtils.removeEnd(baseUrl, "/");
+    }
+
+    /**
+     * Sets the URLs rendered for all sites.
+     */
+    public void setUrls(String[] urls) {
+        this.urls = urls;
+    }
+
+    /**
+     * Sets the folder of the page descriptors, used to get the URLs of the hot pages.
+     */
+    @Required
+    public void setPagesPath(String pagesPath) {
+        this.pagesPath = pagesPath;
+    }
+
+    /**
+     * Sets the sampler of the hot paths, used to render the pages most requested by the users.
+     */
+    public void setHotPathSampler(HotPathSampler hotPathSampler) {
+        this.hotPathSampler = hotPathSampler;
+    }
+
+    /**
+     * Sets the max number of hot pages rendered per site.
+     */
+    @Required
+    public void setMaxLearnedUrls(int maxLearnedUrls) {
+        this.maxLearnedUrls = maxLearnedUrls;
+    }
+
+    /**
+     * Sets the timeout in seconds of each render.
+     */
+    @Required
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (enabled) {
+            if (StringUtils.isBlank(baseUrl)) {
+                throw new IllegalStateException("The base URL of the local server is required to render the pages " +
+                                                "during the cache warm up");
+            }
+
+            int timeoutMillis = (int) TimeUnit.SECONDS.toMillis(timeout);
+            RequestConfig requestConfig = RequestConfig.custom()
+                                                       .setConnectTimeout(timeoutMillis)
+                                                       .setConnectionRequestTimeout(timeoutMillis)
+                                                       .setSocketTimeout(timeoutMillis)
+                                                       .build();
+
+            // Redirects are not followed since the token should only be sent to the local server
+            httpClient = HttpClients.custom()
+                                    .setDefaultRequestConfig(requestConfig)
+                                    .disableRedirectHandling()
+                                    .disableCookieManagement()
+                                    .build();
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warmUpCache(Context context) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (!isRenderEnabled(siteContext)) {
+            return;
+        }
+
+        Set<String> urls = getUrls(siteContext);
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        StopWatch stopWatch = new StopWatch();
+
+        logger.info("Starting render of {} URLs", urls.size());
+
+        stopWatch.start();
+
+        render(siteContext, context, urls);
+
+        stopWatch.stop();
+
+        logger.info("Render of {} URLs completed in {} secs", urls.size(), stopWatch.getTime(TimeUnit.SECONDS));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean warmUpPaths(Context context, Collection<String> changedPaths) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (!isRenderEnabled(siteContext)) {
+            return true;
+        }
+
+        // Only the pages that changed are rendered again, the ones that include changed components are not known
+        Set<String> urls = getUrls(siteContext);
+        Set<String> changedUrls = changedPaths.stream()
+                                              .map(path -> getPageUrl(ContentStoreUtils.normalizePath(path)))
+                                              .filter(urls::contains)
+                                              .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        render(siteContext, context, changedUrls);
+
+        return true;
+    }
+
+    /**
+     * Returns the warm up of the request, if it has the token of a warm up in progress.
+     */
+    public WarmUp getWarmUp(HttpServletRequest request) {
+        if (warmUps.isEmpty()) {
+            return null;
+        }
+
+        String token = request.getHeader(WARM_UP_TOKEN_HEADER_NAME);
+        if (StringUtils.isEmpty(token)) {
+            return null;
+        }
+
+        return warmUps.get(token);
+    }
+
+    /**
+     * Returns true if the pages of the site can be rendered: the renders are enabled and the site context is ready.
+     */
+    protected boolean isRenderEnabled(SiteContext siteContext) {
+        if (!warmUpEnabled || !enabled || siteContext == null) {
+            return false;
+        }
+
+        if (siteContext.getState() != SiteContext.State.READY) {
+            logger.debug("Site context {} is not ready, skipping render", siteContext);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the URLs that should be rendered for the site: the ones configured for all sites, the ones configured
+     * by the site and the hot pages.
+     */
+    protected Set<String> getUrls(SiteContext siteContext) {
+        Set<String> urls = new LinkedHashSet<>();
+        addUrls(urls, this.urls);
+        addUrls(urls, SiteProperties.getRenderWarmUpUrls());
+
+        if (hotPathSampler != null && hotPathSampler.isEnabled() && maxLearnedUrls > 0) {
+            hotPathSampler.getHotPaths(siteContext.getSiteName(), Integer.MAX_VALUE).stream()
+                          .filter(hotPath -> !hotPath.isContent())
+                          .map(hotPath -> getPageUrl(hotPath.getPath()))
+                          .filter(Objects::nonNull)
+                          .limit(maxLearnedUrls)
+                          .forEach(urls::add);
+        }
+
+        return urls;
+    }
+
+    protected void addUrls(Set<String> urls, String[] newUrls) {
+        if (ArrayUtils.isNotEmpty(newUrls)) {
+            for (String url : newUrls) {
+                if (StringUtils.isNotBlank(url)) {
+                    urls.add(StringUtils.prependIfMissing(url.trim(), "/"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the URL of the page of the given descriptor path (e.g. {@code /site/website/about/index.xml} is
+     * {@code /about}), or null if the path is not a page descriptor.
+     */
+    protected String getPageUrl(String path) {
+        if (!path.startsWith(pagesPath + "/") || !path.endsWith(DESCRIPTOR_EXTENSION)) {
+            return null;
+        }
+
+        String url = StringUtils.removeEnd(path.substring(pagesPath.length()), DESCRIPTOR_EXTENSION);
+        url = StringUtils.removeEnd(url, INDEX_PAGE_SUFFIX);
+
+        return StringUtils.defaultIfEmpty(url, "/");
+    }
+
+    protected void render(SiteContext siteContext, Context context, Collection<String> urls) {
+        if (urls.isEmpty()) {
+            return;
+        }
+
+        String token = startWarmUp(siteContext, context);
+        try {
+            for (String url : urls) {
+                if (siteContext.getState() == SiteContext.State.DESTROYED) {
+                    logger.info("Site context {} has been destroyed, stopping render", siteContext);
+                    return;
+                }
+
+                render(token, url);
+            }
+        } finally {
+            finishWarmUp(token);
+        }
+    }
+
+    protected void render(String token, String url) {
+        logger.debug("Rendering [{}]", url);
+
+        HttpGet request = new HttpGet(baseUrl + url);
+        request.setHeader(WARM_UP_TOKEN_HEADER_NAME, token);
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            EntityUtils.consume(response.getEntity());
+
+            int status = response.getStatusLine().getStatusCode();
+            if (status >= HttpStatus.SC_BAD_REQUEST) {
+                logger.warn("Render of [{}] returned status {}", url, status);
+            }
+        } catch (Exception e) {
+            logger.warn("Error while rendering [{}]", url, e);
+        }
+    }
+
+    /**
+     * Registers a warm up of the given context and returns its token.
+     */
+    protected String startWarmUp(SiteContext siteContext, Context context) {
+        byte[] bytes = new byte[TOKEN_LENGTH];
+        random.nextBytes(bytes);
+
+        String token = String.format("%064x", new BigInteger(1, bytes));
+        warmUps.put(token, new WarmUp(siteContext, context));
+
+        return token;
+    }
+
+    protected void finishWarmUp(String token) {
+        warmUps.remove(token);
+    }
+
+    /**
+     * A warm up in progress: the site context and the context whose cache is being warmed up.
+     */
+    public static class WarmUp {
+
+        protected final SiteContext siteContext;
+        protected final Context context;
+
+        public WarmUp(SiteContext siteContext, Context context) {
+            this.siteContext = siteContext;
+            this.context = context;
+        }
+
+        public SiteContext getSiteContext() {
+            return siteContext;
+        }
+
+        public Context getContext() {
+            return context;
+        }
+
+    }
+
+}
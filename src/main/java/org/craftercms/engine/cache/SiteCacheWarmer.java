@@ -17,6 +17,8 @@ package org.craftercms.engine.cache;
 
 import org.craftercms.engine.service.context.SiteContext;
 
+import java.util.Collection;
+
 /**
  * Helper class that's used to warm up the cache of a site context.
  *
@@ -34,4 +36,16 @@ public interface SiteCacheWarmer {
      */
     void warmUpCache(SiteContext siteContext, boolean switchCache);
 
+    /**
+     * Evicts the entries of the changed paths (and their parent folders) from the current cache of the specified site
+     * context, and warms them up again, instead of switching to a whole new cache.
+     *
+     * @param siteContext   the site context
+     * @param changedPaths  the paths that were created, updated or deleted
+     *
+     * @return false if the changes can't be warmed up incrementally (e.g. there are too many), in which case the
+     * cache should be switched
+     */
+    boolean warmUpCache(SiteContext siteContext, Collection<String> changedPaths);
+
 }
@@ -15,16 +15,24 @@
  */
 package org.craftercms.engine.cache;
 
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
+import org.craftercms.commons.lang.RegexUtils;
 import org.craftercms.core.exception.CrafterException;
 import org.craftercms.core.service.CacheService;
 import org.craftercms.core.service.Context;
+import org.craftercms.core.util.ContentStoreUtils;
 import org.craftercms.engine.service.context.SiteContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -37,8 +45,15 @@ public class SiteCacheWarmerImpl implements SiteCacheWarmer {
 
     private static final Logger logger = LoggerFactory.getLogger(SiteCacheWarmerImpl.class);
 
+    /**
+     * Characters that end the paths that appear as elements of the cache keys
+     */
+    private static final String KEY_PATH_DELIMITERS = " \t\r\n:,;'\"()[]{}";
+
     protected CacheService cacheService;
     protected List<ContextCacheWarmer> contextCacheWarmers;
+    protected int maxIncrementalPaths;
+    protected String[] incrementalExcludedPaths;
 
     /**
      * Sets the {@link CacheService}
@@ -56,6 +71,25 @@ public class SiteCacheWarmerImpl implements SiteCacheWarmer {
         this.contextCacheWarmers = contextCacheWarmers;
     }
 
+    /**
+     * Sets the max number of changed paths that are evicted and warmed up in the current cache instead of switching
+     * to a new cache. 0 to always switch the cache.
+     */
+    public void setMaxIncrementalPaths(int maxIncrementalPaths) {
+        this.maxIncrementalPaths = maxIncrementalPaths;
+    }
+
+    /**
+     * Sets the regexes of the changed paths that always require the cache to be switched, because other entries
+     * depend on them (e.g. level descriptors or configuration). Only the entries whose keys contain a changed path
+     * (or one of its folders) are evicted, the dependents of a changed item are not computed: an item that includes
+     * it flattened or a page that renders it as a component keep the old version. That's why components should also
+     * be excluded, unless the site doesn't include or nest them.
+     */
+    public void setIncrementalExcludedPaths(String[] incrementalExcludedPaths) {
+        this.incrementalExcludedPaths = incrementalExcludedPaths;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -115,6 +149,124 @@ public class SiteCacheWarmerImpl implements SiteCacheWarmer {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean warmUpCache(SiteContext siteContext, Collection<String> changedPaths) {
+        String siteName = siteContext.getSiteName();
+
+        if (maxIncrementalPaths <= 0) {
+            return false;
+        }
+
+        if (changedPaths.size() > maxIncrementalPaths) {
+            logger.info("{} paths changed in site '{}', the max for an incremental warm up is {}",
+                        changedPaths.size(), siteName, maxIncrementalPaths);
+            return false;
+        }
+
+        if (ArrayUtils.isNotEmpty(incrementalExcludedPaths)) {
+            for (String path : changedPaths) {
+                if (RegexUtils.matchesAny(path, incrementalExcludedPaths)) {
+                    logger.info("Path [{}] of site '{}' can't be warmed up incrementally", path, siteName);
+                    return false;
+                }
+            }
+        }
+
+        Context context = siteContext.getContext();
+        StopWatch stopWatch = new StopWatch();
+
+        logger.info("Starting incremental warm up of {} paths for cache of site '{}'", changedPaths.size(),
+                    siteName);
+
+        stopWatch.start();
+
+        try {
+            int evicted = evictPaths(context, getPathsToEvict(changedPaths));
+
+            logger.debug("Evicted {} entries from cache of site '{}'", evicted, siteName);
+
+            for (ContextCacheWarmer cacheWarmer : contextCacheWarmers) {
+                if (!cacheWarmer.warmUpPaths(context, changedPaths)) {
+                    logger.info("Cache warmer {} can't warm up incrementally the cache of site '{}'", cacheWarmer,
+                                siteName);
+                    return false;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Incremental cache warm up failed", e);
+            return false;
+        }
+
+        stopWatch.stop();
+
+        logger.info("Incremental warm up for cache of site '{}' completed in {} secs", siteName,
+                    stopWatch.getTime(TimeUnit.SECONDS));
+
+        return true;
+    }
+
+    /**
+     * Returns the changed paths and all their ancestors, since the listings and trees of the parent folders also
+     * need to be evicted.
+     */
+    protected Set<String> getPathsToEvict(Collection<String> changedPaths) {
+        Set<String> paths = new HashSet<>();
+        for (String path : changedPaths) {
+            path = ContentStoreUtils.normalizePath(path);
+            while (paths.add(path) && !path.equals("/")) {
+                path = StringUtils.defaultIfEmpty(StringUtils.substringBeforeLast(path, "/"), "/");
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Removes the entries whose keys contain any of the paths as a key element.
+     *
+     * @return the number of entries removed
+     */
+    protected int evictPaths(Context context, Set<String> paths) {
+        int evicted = 0;
+
+        for (Object key : new ArrayList<>(cacheService.getKeys(context))) {
+            if (keyContainsPath(key, paths) && cacheService.remove(context, key)) {
+                evicted++;
+            }
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Checks if any of the paths appears as an element of the key. The paths in the key are found by scanning its
+     * string form once, without a regex, since this is done for every key of the cache.
+     */
+    protected boolean keyContainsPath(Object key, Set<String> paths) {
+        String str = String.valueOf(key);
+        int length = str.length();
+        int start = str.indexOf('/');
+
+        while (start >= 0) {
+            int end = start + 1;
+            while (end < length && KEY_PATH_DELIMITERS.indexOf(str.charAt(end)) < 0) {
+                end++;
+            }
+
+            String path = str.substring(start, end);
+            if (paths.contains(path) || (path.length() > 1 && paths.contains(StringUtils.removeEnd(path, "/")))) {
+                return true;
+            }
+
+            start = str.indexOf('/', end);
+        }
+
+        return false;
+    }
+
     private void doCacheWarmUp(Context cacheContext) {
         for (ContextCacheWarmer cacheWarmer : contextCacheWarmers) {
             cacheWarmer.warmUpCache(cacheContext);
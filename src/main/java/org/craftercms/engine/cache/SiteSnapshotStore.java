@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Stores on disk, per site, the results of expensive steps of the site context initialization (like the scan of the
+ * REST script URL templates or the listing of the preloaded folders), so that they can be reused when the context is
+ * created again for the same version of the content (e.g. after a restart).
+ *
+ * <p>The content version is the commit the Git repository of the site points to, so only sites whose root folder is
+ * the working tree of a Git repository are supported. Changes to the content that haven't been committed are not
+ * detected, which is why the store shouldn't be enabled in preview.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class SiteSnapshotStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteSnapshotStore.class);
+
+    public static final String FILE_URL_PREFIX = "file:";
+    public static final String GIT_FOLDER_NAME = ".git";
+    public static final String GIT_HEAD_FILE_NAME = "HEAD";
+    public static final String GIT_PACKED_REFS_FILE_NAME = "packed-refs";
+    public static final String GIT_REF_PREFIX = "ref:";
+    public static final String SNAPSHOT_FILE_EXTENSION = ".json";
+    public static final String VERSION_FIELD = "version";
+    public static final String VALUE_FIELD = "value";
+
+    protected String snapshotFolder;
+    protected ObjectMapper objectMapper;
+
+    public SiteSnapshotStore() {
+        objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Sets the folder where the snapshots are stored, one sub-folder per site. Empty to disable the snapshots.
+     */
+    @Required
+    public void setSnapshotFolder(String snapshotFolder) {
+        this.snapshotFolder = snapshotFolder;
+    }
+
+    public boolean isEnabled() {
+        return StringUtils.isNotEmpty(snapshotFolder);
+    }
+
+    /**
+     * Returns the value of the snapshot with the given name, or null if there's no snapshot or if it was taken
+     * for a different version of the site content.
+     *
+     * @param siteContext   the context of the site
+     * @param name          the name of the snapshot
+     * @param type          the type of the value
+     */
+    public <T> T load(SiteContext siteContext, String name, Class<T> type) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        String version = getContentVersion(siteContext);
+        Path snapshotFile = getSnapshotFile(siteContext, name);
+
+        if (version == null || !Files.exists(snapshotFile)) {
+            return null;
+        }
+
+        try {
+            JsonNode snapshot = objectMapper.readTree(snapshotFile.toFile());
+            if (version.equals(snapshot.path(VERSION_FIELD).asText())) {
+                logger.debug("Using snapshot '{}' for version {} of site '{}'", name, version,
+                             siteContext.getSiteName());
+
+                return objectMapper.treeToValue(snapshot.get(VALUE_FIELD), type);
+            } else {
+                logger.debug("Snapshot '{}' of site '{}' is outdated", name, siteContext.getSiteName());
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to read snapshot '{}' of site '{}'", name, siteContext.getSiteName(), e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Saves the value of the snapshot with the given name for the current version of the site content. Nothing is
+     * saved if the version of the content can't be resolved.
+     *
+     * @param siteContext   the context of the site
+     * @param name          the name of the snapshot
+     * @param value         the value of the snapshot, it must be serializable to JSON
+     */
+    public void save(SiteContext siteContext, String name, Object value) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        String version = getContentVersion(siteContext);
+        if (version == null) {
+            return;
+        }
+
+        ObjectNode snapshot = objectMapper.createObjectNode();
+        snapshot.put(VERSION_FIELD, version);
+        snapshot.set(VALUE_FIELD, objectMapper.valueToTree(value));
+
+        if (writeSnapshot(siteContext.getSiteName(), name, snapshot)) {
+            logger.debug("Saved snapshot '{}' for version {} of site '{}'", name, version, siteContext.getSiteName());
+        }
+    }
+
+    /**
+     * Returns the value of the snapshot with the given name, no matter the version of the content it was saved for,
+     * or null if there's no snapshot. Used for values that don't depend on the content (e.g. traffic statistics).
+     *
+     * @param siteName  the name of the site
+     * @param name      the name of the snapshot
+     * @param type      the type of the value
+     */
+    public <T> T loadAnyVersion(String siteName, String name, Class<T> type) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Path snapshotFile = getSnapshotFile(siteName, name);
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+
+        try {
+            JsonNode snapshot = objectMapper.readTree(snapshotFile.toFile());
+
+            return objectMapper.treeToValue(snapshot.get(VALUE_FIELD), type);
+        } catch (Exception e) {
+            logger.warn("Unable to read snapshot '{}' of site '{}'", name, siteName, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Saves the value of the snapshot with the given name without a content version, so that it can be loaded with
+     * {@link #loadAnyVersion(String, String, Class)}.
+     *
+     * @param siteName  the name of the site
+     * @param name      the name of the snapshot
+     * @param value     the value of the snapshot, it must be serializable to JSON
+     */
+    public void saveAnyVersion(String siteName, String name, Object value) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        ObjectNode snapshot = objectMapper.createObjectNode();
+        snapshot.set(VALUE_FIELD, objectMapper.valueToTree(value));
+
+        if (writeSnapshot(siteName, name, snapshot)) {
+            logger.debug("Saved snapshot '{}' of site '{}'", name, siteName);
+        }
+    }
+
+    protected boolean writeSnapshot(String siteName, String name, ObjectNode snapshot) {
+        Path snapshotFile = getSnapshotFile(siteName, name);
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+
+            // Write to a temp file first so that a snapshot is never read half written
+            Path tempFile = Files.createTempFile(snapshotFile.getParent(), name, null);
+            try {
+                objectMapper.writeValue(tempFile.toFile(), snapshot);
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+
+            return true;
+        } catch (Exception e) {
+            logger.warn("Unable to save snapshot '{}' of site '{}'", name, siteName, e);
+
+            return false;
+        }
+    }
+
+    protected Path getSnapshotFile(SiteContext siteContext, String name) {
+        return getSnapshotFile(siteContext.getSiteName(), name);
+    }
+
+    protected Path getSnapshotFile(String siteName, String name) {
+        return Paths.get(snapshotFolder, siteName, name + SNAPSHOT_FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the commit id the Git repository in the root folder of the site points to, or null if the root folder
+     * is not a local Git repository.
+     */
+    protected String getContentVersion(SiteContext siteContext) {
+        String rootFolderPath = siteContext.getRootFolderPath();
+        if (!StringUtils.startsWith(rootFolderPath, FILE_URL_PREFIX)) {
+            return null;
+        }
+
+        Path gitFolder = Paths.get(StringUtils.removeStart(rootFolderPath, FILE_URL_PREFIX), GIT_FOLDER_NAME);
+        Path headFile = gitFolder.resolve(GIT_HEAD_FILE_NAME);
+        if (!Files.isRegularFile(headFile)) {
+            return null;
+        }
+
+        try {
+            String head = readFirstLine(headFile);
+            if (!StringUtils.startsWith(head, GIT_REF_PREFIX)) {
+                // Detached HEAD, it already has the commit id
+                return StringUtils.trimToNull(head);
+            }
+
+            String ref = StringUtils.removeStart(head, GIT_REF_PREFIX).trim();
+            Path refFile = gitFolder.resolve(ref);
+            if (Files.isRegularFile(refFile)) {
+                return StringUtils.trimToNull(readFirstLine(refFile));
+            }
+
+            Path packedRefsFile = gitFolder.resolve(GIT_PACKED_REFS_FILE_NAME);
+            if (Files.isRegularFile(packedRefsFile)) {
+                for (String line : Files.readAllLines(packedRefsFile, StandardCharsets.UTF_8)) {
+                    if (line.endsWith(" " + ref)) {
+                        return StringUtils.substringBefore(line, " ");
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to resolve the content version of site '{}'", siteContext.getSiteName(), e);
+        }
+
+        return null;
+    }
+
+    private String readFirstLine(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        return lines.isEmpty() ? null : lines.get(0).trim();
+    }
+
+}
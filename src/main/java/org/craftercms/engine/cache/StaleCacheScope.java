@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.Context;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache scope of a previous cache version of a site, kept after a cache clear so that its entries can still be served
+ * while they're refreshed in the background (stale-while-revalidate). The scope is only valid until its expiration
+ * time, after which it should be removed from the cache.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class StaleCacheScope {
+
+    protected final Context context;
+    protected final long expirationTime;
+    protected final Set<List<Object>> refreshingKeys;
+
+    /**
+     * Creates a new stale cache scope.
+     *
+     * @param context       clone of the site context with the previous cache version
+     * @param maxStaleness  the max time in milliseconds the entries of the scope can be served
+     */
+    public StaleCacheScope(Context context, long maxStaleness) {
+        this.context = context;
+        this.expirationTime = System.currentTimeMillis() + maxStaleness;
+        this.refreshingKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Returns the context used to access the stale entries.
+     */
+    public Context getContext() {
+        return context;
+    }
+
+    public long getExpirationTime() {
+        return expirationTime;
+    }
+
+    /**
+     * Returns true if the entries of this scope can't be served anymore.
+     */
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expirationTime;
+    }
+
+    /**
+     * Marks the key as being refreshed. Returns false if the key is already being refreshed by another thread.
+     */
+    public boolean startRefresh(Object... keyElements) {
+        return refreshingKeys.add(Arrays.asList(keyElements));
+    }
+
+    /**
+     * Marks the key as no longer being refreshed.
+     */
+    public void finishRefresh(Object... keyElements) {
+        refreshingKeys.remove(Arrays.asList(keyElements));
+    }
+
+    /**
+     * Returns the number of keys currently being refreshed.
+     */
+    public int getRefreshingKeyCount() {
+        return refreshingKeys.size();
+    }
+
+    @Override
+    public String toString() {
+        return "StaleCacheScope{" +
+               "context=" + context +
+               ", expirationTime=" + expirationTime +
+               '}';
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded counter of the most frequent elements of a stream, using the Space-Saving algorithm: at most
+ * {@code capacity} elements are counted, and when a new element arrives and there's no room the element with the
+ * lowest count is replaced by the new one, which inherits its count. The elements that are really frequent always
+ * stay, and their counts are overestimated at most by the count of the element they replaced.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+class TopKSketch {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Deque<Counter> minCounters;
+    private long minCount;
+
+    public TopKSketch(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+        this.minCounters = new ArrayDeque<>();
+    }
+
+    public synchronized int size() {
+        return counters.size();
+    }
+
+    public void add(String element) {
+        add(element, 1);
+    }
+
+    public synchronized void add(String element, long count) {
+        Counter counter = counters.get(element);
+        if (counter != null) {
+            counter.count += count;
+        } else if (counters.size() < capacity) {
+            counters.put(element, new Counter(element, count));
+        } else {
+            Counter evicted = pollMinCounter();
+            counters.remove(evicted.element);
+
+            evicted.element = element;
+            evicted.count += count;
+
+            counters.put(element, evicted);
+        }
+    }
+
+    /**
+     * Returns the top elements with their (estimated) counts, from the most to the least frequent.
+     *
+     * @param max the max number of elements to return
+     */
+    public synchronized Map<String, Long> getTop(int max) {
+        Map<String, Long> top = new LinkedHashMap<>();
+        counters.values().stream()
+                .sorted(Comparator.comparingLong((Counter counter) -> counter.count).reversed())
+                .limit(max)
+                .forEach(counter -> top.put(counter.element, counter.count));
+
+        return top;
+    }
+
+    /**
+     * Returns one of the counters with the lowest count. The counters with the lowest count are found with a single
+     * scan and then used for the next evictions, as long as their count doesn't change.
+     */
+    private Counter pollMinCounter() {
+        Counter counter;
+        while ((counter = minCounters.poll()) != null) {
+            if (counter.count == minCount && counters.get(counter.element) == counter) {
+                return counter;
+            }
+        }
+
+        minCount = Long.MAX_VALUE;
+        for (Counter current : counters.values()) {
+            if (current.count < minCount) {
+                minCount = current.count;
+                minCounters.clear();
+            }
+            if (current.count == minCount) {
+                minCounters.add(current);
+            }
+        }
+
+        return minCounters.poll();
+    }
+
+    private static class Counter {
+
+        private String element;
+        private long count;
+
+        private Counter(String element, long count) {
+            this.element = element;
+            this.count = count;
+        }
+
+    }
+
+}
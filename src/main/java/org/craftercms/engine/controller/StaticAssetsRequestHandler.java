@@ -26,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.lang.UrlUtils;
 import org.craftercms.core.service.Content;
 import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.engine.cache.HotPathSampler;
 import org.craftercms.engine.service.context.SiteContext;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.core.io.AbstractResource;
@@ -47,6 +48,7 @@ public class StaticAssetsRequestHandler extends ResourceHttpRequestHandler {
     private ContentStoreService contentStoreService;
     private String staticAssetsPath;
     private boolean disableCaching;
+    private HotPathSampler hotPathSampler;
 
     protected void init() {
         if (disableCaching) {
@@ -72,6 +74,10 @@ public class StaticAssetsRequestHandler extends ResourceHttpRequestHandler {
         this.disableCaching = disableCaching;
     }
 
+    public void setHotPathSampler(HotPathSampler hotPathSampler) {
+        this.hotPathSampler = hotPathSampler;
+    }
+
     @Override
     protected Resource getResource(final HttpServletRequest request) {
 
@@ -95,6 +101,10 @@ public class StaticAssetsRequestHandler extends ResourceHttpRequestHandler {
             return null;
         }
 
+        if (hotPathSampler != null) {
+            hotPathSampler.sampleContent(path);
+        }
+
         return toResource(content, path);
     }
 
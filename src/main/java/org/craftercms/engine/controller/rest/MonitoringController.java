@@ -22,7 +22,11 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.craftercms.commons.exceptions.InvalidManagementTokenException;
 import org.craftercms.commons.monitoring.rest.MonitoringRestControllerBase;
+import org.craftercms.engine.service.context.SiteContextManager;
+import org.craftercms.engine.service.context.SiteContextsStartupProgress;
 import org.craftercms.engine.util.logging.CircularQueueLogAppender;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -37,8 +41,10 @@ public class MonitoringController extends MonitoringRestControllerBase {
 
     public final static String URL_ROOT = "/api/1";
     public final static String LOG_URL = "/log";
+    public final static String STARTUP_URL = "/startup";
 
     private String configuredToken;
+    private SiteContextManager siteContextManager;
 
     @GetMapping(MonitoringRestControllerBase.ROOT_URL + LOG_URL)
     public List<Map<String,Object>> getLoggedEvents(@RequestParam String site, @RequestParam long since,
@@ -50,6 +56,23 @@ public class MonitoringController extends MonitoringRestControllerBase {
         }
     }
 
+    /**
+     * Returns the progress of the creation of the site contexts on startup. The response status is 503 until all
+     * the sites have been processed, so it can be used by load balancers to check if the instance is ready.
+     */
+    @GetMapping(MonitoringRestControllerBase.ROOT_URL + STARTUP_URL)
+    public ResponseEntity<SiteContextsStartupProgress> getStartupProgress(@RequestParam String token)
+        throws InvalidManagementTokenException {
+        if (StringUtils.isNotEmpty(token) && StringUtils.equals(token, getConfiguredToken())) {
+            SiteContextsStartupProgress progress = siteContextManager.getStartupProgress();
+            HttpStatus status = progress.isCompleted() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+
+            return new ResponseEntity<>(progress, status);
+        } else {
+            throw new InvalidManagementTokenException("Management authorization failed, invalid token.");
+        }
+    }
+
     @Override
     protected String getConfiguredToken() {
         return configuredToken;
@@ -58,4 +81,8 @@ public class MonitoringController extends MonitoringRestControllerBase {
     public void setConfiguredToken(String configuredToken) {
         this.configuredToken = configuredToken;
     }
+
+    public void setSiteContextManager(SiteContextManager siteContextManager) {
+        this.siteContextManager = siteContextManager;
+    }
 }
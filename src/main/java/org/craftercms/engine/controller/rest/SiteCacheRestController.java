@@ -48,6 +48,7 @@ public class SiteCacheRestController extends RestControllerBase {
     public static final String URL_ROOT = "/site/cache";
     public static final String URL_CLEAR = "/clear";
     public static final String URL_STATS = "/statistics";
+    public static final String URL_LOAD_STATS = "/statistics/loads";
 
     private String configuredToken;
 
@@ -87,6 +88,15 @@ public class SiteCacheRestController extends RestControllerBase {
         }
     }
 
+    @RequestMapping(value = URL_LOAD_STATS, method = RequestMethod.GET)
+    public Map<String, Object> getLoadStatistics(@RequestParam String token) throws InvalidManagementTokenException {
+        if (StringUtils.isNotEmpty(token) && StringUtils.equals(token, getConfiguredToken())) {
+            return SiteContext.getCurrent().getCacheLoadCoalescer().getStatistics();
+        } else {
+            throw new InvalidManagementTokenException("Management authorization failed, invalid token.");
+        }
+    }
+
     public String getConfiguredToken() {
         return configuredToken;
     }
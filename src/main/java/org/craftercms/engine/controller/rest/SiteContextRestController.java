@@ -21,9 +21,11 @@ import org.craftercms.commons.exceptions.InvalidManagementTokenException;
 import org.craftercms.core.controller.rest.RestControllerBase;
 import org.craftercms.engine.event.SiteContextCreatedEvent;
 import org.craftercms.engine.event.SiteEvent;
+import org.craftercms.engine.freemarker.TemplatePreParseResult;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.service.context.SiteContextManager;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -48,9 +50,17 @@ public class SiteContextRestController extends RestControllerBase {
     public static final String URL_REBUILD = "/rebuild";
     public static final String URL_GRAPHQL = "/graphql";
     public static final String URL_STATUS = "/status";
+    public static final String URL_TEMPLATES_PRE_PARSE = "/templates/preparse";
+    public static final String URL_APP_CONTEXT = "/appcontext";
 
     public static final String MODEL_ATTR_ID =  "id";
     public static final String MODEL_ATTR_STATUS = "status";
+    public static final String MODEL_ATTR_ACTIVE_REQUESTS = "activeRequests";
+    public static final String MODEL_ATTR_TEMPLATE_PRE_PARSE = "templatePreParse";
+    public static final String MODEL_ATTR_LOADED = "loaded";
+    public static final String MODEL_ATTR_REFRESH_TIME = "refreshTime";
+    public static final String MODEL_ATTR_BEAN_DEFINITION_COUNT = "beanDefinitionCount";
+    public static final String MODEL_ATTR_SINGLETON_COUNT = "singletonCount";
 
     private SiteContextManager contextManager;
     private String configuredToken;
@@ -127,7 +137,53 @@ public class SiteContextRestController extends RestControllerBase {
     public Map<String, Object> getStatus(@RequestParam String token) throws InvalidManagementTokenException {
         validateToken(token);
 
-        return createSingletonModifiableMap(MODEL_ATTR_STATUS, SiteContext.getCurrent().getState());
+        SiteContext siteContext = SiteContext.getCurrent();
+
+        Map<String, Object> status = createSingletonModifiableMap(MODEL_ATTR_STATUS, siteContext.getState());
+        status.put(MODEL_ATTR_ACTIVE_REQUESTS, siteContext.getActiveRequests());
+
+        return status;
+    }
+
+    @GetMapping(URL_TEMPLATES_PRE_PARSE)
+    public Map<String, Object> getTemplatePreParseResult(@RequestParam String token)
+            throws InvalidManagementTokenException {
+        validateToken(token);
+
+        SiteContext siteContext = SiteContext.getCurrent();
+        TemplatePreParseResult result = siteContext.getTemplatePreParseResult();
+        if (result != null) {
+            return createSingletonModifiableMap(MODEL_ATTR_TEMPLATE_PRE_PARSE, result);
+        } else {
+            return createResponseMessage("Templates of site '" + siteContext.getSiteName() + "' were not " +
+                                         "pre-parsed");
+        }
+    }
+
+    @GetMapping(URL_APP_CONTEXT)
+    public Map<String, Object> getApplicationContextStats(@RequestParam String token)
+            throws InvalidManagementTokenException {
+        validateToken(token);
+
+        SiteContext siteContext = SiteContext.getCurrent();
+
+        // Don't create the application context if it's lazy and hasn't been used yet
+        if (!siteContext.isApplicationContextLoaded()) {
+            return createSingletonModifiableMap(MODEL_ATTR_LOADED, false);
+        }
+
+        ConfigurableApplicationContext appContext = siteContext.getApplicationContext();
+        if (appContext == null) {
+            return createResponseMessage("Site '" + siteContext.getSiteName() + "' doesn't have an application " +
+                                         "context");
+        }
+
+        Map<String, Object> stats = createSingletonModifiableMap(MODEL_ATTR_LOADED, true);
+        stats.put(MODEL_ATTR_REFRESH_TIME, siteContext.getApplicationContextRefreshTime());
+        stats.put(MODEL_ATTR_BEAN_DEFINITION_COUNT, appContext.getBeanFactory().getBeanDefinitionCount());
+        stats.put(MODEL_ATTR_SINGLETON_COUNT, appContext.getBeanFactory().getSingletonCount());
+
+        return stats;
     }
 
     public String getConfiguredToken() {
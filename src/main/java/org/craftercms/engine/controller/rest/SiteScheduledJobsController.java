@@ -52,16 +52,14 @@ public class SiteScheduledJobsController extends RestControllerBase {
         SiteContext siteContext = SiteContext.getCurrent();
         Scheduler scheduler = siteContext.getScheduler();
         if(scheduler != null) {
-            List<String> groups = scheduler.getJobGroupNames();
-            for (String group : groups) {
-                Set<JobKey> keys = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(group));
-                for (JobKey key : keys) {
-                    List<Trigger> triggers = (List<Trigger>)scheduler.getTriggersOfJob(key);
-                    Map<String, String> job = new HashMap<>();
-                    job.put("name", key.getName());
-                    job.put("nextFireTime", triggers.get(0).getNextFireTime().toInstant().toString());
-                    jobs.add(job);
-                }
+            // The scheduler can be shared by all sites, so only the group of the current site is listed
+            Set<JobKey> keys = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(siteContext.getJobGroup()));
+            for (JobKey key : keys) {
+                List<Trigger> triggers = (List<Trigger>)scheduler.getTriggersOfJob(key);
+                Map<String, String> job = new HashMap<>();
+                job.put("name", key.getName());
+                job.put("nextFireTime", triggers.get(0).getNextFireTime().toInstant().toString());
+                jobs.add(job);
             }
         }
         return jobs;
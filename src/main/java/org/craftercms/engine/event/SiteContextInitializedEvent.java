@@ -17,6 +17,9 @@ package org.craftercms.engine.event;
 
 import org.craftercms.engine.service.context.SiteContext;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Event published when a new {@link SiteContext} has been initialized.
  *
@@ -24,13 +27,33 @@ import org.craftercms.engine.service.context.SiteContext;
  */
 public class SiteContextInitializedEvent extends SiteEvent {
 
+    private final Map<String, Long> phaseTimes;
+
     /**
      * Create a new event.
      *
      * @param siteContext   the site's context
      */
     public SiteContextInitializedEvent(SiteContext siteContext) {
+        this(siteContext, Collections.emptyMap());
+    }
+
+    /**
+     * Create a new event.
+     *
+     * @param siteContext   the site's context
+     * @param phaseTimes    the time in milliseconds that each phase of the initialization took
+     */
+    public SiteContextInitializedEvent(SiteContext siteContext, Map<String, Long> phaseTimes) {
         super(siteContext);
+        this.phaseTimes = phaseTimes;
+    }
+
+    /**
+     * Returns the time in milliseconds that each phase of the initialization took.
+     */
+    public Map<String, Long> getPhaseTimes() {
+        return phaseTimes;
     }
 
 }
@@ -18,26 +18,36 @@ package org.craftercms.engine.freemarker;
 import freemarker.template.DefaultObjectWrapper;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
+import org.craftercms.commons.http.RequestContext;
 import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.ContentModelUtils;
 import org.dom4j.Element;
 import org.dom4j.Node;
 import org.craftercms.engine.model.Dom4jNodeModel;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.StaticWhitelist;
 
+import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Extends {@link freemarker.template.DefaultObjectWrapper} to wrap Dom4j {@code Node}s. If it's an {@code Element},
- * then the element will be attempted to be converted based on the content model field conversion algorithm.
+ * then the element will be attempted to be converted based on the content model field conversion algorithm. The
+ * conversions are remembered for the rest of the current request when the content of the current site is cached, so
+ * elements wrapped repeatedly (like in template loops) are only converted once. Without the cache every request gets
+ * its own copy of the content, which scripts are free to change, so the elements are always converted.
  *
  * @author Alfonso Vásquez
  */
 @SuppressWarnings("deprecation")
 public class CrafterObjectWrapper extends DefaultObjectWrapper {
 
+    public static final String CONVERTED_FIELDS_ATTRIBUTE = CrafterObjectWrapper.class.getName() + ".convertedFields";
+
     protected final boolean enableSandbox;
 
     public CrafterObjectWrapper(boolean enableSandbox) {
@@ -47,7 +57,7 @@ public class CrafterObjectWrapper extends DefaultObjectWrapper {
     @Override
     public TemplateModel wrap(Object obj) throws TemplateModelException {
         if (obj instanceof Element && !SiteProperties.isDisableFullModelTypeConversion()) {
-            Object result = ContentModelUtils.convertField((Element)obj);
+            Object result = convertField((Element)obj);
             if (result instanceof Node) {
                 return new Dom4jNodeModel((Node)obj, this);
             } else {
@@ -60,6 +70,46 @@ public class CrafterObjectWrapper extends DefaultObjectWrapper {
         }
     }
 
+    protected Object convertField(Element field) {
+        Map<Element, Object> convertedFields = getConvertedFields();
+        if (convertedFields == null) {
+            return ContentModelUtils.convertField(field);
+        }
+
+        // Elements don't override equals/hashCode, so they're looked up by identity
+        Object result = convertedFields.get(field);
+        if (result == null) {
+            result = ContentModelUtils.convertField(field);
+            if (result != null) {
+                convertedFields.put(field, result);
+            }
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<Element, Object> getConvertedFields() {
+        RequestContext requestContext = RequestContext.getCurrent();
+        if (requestContext == null || requestContext.getRequest() == null || !isContentCached()) {
+            return null;
+        }
+
+        HttpServletRequest request = requestContext.getRequest();
+        Map<Element, Object> convertedFields = (Map<Element, Object>) request.getAttribute(CONVERTED_FIELDS_ATTRIBUTE);
+        if (convertedFields == null) {
+            convertedFields = new ConcurrentHashMap<>();
+            request.setAttribute(CONVERTED_FIELDS_ATTRIBUTE, convertedFields);
+        }
+
+        return convertedFields;
+    }
+
+    protected boolean isContentCached() {
+        SiteContext siteContext = SiteContext.getCurrent();
+        return siteContext != null && siteContext.getContext() != null && siteContext.getContext().isCacheOn();
+    }
+
     @Override
     protected TemplateModel invokeMethod(Object object, Method method, Object[] args) throws InvocationTargetException, IllegalAccessException, TemplateModelException {
         if (enableSandbox) {
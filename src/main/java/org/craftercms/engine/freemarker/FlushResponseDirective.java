@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import java.io.IOException;
+import java.util.Map;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.craftercms.engine.properties.SiteProperties;
+
+/**
+ * Directive that commits the response and sends to the client everything that has been rendered so far (usually the
+ * {@code <head>} of the page), so that the browser can start loading CSS and preloaded resources while the rest of the
+ * page is still being rendered. It only has effect if the site enables early flush in its config, and when used
+ * inside a captured output (like {@code <#assign>}) it just flushes the capture. Sites normally call it through
+ * {@code <@crafter.flush/>}.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class FlushResponseDirective implements TemplateDirectiveModel {
+
+    private static final Log logger = LogFactory.getLog(FlushResponseDirective.class);
+
+    @Override
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+        throws TemplateException {
+        if (SiteProperties.isEarlyFlushEnabled()) {
+            try {
+                env.getOut().flush();
+            } catch (IOException e) {
+                throw new TemplateException("I/O exception while flushing the response", e, env);
+            }
+        } else {
+            logger.debug("Early flush is not enabled for the current site, ignoring flush");
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateException;
+
+/**
+ * Page {@link Writer} that lets {@link RenderComponentDirective} render components in parallel. Each submitted
+ * component is rendered in its own buffer by the executor, while the rest of the page keeps being written in order
+ * between them, and the buffers are written to the actual output in document order as they complete.
+ *
+ * <p>At most {@code maxParallelism} components of the page are rendered at the same time. When the limit is reached
+ * or the executor rejects the task, the component is rendered directly in the calling thread. This writer is not
+ * thread safe, only the thread that processes the page should use it.</p>
+ *
+ * <p>The components use the request and response of the page, so once the page is finished or cancelled no
+ * component is started, and the ones being rendered are waited for before the page thread returns.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class ParallelComponentWriter extends Writer {
+
+    protected final Writer out;
+    protected final Executor executor;
+    protected final Semaphore permits;
+    protected final LinkedList<Object> segments;
+    protected final Object tasksLock;
+    protected StringBuilder currentSegment;
+    protected int runningTasks;
+    protected boolean cancelled;
+
+    public ParallelComponentWriter(Writer out, Executor executor, int maxParallelism) {
+        this.out = out;
+        this.executor = executor;
+        this.permits = new Semaphore(maxParallelism);
+        this.segments = new LinkedList<>();
+        this.tasksLock = new Object();
+    }
+
+    /**
+     * Renders the component in the executor if possible, or directly in the calling thread if not, keeping its
+     * position in the page.
+     *
+     * @param renderer the renderer of the component
+     */
+    public void submit(ComponentRenderer renderer) throws TemplateException, IOException {
+        if (permits.tryAcquire()) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (!taskStarted()) {
+                            result.cancel(false);
+                            return;
+                        }
+
+                        try {
+                            StringWriter output = new StringWriter();
+                            renderer.render(output);
+
+                            result.complete(output.toString());
+                        } catch (Throwable e) {
+                            result.completeExceptionally(e);
+                        } finally {
+                            taskFinished();
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                renderer.render(this);
+
+                return;
+            }
+
+            segments.add(result);
+            currentSegment = null;
+        } else {
+            renderer.render(this);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        getCurrentSegment().append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        getCurrentSegment().append(str, off, off + len);
+    }
+
+    /**
+     * Writes to the actual output the segments that are already complete, without waiting for the components that
+     * are still being rendered.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!segments.isEmpty()) {
+            Object segment = segments.getFirst();
+            if (segment instanceof CompletableFuture) {
+                CompletableFuture<?> result = (CompletableFuture<?>) segment;
+                // Errors are handled in finish, in the page environment
+                if (!result.isDone() || result.isCompletedExceptionally()) {
+                    break;
+                }
+            }
+
+            writeSegment(segments.removeFirst());
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Waits for all the components of the page and writes the remaining segments to the actual output. Components
+     * that failed are handled by the template exception handler of the page environment, like they would be if they
+     * were rendered in the page thread.
+     *
+     * @param env the environment of the page
+     */
+    public void finish(Environment env) throws IOException, TemplateException {
+        try {
+            while (!segments.isEmpty()) {
+                Object segment = segments.removeFirst();
+                if (segment instanceof CompletableFuture) {
+                    try {
+                        out.write((String) ((CompletableFuture<?>) segment).get());
+                    } catch (ExecutionException e) {
+                        handleRenderError(e.getCause(), env);
+                    }
+                } else {
+                    writeSegment(segment);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new TemplateException("Interrupted while waiting for the page components", e, env);
+        } finally {
+            cancel();
+        }
+
+        // The actual output is not flushed here, since a flush is taken as an early flush of the page
+    }
+
+    @Override
+    public void close() {
+        // The actual output is closed by the container
+    }
+
+    protected StringBuilder getCurrentSegment() {
+        if (currentSegment == null) {
+            currentSegment = new StringBuilder();
+            segments.add(currentSegment);
+        }
+
+        return currentSegment;
+    }
+
+    protected void writeSegment(Object segment) throws IOException {
+        if (segment instanceof CompletableFuture) {
+            out.write((String) ((CompletableFuture<?>) segment).join());
+        } else {
+            if (segment == currentSegment) {
+                currentSegment = null;
+            }
+
+            out.append((StringBuilder) segment);
+        }
+    }
+
+    protected void handleRenderError(Throwable error, Environment env) throws IOException, TemplateException {
+        if (error instanceof TemplateException) {
+            env.getTemplateExceptionHandler().handleTemplateException((TemplateException) error, env, out);
+        } else if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else {
+            throw new TemplateException(error.getMessage(), (Exception) error, env);
+        }
+    }
+
+    /**
+     * Discards the pending segments. The components that haven't started are skipped, and the ones that are being
+     * rendered are waited for, since the container recycles the request and response after the page.
+     */
+    public void cancel() {
+        synchronized (tasksLock) {
+            cancelled = true;
+
+            boolean interrupted = false;
+            while (runningTasks > 0) {
+                try {
+                    tasksLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (Object segment : segments) {
+            if (segment instanceof CompletableFuture) {
+                ((CompletableFuture<?>) segment).cancel(false);
+            }
+        }
+
+        segments.clear();
+    }
+
+    /**
+     * Records that a component task started, unless the page was already cancelled.
+     *
+     * @return true if the component should be rendered, false if it should be skipped
+     */
+    protected boolean taskStarted() {
+        synchronized (tasksLock) {
+            if (cancelled) {
+                return false;
+            }
+
+            runningTasks++;
+
+            return true;
+        }
+    }
+
+    protected void taskFinished() {
+        synchronized (tasksLock) {
+            runningTasks--;
+            tasksLock.notifyAll();
+        }
+    }
+
+    /**
+     * Renders a component into the given writer.
+     */
+    @FunctionalInterface
+    public interface ComponentRenderer {
+
+        void render(Writer output) throws TemplateException, IOException;
+
+    }
+
+}
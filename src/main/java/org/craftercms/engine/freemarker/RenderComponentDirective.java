@@ -16,12 +16,14 @@
 package org.craftercms.engine.freemarker;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
 
 import freemarker.core.Environment;
 import freemarker.template.SimpleHash;
@@ -35,20 +37,29 @@ import org.apache.commons.collections.MapUtils;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.http.RequestContext;
+import org.craftercms.engine.mobile.UserAgentTemplateDetector;
 import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.scripting.Script;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.scripting.SiteItemScriptResolver;
 import org.craftercms.engine.service.SiteItemService;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.TargetIdManager;
 import org.craftercms.engine.util.GroovyScriptUtils;
 import org.craftercms.engine.view.CrafterPageView;
 import org.dom4j.Element;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
  * Custom directive to render a component by processing the template defined in the component element's template name
@@ -69,6 +80,14 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
     public static final String COMPONENT_PATH_PARAM_NAME = "componentPath";
     public static final String ADDITIONAL_MODEL_PARAM_NAME = "additionalModel";
 
+    public static final String OBJECT_ID_XPATH_QUERY = "objectId";
+    public static final String FRAGMENT_CONST_KEY_ELEM = "componentFragment";
+
+    /**
+     * Set while a fragment is being rendered to be cached, to find out if it renders other components.
+     */
+    private static final ThreadLocal<MutableBoolean> fragmentRendersComponents = new ThreadLocal<>();
+
     protected ServletContext servletContext;
     protected SiteItemService siteItemService;
     protected ObjectFactory<SimpleHash> modelFactory;
@@ -78,6 +97,10 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
     protected String includeElementName;
     protected String componentElementName;
     protected SiteItemScriptResolver scriptResolver;
+    protected String fragmentCacheXPathQuery;
+    protected TargetIdManager targetIdManager;
+    protected UserAgentTemplateDetector userAgentTemplateDetector;
+    protected String parallelRenderingXPathQuery;
 
     @Required
     public void setServletContext(ServletContext servletContext) {
@@ -124,6 +147,37 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
         this.scriptResolver = scriptResolver;
     }
 
+    /**
+     * Sets the XPath query of the component field that indicates if the rendered output of the component should be
+     * cached. If not set, no fragment is ever cached.
+     */
+    public void setFragmentCacheXPathQuery(String fragmentCacheXPathQuery) {
+        this.fragmentCacheXPathQuery = fragmentCacheXPathQuery;
+    }
+
+    /**
+     * Sets the {@link TargetIdManager} used to resolve the current target ID for the fragment cache key.
+     */
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
+    /**
+     * Sets the {@link UserAgentTemplateDetector} used to resolve the template prefix of the current user agent for
+     * the fragment cache key.
+     */
+    public void setUserAgentTemplateDetector(UserAgentTemplateDetector userAgentTemplateDetector) {
+        this.userAgentTemplateDetector = userAgentTemplateDetector;
+    }
+
+    /**
+     * Sets the XPath query of the component field that indicates if the component can be rendered in parallel with
+     * the rest of the page (when parallel rendering is enabled). If not set, all components can.
+     */
+    public void setParallelRenderingXPathQuery(String parallelRenderingXPathQuery) {
+        this.parallelRenderingXPathQuery = parallelRenderingXPathQuery;
+    }
+
     @SuppressWarnings("unchecked")
     public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body) throws TemplateException {
         TemplateModel componentParentParam = (TemplateModel) params.get(COMPONENT_PARENT_PARAM_NAME);
@@ -133,6 +187,11 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
         Map<String, Object> additionalModel = null;
         SiteItem component;
 
+        MutableBoolean rendersComponents = fragmentRendersComponents.get();
+        if (rendersComponents != null) {
+            rendersComponents.setTrue();
+        }
+
         if (componentParam == null && componentPathParam == null) {
             throw new TemplateException("No '" + COMPONENT_PARAM_NAME + "' or '" + COMPONENT_PATH_PARAM_NAME +
                                         "' param specified", env);
@@ -146,14 +205,169 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
             additionalModel = unwrap(ADDITIONAL_MODEL_PARAM_NAME, additionalModelParam, Map.class, env);
         }
 
+        Writer output = env.getOut();
+        if (output instanceof ParallelComponentWriter && isParallelRenderable(component)) {
+            renderInParallel(component, additionalModel, (ParallelComponentWriter) output, env);
+        } else if (isFragmentCacheable(component, additionalModel)) {
+            renderCachedFragment(component, additionalModel, null, output, env);
+        } else {
+            renderComponent(component, additionalModel, output, env);
+        }
+    }
+
+    protected void renderComponent(SiteItem component, Map<String, Object> additionalModel, Writer output,
+                                   Environment env) throws TemplateException {
+        renderComponent(component, additionalModel, getTemplate(component, env), output, env);
+    }
+
+    protected void renderComponent(SiteItem component, Map<String, Object> additionalModel, Template template,
+                                   Writer output, Environment env) throws TemplateException {
         Map<String, Object> templateModel = executeScripts(component, additionalModel, env);
         SimpleHash model = getFullModel(component, templateModel, additionalModel);
-        Template template = getTemplate(component, env);
-        Writer output = env.getOut();
 
         processComponentTemplate(template, model, output, env);
     }
 
+    /**
+     * Returns true if the component can be rendered in parallel with the rest of the page. The component field
+     * specified by {@link #parallelRenderingXPathQuery} can opt out.
+     */
+    protected boolean isParallelRenderable(SiteItem component) {
+        if (StringUtils.isEmpty(parallelRenderingXPathQuery)) {
+            return true;
+        }
+
+        String renderInParallel = component.queryValue(parallelRenderingXPathQuery);
+        return StringUtils.isEmpty(renderInParallel) || Boolean.parseBoolean(renderInParallel);
+    }
+
+    /**
+     * Hands the component to the page writer, which renders it in its own buffer in another thread and writes it
+     * to the page output in document order.
+     */
+    protected void renderInParallel(SiteItem component, Map<String, Object> additionalModel,
+                                    ParallelComponentWriter output, Environment env) throws TemplateException {
+        // The environment is not thread safe, so everything that needs it is resolved here, in the page thread
+        Template template = getTemplate(component, env);
+        boolean fragmentCacheable = isFragmentCacheable(component, additionalModel);
+
+        try {
+            output.submit(componentOutput -> {
+                if (fragmentCacheable) {
+                    renderCachedFragment(component, additionalModel, template, componentOutput, null);
+                } else {
+                    renderComponent(component, additionalModel, template, componentOutput, null);
+                }
+            });
+        } catch (IOException e) {
+            throw new TemplateException("I/O exception while rendering the component", e, env);
+        }
+    }
+
+    /**
+     * Returns true if the rendered output of the component should be cached for the current request. The output of
+     * a component rendered with an additional model or for an authenticated user is never cached, since it can
+     * depend on them and they're not part of the cache key.
+     */
+    protected boolean isFragmentCacheable(SiteItem component, Map<String, Object> additionalModel) {
+        if (MapUtils.isNotEmpty(additionalModel)) {
+            return false;
+        }
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && !(auth instanceof AnonymousAuthenticationToken)) {
+            return false;
+        }
+
+        return isFragmentCacheable(component);
+    }
+
+    /**
+     * Returns true if the rendered output of the component should be cached. The component field specified by
+     * {@link #fragmentCacheXPathQuery} can explicitly opt in or out, otherwise the site default is used.
+     */
+    protected boolean isFragmentCacheable(SiteItem component) {
+        if (StringUtils.isEmpty(fragmentCacheXPathQuery) || SiteContext.getCurrent() == null) {
+            return false;
+        }
+
+        String cacheFragment = component.queryValue(fragmentCacheXPathQuery);
+        if (StringUtils.isNotEmpty(cacheFragment)) {
+            return Boolean.parseBoolean(cacheFragment);
+        } else {
+            return SiteProperties.isComponentFragmentCacheEnabled();
+        }
+    }
+
+    /**
+     * Writes the rendered output of the component from the site cache, rendering it first if it's not there. Since
+     * the fragments are stored in the site cache, they're cleared together with the rest of the cache on deploy.
+     * If the template is null it's resolved from the environment when the fragment needs to be rendered. The
+     * scripts of the component can read the request, so the query string and the template prefix of the user agent
+     * are part of the key too.
+     *
+     * <p>A fragment that renders other components is not cached: an incremental warm up only evicts the entries of
+     * the changed paths, so it would keep the old version of the nested components.</p>
+     */
+    protected void renderCachedFragment(SiteItem component, Map<String, Object> additionalModel, Template template,
+                                        Writer output, Environment env) throws TemplateException {
+        SiteContext siteContext = SiteContext.getCurrent();
+        String templateName = getComponentTemplateName(component, env);
+        String targetId = targetIdManager != null && SiteProperties.isTargetingEnabled()?
+            targetIdManager.getCurrentTargetId() : null;
+        RequestContext requestContext = RequestContext.getCurrent();
+        HttpServletRequest request = requestContext != null? requestContext.getRequest() : null;
+        String queryString = request != null? request.getQueryString() : null;
+        String agentTemplatePrefix = request != null && userAgentTemplateDetector != null?
+            userAgentTemplateDetector.resolveAgentTemplatePrefix(request) : null;
+        String fragment;
+
+        try {
+            fragment = siteContext.getFromCache(() -> {
+                StringWriter fragmentOutput = new StringWriter();
+                MutableBoolean parentRendersComponents = fragmentRendersComponents.get();
+                MutableBoolean rendersComponents = new MutableBoolean(false);
+
+                fragmentRendersComponents.set(rendersComponents);
+                try {
+                    renderComponent(component, additionalModel,
+                                    template != null? template : getTemplate(component, env), fragmentOutput, env);
+                } catch (TemplateException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    if (parentRendersComponents != null) {
+                        fragmentRendersComponents.set(parentRendersComponents);
+                    } else {
+                        fragmentRendersComponents.remove();
+                    }
+                }
+
+                if (rendersComponents.isTrue()) {
+                    throw new UncacheableFragmentException(fragmentOutput.toString());
+                }
+
+                return fragmentOutput.toString();
+            }, component.getStoreUrl(), component.queryValue(OBJECT_ID_XPATH_QUERY), templateName,
+               LocaleContextHolder.getLocale(), targetId, queryString, agentTemplatePrefix, FRAGMENT_CONST_KEY_ELEM);
+        } catch (RuntimeException e) {
+            int uncacheableIndex = ExceptionUtils.indexOfThrowable(e, UncacheableFragmentException.class);
+            if (uncacheableIndex >= 0) {
+                fragment = ((UncacheableFragmentException) ExceptionUtils.getThrowableList(e)
+                                                                         .get(uncacheableIndex)).fragment;
+            } else if (e.getCause() instanceof TemplateException) {
+                throw (TemplateException) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+
+        try {
+            output.write(fragment);
+        } catch (IOException e) {
+            throw new TemplateException("I/O exception while writing the cached component fragment", e, env);
+        }
+    }
+
     protected SiteItem getComponentFromNode(TemplateModel parentParam, TemplateModel componentParam, Environment env)
         throws TemplateException {
         SiteItem parentItem = unwrap(COMPONENT_PARENT_PARAM_NAME, parentParam, SiteItem.class, env);
@@ -341,4 +555,18 @@ public class RenderComponentDirective implements TemplateDirectiveModel {
         }
     }
 
+    /**
+     * Thrown by the loader of a fragment that shouldn't be cached, with the rendered output so it can still be used.
+     */
+    private static class UncacheableFragmentException extends RuntimeException {
+
+        private final String fragment;
+
+        private UncacheableFragmentException(String fragment) {
+            super("Fragment renders other components", null, false, false);
+            this.fragment = fragment;
+        }
+
+    }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of pre-parsing the FreeMarker templates of a site: the time it took to parse each template and the error
+ * of each template that couldn't be parsed.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class TemplatePreParseResult {
+
+    protected final long totalTime;
+    protected final Map<String, Long> templateTimes;
+    protected final Map<String, String> failedTemplates;
+
+    public TemplatePreParseResult(long totalTime, Map<String, Long> templateTimes,
+                                  Map<String, String> failedTemplates) {
+        this.totalTime = totalTime;
+        this.templateTimes = Collections.unmodifiableMap(new TreeMap<>(templateTimes));
+        this.failedTemplates = Collections.unmodifiableMap(new TreeMap<>(failedTemplates));
+    }
+
+    /**
+     * Returns the time in milliseconds it took to pre-parse all the templates.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Returns the number of templates that were pre-parsed, including the ones that failed.
+     */
+    public int getTemplateCount() {
+        return templateTimes.size();
+    }
+
+    /**
+     * Returns the time in milliseconds it took to parse each template, by template path.
+     */
+    public Map<String, Long> getTemplateTimes() {
+        return templateTimes;
+    }
+
+    /**
+     * Returns the error message of each template that failed to parse, by template path.
+     */
+    public Map<String, String> getFailedTemplates() {
+        return failedTemplates;
+    }
+
+    @Override
+    public String toString() {
+        return "TemplatePreParseResult{" +
+               "totalTime=" + totalTime +
+               ", templateCount=" + templateTimes.size() +
+               ", failedTemplates=" + failedTemplates.keySet() +
+               '}';
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import freemarker.template.Configuration;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.craftercms.core.service.Item;
+import org.craftercms.core.service.Tree;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.impl.ConfigAwareCookieLocaleResolver;
+import org.craftercms.engine.util.ConfigUtils;
+import org.craftercms.engine.util.LocaleUtils;
+import org.craftercms.engine.util.concurrent.SiteAwareThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses all the FreeMarker templates under the templates path of a site, so that they're already in the template
+ * cache when the first requests arrive. Templates are parsed in parallel in the given (bounded) executor, and the
+ * method doesn't return until all of them have been parsed. When the queue of the executor is full the templates are
+ * parsed by the calling thread.
+ *
+ * <p>The name and the locale are part of the template cache key, so templates are requested the same way the views
+ * do: with the full path of the template, and for each locale the site's locale resolver can return (the supported
+ * locales of the translation config, or else the {@code defaultLocale} of the site config or the server default).
+ * The locale is also set in the {@link LocaleContextHolder} while parsing, so that the localized lookup finds the
+ * same template as a request would.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class TemplatePreParser {
+
+    public static final String DEFAULT_TEMPLATE_EXTENSION = ".ftl";
+
+    private static final Log logger = LogFactory.getLog(TemplatePreParser.class);
+
+    protected Executor executor;
+    protected String templateExtension;
+
+    public TemplatePreParser() {
+        templateExtension = DEFAULT_TEMPLATE_EXTENSION;
+    }
+
+    @Required
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void setTemplateExtension(String templateExtension) {
+        this.templateExtension = templateExtension;
+    }
+
+    /**
+     * Parses all the templates of the site. Needs to be called with the site context set as the current one.
+     *
+     * @param siteContext the site context
+     *
+     * @return the time per template and the templates that failed to parse
+     */
+    public TemplatePreParseResult preParse(SiteContext siteContext) {
+        long start = System.nanoTime();
+        Map<String, Long> templateTimes = new ConcurrentHashMap<>();
+        Map<String, String> failedTemplates = new ConcurrentHashMap<>();
+
+        logger.info("Pre-parsing FreeMarker templates of site '" + siteContext.getSiteName() + "'");
+
+        List<String> templates = new ArrayList<>();
+        try {
+            Tree tree = siteContext.getStoreService().findTree(siteContext.getContext(),
+                                                               siteContext.getTemplatesPath());
+            if (tree != null) {
+                findTemplates(tree, templates);
+            }
+        } catch (Exception e) {
+            logger.error("Unable to list the templates of site '" + siteContext.getSiteName() + "'", e);
+        }
+
+        if (!templates.isEmpty()) {
+            Configuration configuration = siteContext.getFreeMarkerConfig().getConfiguration();
+            List<Locale> locales = getLocales(siteContext);
+            Executor siteExecutor = new SiteAwareThreadPoolExecutor(siteContext, executor);
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            for (String path : templates) {
+                Runnable task = () -> parse(configuration, locales, path, templateTimes, failedTemplates);
+                try {
+                    futures.add(CompletableFuture.runAsync(task, siteExecutor));
+                } catch (RejectedExecutionException e) {
+                    // The queue is full, this thread already has the site context so it can do the work itself
+                    task.run();
+                }
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        }
+
+        TemplatePreParseResult result = new TemplatePreParseResult(
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), templateTimes, failedTemplates);
+
+        logger.info("Pre-parsed " + result.getTemplateCount() + " FreeMarker templates of site '" +
+                    siteContext.getSiteName() + "' in " + result.getTotalTime() + " ms, " +
+                    failedTemplates.size() + " failed");
+
+        return result;
+    }
+
+    protected void findTemplates(Tree tree, List<String> templates) {
+        List<Item> children = tree.getChildren();
+        if (CollectionUtils.isNotEmpty(children)) {
+            for (Item child : children) {
+                if (child instanceof Tree) {
+                    findTemplates((Tree) child, templates);
+                } else if (StringUtils.endsWith(child.getName(), templateExtension)) {
+                    templates.add(child.getUrl());
+                }
+            }
+        }
+    }
+
+    protected List<Locale> getLocales(SiteContext siteContext) {
+        if (siteContext.getTranslationConfig() != null) {
+            List<Locale> locales = LocaleUtils.getSupportedLocales();
+            if (CollectionUtils.isNotEmpty(locales)) {
+                return locales;
+            }
+        }
+
+        return Collections.singletonList(getDefaultLocale());
+    }
+
+    /**
+     * Returns the locale that the {@link ConfigAwareCookieLocaleResolver} resolves for a request without a locale
+     * cookie: the {@code defaultLocale} of the site config if it's valid, or else the default locale of the server.
+     */
+    protected Locale getDefaultLocale() {
+        org.apache.commons.configuration2.Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            try {
+                Locale locale = org.apache.commons.lang3.LocaleUtils.toLocale(
+                    config.getString(ConfigAwareCookieLocaleResolver.DEFAULT_LOCALE_CONFIG_KEY));
+                if (locale != null && org.apache.commons.lang3.LocaleUtils.isAvailableLocale(locale)) {
+                    return locale;
+                }
+            } catch (IllegalArgumentException e) {
+                logger.debug("Invalid default locale in the site config", e);
+            }
+        }
+
+        return Locale.getDefault();
+    }
+
+    protected void parse(Configuration configuration, List<Locale> locales, String path,
+                         Map<String, Long> templateTimes, Map<String, String> failedTemplates) {
+        LocaleContext previousLocaleContext = LocaleContextHolder.getLocaleContext();
+        long start = System.nanoTime();
+
+        try {
+            for (Locale locale : locales) {
+                LocaleContextHolder.setLocale(locale);
+
+                // Same name & locale used by the views, which are part of the cache key
+                configuration.getTemplate(path, locale);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to pre-parse FreeMarker template " + path + ": " + e.getMessage());
+
+            failedTemplates.put(path, ExceptionUtils.getRootCauseMessage(e));
+        } finally {
+            LocaleContextHolder.setLocaleContext(previousLocaleContext);
+
+            templateTimes.put(path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+}
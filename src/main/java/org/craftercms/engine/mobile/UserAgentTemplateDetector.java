@@ -16,7 +16,6 @@
 
 package org.craftercms.engine.mobile;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,16 +56,21 @@ public class UserAgentTemplateDetector {
 	public String resolveAgentTemplate(HttpServletRequest request, String template) {
 		String templatePath = template.substring(0, template.lastIndexOf('/')+1);
 		String templateFile = template.substring(template.lastIndexOf('/')+1);
+
+		return templatePath + resolveAgentTemplatePrefix(request) + templateFile;
+	}
+
+    /**
+     * Returns the template prefix of the user agent that matches the request (by query string param or by header),
+     * or an empty string if no supported agent matches.
+     */
+	public String resolveAgentTemplatePrefix(HttpServletRequest request) {
 		String queryStringParam = request.getParameter(agentQueryStringParamName);
 
 		if (!StringUtils.isEmpty(queryStringParam)) {
-			Iterator<UserAgent> iter = supportedAgents.iterator();
-			boolean found = false;
-			while (!found && iter.hasNext()) {
-				UserAgent userAgent = iter.next();
-				found = StringUtils.equalsIgnoreCase(queryStringParam, userAgent.getQueryStringParamValue());
-				if (found) {
-					templateFile = userAgent.getTemplatePrefix() + templateFile;
+			for (UserAgent userAgent : supportedAgents) {
+				if (StringUtils.equalsIgnoreCase(queryStringParam, userAgent.getQueryStringParamValue())) {
+					return userAgent.getTemplatePrefix();
 				}
 			}
 		} else { // get agent from header
@@ -75,24 +79,19 @@ public class UserAgentTemplateDetector {
 				agent = request.getHeader("User-Agent");
 			}
 			if (StringUtils.isNotEmpty(agent)) {
-				Iterator<UserAgent> iter = supportedAgents.iterator();
-				boolean found = false;
-				while (!found && iter.hasNext()) {
-					UserAgent userAgent = iter.next();
+				for (UserAgent userAgent : supportedAgents) {
                     if (StringUtils.isNotEmpty(userAgent.getDetectionRegex())) {
                         Pattern pattern = Pattern.compile(userAgent.getDetectionRegex());
                         Matcher matcher = pattern.matcher(agent);
-                        found = matcher.find();
-                        if (found) {
-                            templateFile = userAgent.getTemplatePrefix() + templateFile;
+                        if (matcher.find()) {
+                            return userAgent.getTemplatePrefix();
                         }
                     }
 				}
 			}
-
 		}
 
-		return templatePath + templateFile;
+		return StringUtils.EMPTY;
 	}
 
 }
@@ -16,15 +16,18 @@
 
 package org.craftercms.engine.model;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.craftercms.commons.converters.Converter;
-import org.craftercms.core.util.XmlUtils;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.XPathUtils;
 import org.dom4j.Element;
 
 /**
- * Base implementation of {@link SiteItem} that handles all XML related operations
+ * Base implementation of {@link SiteItem} that handles all XML related operations. When the content is cached, reads
+ * of simple field names are served from the {@link FieldSnapshot} of the root element instead of querying the DOM.
  *
  * @author joseross
  * @since 3.1.2
@@ -42,7 +45,12 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public Object get(String xpathExpression) {
         if (getRootElement() != null) {
-            Object result = XmlUtils.selectObject(getRootElement(), xpathExpression);
+            FieldSnapshot snapshot = getFieldSnapshot(xpathExpression);
+            if (snapshot != null && snapshot.hasValue(xpathExpression)) {
+                return snapshot.getValue(xpathExpression);
+            }
+
+            Object result = XPathUtils.selectObject(getRootElement(), xpathExpression);
             if (result instanceof Element) {
                 return modelFieldConverter.convert((Element) result);
             } else {
@@ -56,7 +64,12 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public String queryValue(String xpathExpression) {
         if (getRootElement() != null) {
-            return XmlUtils.selectSingleNodeValue(getRootElement(), xpathExpression);
+            FieldSnapshot snapshot = getFieldSnapshot(xpathExpression);
+            if (snapshot != null) {
+                return snapshot.getText(xpathExpression);
+            }
+
+            return XPathUtils.selectSingleNodeValue(getRootElement(), xpathExpression);
         } else {
             return null;
         }
@@ -65,7 +78,12 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public List<String> queryValues(String xpathExpression) {
         if (getRootElement() != null) {
-            return XmlUtils.selectNodeValues(getRootElement(), xpathExpression);
+            FieldSnapshot snapshot = getFieldSnapshot(xpathExpression);
+            if (snapshot != null) {
+                return new ArrayList<>(snapshot.getTexts(xpathExpression));
+            }
+
+            return XPathUtils.selectNodeValues(getRootElement(), xpathExpression);
         } else {
             return null;
         }
@@ -74,7 +92,7 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public String queryValue(String xpathExpression, Map<String, String> namespaceUris) {
         if (getRootElement() != null) {
-            return XmlUtils.selectSingleNodeValue(getRootElement(), xpathExpression, namespaceUris);
+            return XPathUtils.selectSingleNodeValue(getRootElement(), xpathExpression, namespaceUris);
         } else {
             return null;
         }
@@ -83,10 +101,27 @@ public abstract class AbstractXmlSiteItem implements SiteItem {
     @Override
     public List<String> queryValues(String xpathExpression, Map<String, String> namespaceUris) {
         if (getRootElement() != null) {
-            return XmlUtils.selectNodeValues(getRootElement(), xpathExpression, namespaceUris);
+            return XPathUtils.selectNodeValues(getRootElement(), xpathExpression, namespaceUris);
         } else {
             return null;
         }
     }
 
+    /**
+     * Returns the field snapshot of the root element if the expression is a simple field name and the content of the
+     * current site is cached, null otherwise.
+     */
+    protected FieldSnapshot getFieldSnapshot(String xpathExpression) {
+        if (XPathUtils.isElementName(xpathExpression) && isContentCached()) {
+            return FieldSnapshot.of(getRootElement(), modelFieldConverter);
+        } else {
+            return null;
+        }
+    }
+
+    protected boolean isContentCached() {
+        SiteContext siteContext = SiteContext.getCurrent();
+        return siteContext != null && siteContext.getContext() != null && siteContext.getContext().isCacheOn();
+    }
+
 }
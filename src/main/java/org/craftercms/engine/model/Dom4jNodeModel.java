@@ -27,7 +27,7 @@ import freemarker.template.TemplateModelException;
 import freemarker.template.TemplateNodeModel;
 import freemarker.template.TemplateScalarModel;
 import freemarker.template.TemplateSequenceModel;
-import org.craftercms.core.util.XmlUtils;
+import org.craftercms.engine.util.XPathUtils;
 import org.dom4j.Attribute;
 import org.dom4j.Branch;
 import org.dom4j.Element;
@@ -60,7 +60,7 @@ public class Dom4jNodeModel implements TemplateNodeModel, TemplateSequenceModel,
 
     @Override
     public TemplateModel get(String key) throws TemplateModelException {
-        Object result = XmlUtils.selectObject(node, key);
+        Object result = XPathUtils.selectObject(node, key);
         if (result != null) {
             return wrapper.wrap(result);
         } else {
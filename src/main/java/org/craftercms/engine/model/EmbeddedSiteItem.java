@@ -22,7 +22,7 @@ import java.util.Map;
 
 import org.craftercms.commons.converters.Converter;
 import org.craftercms.core.service.Item;
-import org.craftercms.core.util.XmlUtils;
+import org.craftercms.engine.util.XPathUtils;
 import org.dom4j.Document;
 import org.dom4j.Element;
 
@@ -56,7 +56,7 @@ public class EmbeddedSiteItem extends AbstractXmlSiteItem {
         super(modelFieldConverter);
         this.parentItem = parentItem;
         this.rootElement = rootElement;
-        this.componentId = XmlUtils.selectSingleNodeValue(rootElement, XPATH_OBJECT_ID);
+        this.componentId = XPathUtils.selectSingleNodeValue(rootElement, XPATH_OBJECT_ID);
     }
 
     @Override
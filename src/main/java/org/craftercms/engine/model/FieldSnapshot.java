@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.model;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.commons.converters.Converter;
+import org.dom4j.Element;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Immutable, already converted view of the direct child fields of a descriptor (or embedded component) element. Since
+ * cached descriptors are read-only, the snapshot of an element is built once and shared by all the {@link SiteItem}s
+ * that wrap it, so reading a field becomes a map lookup instead of an XPath query plus a conversion.
+ *
+ * <p>Snapshots are weakly keyed by the element instance and never reference the DOM, so they share the lifecycle of
+ * the cached item that owns the descriptor: they're dropped as soon as the item is evicted from the cache. For the
+ * same reason only the values that don't reference the DOM (strings, numbers, booleans and dates) are kept, the
+ * fields whose value is an element or a list of elements are still resolved against the DOM. Dates are copied every
+ * time they're returned, so a caller can't modify the value seen by the others.</p>
+ *
+ * <p>The snapshot reflects the element when it was built, which is the same contract of the cache: the descriptors
+ * of cached items are shared by all the requests and must not be modified.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class FieldSnapshot {
+
+    private static final int STRIPES = 16;
+
+    /**
+     * The snapshots, split in stripes by the identity of the element to reduce the contention of the locks
+     */
+    private static final Map<Element, FieldSnapshot>[] snapshots = createSnapshots();
+
+    protected final Map<String, Field> fields;
+
+    protected FieldSnapshot(Map<String, Field> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Returns the snapshot of the given element, building it if needed.
+     *
+     * @param element           the root element of the descriptor or component
+     * @param fieldConverter    the converter used for fields that appear only once
+     */
+    public static FieldSnapshot of(Element element, Converter<Element, Object> fieldConverter) {
+        Map<Element, FieldSnapshot> stripe = snapshots[(System.identityHashCode(element) & 0x7fffffff) % STRIPES];
+        FieldSnapshot snapshot = stripe.get(element);
+        if (snapshot == null) {
+            // Build outside of the lock, in the worst case two threads build the same snapshot
+            snapshot = build(element, fieldConverter);
+            stripe.put(element, snapshot);
+        }
+
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Element, FieldSnapshot>[] createSnapshots() {
+        Map<Element, FieldSnapshot>[] stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = Collections.synchronizedMap(new WeakHashMap<>());
+        }
+
+        return stripes;
+    }
+
+    protected static FieldSnapshot build(Element element, Converter<Element, Object> fieldConverter) {
+        Map<String, List<Element>> elementsByName = new LinkedHashMap<>();
+        for (Iterator<?> iter = element.elementIterator(); iter.hasNext();) {
+            Element child = (Element) iter.next();
+            // Only elements without namespace match a field name, same as in an XPath name test
+            if (StringUtils.isEmpty(child.getNamespaceURI())) {
+                elementsByName.computeIfAbsent(child.getName(), name -> new ArrayList<>(1)).add(child);
+            }
+        }
+
+        Map<String, Field> fields = new HashMap<>(elementsByName.size());
+        for (Map.Entry<String, List<Element>> entry : elementsByName.entrySet()) {
+            List<Element> elements = entry.getValue();
+            List<String> texts = new ArrayList<>(elements.size());
+            for (Element fieldElement : elements) {
+                texts.add(fieldElement.getText());
+            }
+
+            // Same result as the XPath query: the converted element if there's only one, else the list of elements,
+            // which is not kept since it references the DOM
+            Object value = null;
+            boolean hasValue = false;
+            if (elements.size() == 1) {
+                value = fieldConverter.convert(elements.get(0));
+                hasValue = isDetachedValue(value);
+            }
+
+            fields.put(entry.getKey(), new Field(hasValue? value : null, hasValue,
+                                                 Collections.unmodifiableList(texts)));
+        }
+
+        return new FieldSnapshot(Collections.unmodifiableMap(fields));
+    }
+
+    /**
+     * Indicates if the value can be kept in the snapshot: it's immutable (or copied when it's returned) and it
+     * doesn't reference the DOM.
+     */
+    protected static boolean isDetachedValue(Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean ||
+               value instanceof Character || value instanceof Date;
+    }
+
+    /**
+     * Indicates if the converted value of the field is in the snapshot. It's true for the fields that don't exist
+     * (their value is null), and false for the ones whose value references the DOM.
+     */
+    public boolean hasValue(String name) {
+        Field field = fields.get(name);
+        return field == null || field.hasValue;
+    }
+
+    /**
+     * Returns the converted value of the field, or null if the field doesn't exist or its value is not in the
+     * snapshot.
+     */
+    public Object getValue(String name) {
+        Field field = fields.get(name);
+        if (field == null) {
+            return null;
+        } else if (field.value instanceof Date) {
+            return ((Date) field.value).clone();
+        } else {
+            return field.value;
+        }
+    }
+
+    /**
+     * Returns the text of the first element of the field, or null if the field doesn't exist.
+     */
+    public String getText(String name) {
+        Field field = fields.get(name);
+        return field != null? field.texts.get(0) : null;
+    }
+
+    /**
+     * Returns the text of all the elements of the field, or an empty list if the field doesn't exist.
+     */
+    public List<String> getTexts(String name) {
+        Field field = fields.get(name);
+        return field != null? field.texts : Collections.emptyList();
+    }
+
+    /**
+     * Returns the names of the fields in the snapshot.
+     */
+    public Iterable<String> getFieldNames() {
+        return fields.keySet();
+    }
+
+    protected static class Field {
+
+        protected final Object value;
+        protected final boolean hasValue;
+        protected final List<String> texts;
+
+        protected Field(Object value, boolean hasValue, List<String> texts) {
+            this.value = value;
+            this.hasValue = hasValue;
+            this.texts = texts;
+        }
+
+    }
+
+}
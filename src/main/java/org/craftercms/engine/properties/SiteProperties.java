@@ -17,6 +17,7 @@ package org.craftercms.engine.properties;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.ArrayUtils;
+import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.CacheUtils;
 import org.craftercms.engine.util.ConfigUtils;
 
@@ -56,6 +57,33 @@ public class SiteProperties {
      */
     public static final String CACHE_WARMUP_DESCRIPTOR_FOLDERS_CONFIG_KEY = "cache.warmUp.descriptorFolders";
     public static final String CACHE_WARMUP_CONTENT_FOLDERS_CONFIG_KEY = "cache.warmUp.contentFolders";
+    public static final String CACHE_WARMUP_RENDER_URLS_CONFIG_KEY = "cache.warmUp.renderUrls";
+
+    /*
+     * Page output cache properties
+     */
+    public static final String PAGE_OUTPUT_CACHE_ENABLED_CONFIG_KEY = "cache.pageOutput.enabled";
+    public static final String PAGE_OUTPUT_CACHE_EXCLUDE_PATTERNS_CONFIG_KEY = "cache.pageOutput.excludePatterns";
+
+    /*
+     * Component fragment cache properties
+     */
+    public static final String COMPONENT_FRAGMENT_CACHE_ENABLED_CONFIG_KEY = "cache.componentFragments.enabled";
+
+    /*
+     * Parallel component rendering properties
+     */
+    public static final String PARALLEL_COMPONENT_RENDERING_ENABLED_CONFIG_KEY = "rendering.parallelComponents.enabled";
+
+    /*
+     * Early flush properties
+     */
+    public static final String EARLY_FLUSH_ENABLED_CONFIG_KEY = "rendering.earlyFlush.enabled";
+
+    /*
+     * Context eviction properties
+     */
+    public static final String CONTEXT_PINNED_CONFIG_KEY = "context.pinned";
 
     /*
      * Defaults
@@ -173,9 +201,10 @@ public class SiteProperties {
      * model and for both Freemarker and Groovy hosts.
      */
     public static boolean isDisableFullModelTypeConversion() {
-        Configuration config = ConfigUtils.getCurrentConfig();
-        if (config != null) {
-            return config.getBoolean(DISABLE_FULL_MODEL_TYPE_CONVERSION_CONFIG_KEY, false);
+        // Resolved once per site context, since it's checked on every field conversion
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null) {
+            return siteContext.getContentModelFieldConversion().isDisableFullModelTypeConversion();
         } else {
             return false;
         }
@@ -251,4 +280,80 @@ public class SiteProperties {
         return Collections.emptyMap();
     }
 
+    /**
+     * Gets the list of URLs of the site that should be rendered by the cache warm up, besides the ones configured
+     * for all sites.
+     */
+    public static String[] getRenderWarmUpUrls() {
+        Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            return config.getStringArray(CACHE_WARMUP_RENDER_URLS_CONFIG_KEY);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the rendered output of anonymous page requests should be cached.
+     */
+    public static boolean isPageOutputCacheEnabled() {
+        Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            return config.getBoolean(PAGE_OUTPUT_CACHE_ENABLED_CONFIG_KEY, false);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the patterns of the request URIs whose rendered output should never be cached (e.g. pages that depend
+     * on session or profile state).
+     */
+    public static String[] getPageOutputCacheExcludePatterns() {
+        Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            return config.getStringArray(PAGE_OUTPUT_CACHE_EXCLUDE_PATTERNS_CONFIG_KEY);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the rendered output of components should be cached by default (components can still opt in or
+     * out individually).
+     */
+    public static boolean isComponentFragmentCacheEnabled() {
+        Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            return config.getBoolean(COMPONENT_FRAGMENT_CACHE_ENABLED_CONFIG_KEY, false);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the components of the site's pages can be rendered in parallel.
+     */
+    public static boolean isParallelComponentRenderingEnabled() {
+        Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            return config.getBoolean(PARALLEL_COMPONENT_RENDERING_ENABLED_CONFIG_KEY, false);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if pages can flush the response before they're completely rendered (with
+     * {@code <@crafter.flush/>}). Pages of sites with early flush are streamed, so they don't have an ETag.
+     */
+    public static boolean isEarlyFlushEnabled() {
+        Configuration config = ConfigUtils.getCurrentConfig();
+        if (config != null) {
+            return config.getBoolean(EARLY_FLUSH_ENABLED_CONFIG_KEY, false);
+        } else {
+            return false;
+        }
+    }
+
 }
@@ -17,6 +17,7 @@
 package org.craftercms.engine.scripting.impl;
 
 import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.SiteSnapshotStore;
 import org.craftercms.engine.event.SiteContextInitializedEvent;
 import org.craftercms.engine.scripting.ScriptUrlTemplateScanner;
 import org.craftercms.engine.service.context.SiteContext;
@@ -24,11 +25,14 @@ import org.springframework.beans.factory.annotation.Required;
 import org.springframework.context.ApplicationListener;
 import org.springframework.web.util.UriTemplate;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * {@link ScriptUrlTemplateScanner} decorator that caches the result of an actual scan, and also pre-caches
- * the URL templates on site context creation.
+ * the URL templates on site context creation. If a {@link SiteSnapshotStore} is provided, the URL templates are also
+ * saved on disk so that the scan can be skipped the next time the context is created for the same content version.
  *
  * @author avasquez
  */
@@ -36,9 +40,11 @@ public class CachedScriptUrlTemplateScanner implements ScriptUrlTemplateScanner,
                                                        ApplicationListener<SiteContextInitializedEvent> {
 
     public static final String URL_TEMPLATES_CACHE_KEY_ELEM = "restScriptUrlTemplates";
+    public static final String URL_TEMPLATES_SNAPSHOT_NAME = "restScriptUrlTemplates";
 
     protected CacheTemplate cacheTemplate;
     protected ScriptUrlTemplateScanner actualScanner;
+    protected SiteSnapshotStore snapshotStore;
 
     @Required
     public void setCacheTemplate(CacheTemplate cacheTemplate) {
@@ -50,6 +56,10 @@ public class CachedScriptUrlTemplateScanner implements ScriptUrlTemplateScanner,
         this.actualScanner = actualScanner;
     }
 
+    public void setSnapshotStore(SiteSnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
     @Override
     public void onApplicationEvent(SiteContextInitializedEvent event) {
         // Pre-cache the url templates after a site context is initialized.
@@ -59,7 +69,25 @@ public class CachedScriptUrlTemplateScanner implements ScriptUrlTemplateScanner,
     @Override
     public List<UriTemplate> scan(final SiteContext siteContext) {
         return cacheTemplate.getObject(
-                siteContext.getContext(), () -> actualScanner.scan(siteContext), URL_TEMPLATES_CACHE_KEY_ELEM);
+                siteContext.getContext(), () -> loadUrlTemplates(siteContext), URL_TEMPLATES_CACHE_KEY_ELEM);
+    }
+
+    protected List<UriTemplate> loadUrlTemplates(SiteContext siteContext) {
+        if (snapshotStore == null) {
+            return actualScanner.scan(siteContext);
+        }
+
+        String[] snapshot = snapshotStore.load(siteContext, URL_TEMPLATES_SNAPSHOT_NAME, String[].class);
+        if (snapshot != null) {
+            return Arrays.stream(snapshot).map(UriTemplate::new).collect(Collectors.toList());
+        }
+
+        List<UriTemplate> urlTemplates = actualScanner.scan(siteContext);
+
+        snapshotStore.save(siteContext, URL_TEMPLATES_SNAPSHOT_NAME,
+                           urlTemplates.stream().map(UriTemplate::toString).toArray(String[]::new));
+
+        return urlTemplates;
     }
 
 }
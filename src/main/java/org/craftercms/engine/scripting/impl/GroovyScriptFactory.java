@@ -24,6 +24,7 @@ import org.craftercms.engine.exception.ScriptNotFoundException;
 import org.craftercms.engine.scripting.Script;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.groovy.SharedGroovyClasses;
 
 import java.io.FileNotFoundException;
 import java.util.Map;
@@ -45,6 +46,7 @@ public class GroovyScriptFactory implements ScriptFactory {
     protected SiteContext siteContext;
     protected GroovyScriptEngine scriptEngine;
     protected Map<String, Object> globalVariables;
+    protected SharedGroovyClasses.ClassSpace sharedClassSpace;
 
     public GroovyScriptFactory(SiteContext siteContext, ResourceConnector resourceConnector,
                                Map<String, Object> globalVariables, boolean enableScriptSandbox) {
@@ -63,6 +65,18 @@ public class GroovyScriptFactory implements ScriptFactory {
         this.globalVariables = globalVariables;
     }
 
+    /**
+     * Creates a factory that loads the scripts from the given shared class space while the scripts of the site are
+     * the same as the ones of the class space, and compiles them for the site otherwise. The parent class loader
+     * should not delegate to the shared class space, so that the scripts compiled for the site use its own classes.
+     */
+    public GroovyScriptFactory(SiteContext siteContext, ResourceConnector resourceConnector,
+                               ClassLoader parentClassLoader, Map<String, Object> globalVariables,
+                               boolean enableScriptSandbox, SharedGroovyClasses.ClassSpace sharedClassSpace) {
+        this(siteContext, resourceConnector, parentClassLoader, globalVariables, enableScriptSandbox);
+        this.sharedClassSpace = sharedClassSpace;
+    }
+
     @Override
     public String getScriptFileExtension() {
         return GROOVY_FILE_EXTENSION;
@@ -70,9 +84,9 @@ public class GroovyScriptFactory implements ScriptFactory {
 
     @Override
     public Script getScript(String url) throws ScriptException {
-        return siteContext.getCacheTemplate().getObject(siteContext.getContext(), () -> {
+        return siteContext.getFromCache(() -> {
             try {
-                return new GroovyScript(url,scriptEngine.loadScriptByName(url), globalVariables);
+                return new GroovyScript(url, getScriptEngine(url).loadScriptByName(url), globalVariables);
             } catch (Exception e) {
                 Throwable cause = e.getCause();
                 if (e instanceof ResourceException && cause instanceof FileNotFoundException) {
@@ -84,4 +98,12 @@ public class GroovyScriptFactory implements ScriptFactory {
         }, url, CACHE_CONST_KEY_ELEM_SCRIPT);
     }
 
+    protected GroovyScriptEngine getScriptEngine(String url) {
+        if (sharedClassSpace != null && sharedClassSpace.isShared(siteContext, url)) {
+            return sharedClassSpace.getScriptEngine();
+        } else {
+            return scriptEngine;
+        }
+    }
+
 }
@@ -21,6 +21,8 @@ import java.util.Map;
 
 import javax.servlet.ServletContext;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.craftercms.engine.scripting.ScriptFactory;
 import org.craftercms.engine.service.context.SiteContext;
 import org.craftercms.engine.util.GroovyScriptUtils;
@@ -40,6 +42,8 @@ public class ScriptJob implements Job {
     public static final String SCRIPT_URL_DATA_KEY = "scriptUrl";
     public static final String SERVLET_CONTEXT_DATA_KEY = "servletContext";
 
+    private static final Log logger = LogFactory.getLog(ScriptJob.class);
+
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
         JobDataMap dataMap = context.getJobDetail().getJobDataMap();
@@ -53,6 +57,14 @@ public class ScriptJob implements Job {
                 "No script factory associate to site context '" + siteContext.getSiteName() + "'");
         }
 
+        // Jobs of all sites share the same threads, so each site can only run a limited number at the same time.
+        // Waiting for a permit would block a shared thread, so the execution is skipped like a misfire instead
+        if (!siteContext.tryAcquireJobPermit()) {
+            logger.warn("Skipping execution of script job at " + scriptUrl + ": site '" + siteContext.getSiteName() +
+                        "' is already running the max number of concurrent jobs");
+            return;
+        }
+
         SiteContext.setCurrent(siteContext);
         try {
             Map<String, Object> variables = new HashMap<>();
@@ -63,6 +75,7 @@ public class ScriptJob implements Job {
             throw new JobExecutionException("Error executing script job at " + scriptUrl, e);
         } finally {
             SiteContext.clear();
+            siteContext.releaseJobPermit();
         }
     }
 
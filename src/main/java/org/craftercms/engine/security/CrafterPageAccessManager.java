@@ -15,7 +15,10 @@
  */
 package org.craftercms.engine.security;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.craftercms.engine.model.SiteItem;
@@ -28,6 +31,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import static org.apache.commons.lang3.StringUtils.lowerCase;
 import static org.apache.commons.lang3.StringUtils.removeStart;
 
 /**
@@ -81,6 +85,42 @@ public class CrafterPageAccessManager {
         }
     }
 
+    /**
+     * Returns true if there's no current authentication or if the current authentication is anonymous.
+     */
+    public boolean isAnonymous() {
+        Authentication auth = getCurrentAuthentication();
+
+        return auth == null || auth instanceof AnonymousAuthenticationToken;
+    }
+
+    /**
+     * Returns the roles of the current user, without the "ROLE_" prefix and in lower case (the same way they're
+     * compared against the page authorized roles). Returns an empty set if there's no current authentication.
+     */
+    public SortedSet<String> getCurrentRoles() {
+        Authentication auth = getCurrentAuthentication();
+        if (auth == null || auth.getAuthorities() == null) {
+            return Collections.emptySortedSet();
+        }
+
+        SortedSet<String> roles = new TreeSet<>();
+        for (GrantedAuthority authority : auth.getAuthorities()) {
+            roles.add(lowerCase(removeStart(authority.getAuthority(), ROLE_PREFIX)));
+        }
+
+        return roles;
+    }
+
+    protected Authentication getCurrentAuthentication() {
+        SecurityContext context = SecurityContextHolder.getContext();
+        if (context != null) {
+            return context.getAuthentication();
+        } else {
+            return null;
+        }
+    }
+
     protected List<String> getAuthorizedRolesForPage(SiteItem page) {
         return page.queryValues(authorizedRolesXPathQuery);
     }
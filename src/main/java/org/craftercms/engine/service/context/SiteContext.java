@@ -21,20 +21,30 @@ import org.apache.commons.lang3.time.StopWatch;
 import org.craftercms.commons.http.RequestContext;
 import org.craftercms.commons.lang.Callback;
 import org.craftercms.core.exception.CrafterException;
+import org.craftercms.core.service.CachingOptions;
 import org.craftercms.core.service.ContentStoreService;
 import org.craftercms.core.service.Context;
 import org.craftercms.core.url.UrlTransformationEngine;
 import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.CacheLoadCoalescer;
 import org.craftercms.engine.cache.SiteCacheWarmer;
+import org.craftercms.engine.cache.StaleCacheScope;
 import org.craftercms.engine.event.*;
 import org.craftercms.engine.exception.GraphQLBuildException;
 import org.craftercms.engine.exception.SiteContextInitializationException;
+import org.craftercms.engine.freemarker.TemplatePreParseResult;
+import org.craftercms.engine.freemarker.TemplatePreParser;
 import org.craftercms.engine.graphql.GraphQLFactory;
+import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.scripting.ScriptFactory;
+import org.craftercms.engine.util.ContentModelFieldConversion;
 import org.craftercms.engine.util.GroovyScriptUtils;
+import org.craftercms.engine.util.concurrent.SerialExecutorService;
+import org.craftercms.engine.util.concurrent.SiteAwareThreadPoolExecutor;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SandboxInterceptor;
 import org.quartz.Scheduler;
 import org.quartz.SchedulerException;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -46,10 +56,17 @@ import org.tuckey.web.filters.urlrewrite.UrlRewriter;
 
 import javax.servlet.ServletContext;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -82,6 +99,7 @@ public class SiteContext {
     protected CacheTemplate cacheTemplate;
     protected String siteName;
     protected Context context;
+    protected String rootFolderPath;
     protected boolean fallback;
     protected String staticAssetsPath;
     protected String templatesPath;
@@ -94,10 +112,14 @@ public class SiteContext {
     protected ScriptFactory scriptFactory;
     protected HierarchicalConfiguration config;
     protected ApplicationContext globalApplicationContext;
-    protected ConfigurableApplicationContext applicationContext;
+    protected volatile ConfigurableApplicationContext applicationContext;
+    protected volatile Callback<ConfigurableApplicationContext> applicationContextLoader;
+    protected long applicationContextRefreshTime;
     protected URLClassLoader classLoader;
     protected UrlRewriter urlRewriter;
     protected Scheduler scheduler;
+    protected boolean schedulerShared;
+    protected Semaphore jobPermits;
     protected GraphQLFactory graphQLFactory;
     protected SiteCacheWarmer cacheWarmer;
     protected HierarchicalConfiguration proxyConfig;
@@ -109,6 +131,20 @@ public class SiteContext {
     protected ExecutorService maintenanceTaskExecutor;
     protected GraphQL graphQL;
     protected State state;
+    protected CacheLoadCoalescer cacheLoadCoalescer;
+    protected long cacheMaxStaleness;
+    protected Executor cacheRefreshExecutor;
+    protected volatile StaleCacheScope staleCacheScope;
+    protected volatile ContentModelFieldConversion contentModelFieldConversion;
+    protected TemplatePreParser templatePreParser;
+    protected volatile TemplatePreParseResult templatePreParseResult;
+    protected long storeValidationInterval;
+    protected ScheduledExecutorService storeValidationExecutor;
+    protected ScheduledFuture<?> storeValidationTask;
+    protected volatile boolean storeValid;
+    protected volatile long lastAccessTime;
+    protected Executor initPhaseExecutor;
+    protected volatile Map<String, Long> initPhaseTimes;
 
     private ServletContext servletContext;
 
@@ -116,6 +152,10 @@ public class SiteContext {
     private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final Lock accessLock = readWriteLock.readLock();
     private final Lock shutdownLock = readWriteLock.writeLock();
+    private final Object applicationContextLock = new Object();
+    private final LongAdder activeRequests = new LongAdder();
+    private final ThreadLocal<Context> contextOverride = new ThreadLocal<>();
+    private final AtomicInteger contextOverrides = new AtomicInteger();
 
     protected SandboxInterceptor scriptSandbox;
 
@@ -199,12 +239,11 @@ public class SiteContext {
     }
 
     public SiteContext() {
-        // With this executor maintenance tasks are executed sequentially in the order they're received. This is
-        // important when a cache warm is submitted and a GraphQL re-build needs to wait till the cache warm is
-        // finished
-        maintenanceTaskExecutor = Executors.newSingleThreadExecutor();
         state = State.INITIALIZING;
         initializationLatch = new CountDownLatch(1);
+        cacheLoadCoalescer = new CacheLoadCoalescer();
+        storeValid = true;
+        lastAccessTime = System.currentTimeMillis();
     }
 
     public ContentStoreService getStoreService() {
@@ -231,14 +270,66 @@ public class SiteContext {
         this.siteName = siteName;
     }
 
+    /**
+     * Returns the context of the site, or the context that overrides it in the current thread (like the temporary
+     * context of a cache warm up).
+     */
     public Context getContext() {
+        // Only check the thread local while some thread has an override, which is rare
+        if (contextOverrides.get() > 0) {
+            Context override = contextOverride.get();
+            if (override != null) {
+                return override;
+            }
+        }
+
         return context;
     }
 
+    /**
+     * Makes {@link #getContext()} return the given context in the current thread, until
+     * {@link #clearContextOverride()} is called.
+     */
+    public void overrideContext(Context context) {
+        if (contextOverride.get() == null) {
+            contextOverrides.incrementAndGet();
+        }
+
+        contextOverride.set(context);
+    }
+
+    /**
+     * Removes the context override of the current thread, if any.
+     */
+    public void clearContextOverride() {
+        if (contextOverride.get() != null) {
+            contextOverride.remove();
+            contextOverrides.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns true if the context has been overridden in the current thread.
+     */
+    public boolean isContextOverridden() {
+        return contextOverrides.get() > 0 && contextOverride.get() != null;
+    }
+
     public void setContext(Context context) {
         this.context = context;
     }
 
+    /**
+     * Returns the resolved root folder path of the site content (e.g. {@code file:/opt/websites/mysite}).
+     */
+    public String getRootFolderPath() {
+        return rootFolderPath;
+    }
+
+    public void setRootFolderPath(String rootFolderPath) {
+        this.rootFolderPath = rootFolderPath;
+    }
+
     public boolean isFallback() {
         return fallback;
     }
@@ -325,6 +416,7 @@ public class SiteContext {
 
     public void setConfig(HierarchicalConfiguration config) {
         this.config = config;
+        this.contentModelFieldConversion = null;
     }
 
     public void setServletContext(ServletContext servletContext) {
@@ -337,9 +429,41 @@ public class SiteContext {
 
     public void setGlobalApplicationContext(ApplicationContext globalApplicationContext) {
         this.globalApplicationContext = globalApplicationContext;
+        this.contentModelFieldConversion = null;
     }
 
+    /**
+     * Returns the content model field converter and conversion flag of the site, resolved once on first use (but not
+     * kept until both the config and the global application context have been set).
+     */
+    public ContentModelFieldConversion getContentModelFieldConversion() {
+        ContentModelFieldConversion conversion = contentModelFieldConversion;
+        if (conversion == null) {
+            conversion = ContentModelFieldConversion.resolve(this);
+            if (config != null && globalApplicationContext != null) {
+                contentModelFieldConversion = conversion;
+            }
+        }
+
+        return conversion;
+    }
+
+    /**
+     * Returns the application context of the site. If the application context is loaded lazily, it's created the
+     * first time this method is called.
+     */
     public ConfigurableApplicationContext getApplicationContext() {
+        if (applicationContextLoader != null) {
+            synchronized (applicationContextLock) {
+                if (applicationContextLoader != null && state != State.DESTROYED) {
+                    logger.info("Creating application context for site '{}' on first access", siteName);
+
+                    applicationContext = applicationContextLoader.execute();
+                    applicationContextLoader = null;
+                }
+            }
+        }
+
         return applicationContext;
     }
 
@@ -347,6 +471,32 @@ public class SiteContext {
         this.applicationContext = applicationContext;
     }
 
+    /**
+     * Sets the callback used to create the application context of the site the first time it's requested.
+     */
+    public void setApplicationContextLoader(Callback<ConfigurableApplicationContext> applicationContextLoader) {
+        this.applicationContextLoader = applicationContextLoader;
+    }
+
+    /**
+     * Returns true if the application context has been created or if the site doesn't have one, false if it's
+     * still waiting to be created on first access.
+     */
+    public boolean isApplicationContextLoaded() {
+        return applicationContextLoader == null;
+    }
+
+    /**
+     * Returns the time in milliseconds it took to refresh the application context of the site.
+     */
+    public long getApplicationContextRefreshTime() {
+        return applicationContextRefreshTime;
+    }
+
+    public void setApplicationContextRefreshTime(long applicationContextRefreshTime) {
+        this.applicationContextRefreshTime = applicationContextRefreshTime;
+    }
+
     public URLClassLoader getClassLoader() {
         return classLoader;
     }
@@ -371,6 +521,95 @@ public class SiteContext {
         this.scheduler = scheduler;
     }
 
+    /**
+     * Indicates if the scheduler is shared with other sites, in which case only the jobs of the site are removed
+     * from it when the context is destroyed.
+     */
+    public void setSchedulerShared(boolean schedulerShared) {
+        this.schedulerShared = schedulerShared;
+    }
+
+    /**
+     * Returns the Quartz group of the jobs of the site. It includes the id of the store context, so that the jobs of
+     * a context that's being rebuilt don't collide with the ones of the current context.
+     */
+    public String getJobGroup() {
+        return siteName + ":" + context.getId();
+    }
+
+    /**
+     * Sets the max number of jobs of the site that can run at the same time, 0 or less for no limit.
+     */
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+        jobPermits = maxConcurrentJobs > 0 ? new Semaphore(maxConcurrentJobs) : null;
+    }
+
+    /**
+     * Indicates if the site is allowed to run another job right now. It doesn't wait, since the job threads are
+     * shared by all sites. Every call that returns true should be followed by a call to {@link #releaseJobPermit()}
+     * once the job finishes.
+     */
+    public boolean tryAcquireJobPermit() {
+        return jobPermits == null || jobPermits.tryAcquire();
+    }
+
+    public void releaseJobPermit() {
+        if (jobPermits != null) {
+            jobPermits.release();
+        }
+    }
+
+    /**
+     * Makes the maintenance tasks of the site run in the given shared executor instead of a dedicated thread. The
+     * tasks are still run one at a time in the order they're submitted.
+     */
+    public synchronized void setMaintenanceExecutor(Executor maintenanceExecutor) {
+        maintenanceTaskExecutor = new SerialExecutorService(maintenanceExecutor);
+    }
+
+    /**
+     * Returns the executor of the maintenance tasks, creating the dedicated thread of the site the first time if no
+     * shared executor was set.
+     */
+    protected synchronized ExecutorService getMaintenanceTaskExecutor() {
+        if (maintenanceTaskExecutor == null) {
+            // With this executor maintenance tasks are executed sequentially in the order they're received. This is
+            // important when a cache warm is submitted and a GraphQL re-build needs to wait till the cache warm is
+            // finished
+            maintenanceTaskExecutor = Executors.newSingleThreadExecutor();
+        }
+
+        return maintenanceTaskExecutor;
+    }
+
+    /**
+     * Returns true if the site has job scripts scheduled.
+     */
+    public boolean hasScheduledJobs() {
+        return scheduler != null;
+    }
+
+    /**
+     * Returns true if the site config marks the context as pinned, which means it should never be evicted.
+     */
+    public boolean isPinned() {
+        return config != null && config.getBoolean(SiteProperties.CONTEXT_PINNED_CONFIG_KEY, false);
+    }
+
+    /**
+     * Returns the time in milliseconds when the context was last accessed by a request.
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Records that the context has been accessed by a request.
+     */
+    public void touch() {
+        lastAccessTime = System.currentTimeMillis();
+    }
+
     public GraphQLFactory getGraphQLFactory() {
         return graphQLFactory;
     }
@@ -387,6 +626,80 @@ public class SiteContext {
         this.cacheWarmer = cacheWarmer;
     }
 
+    public long getCacheMaxStaleness() {
+        return cacheMaxStaleness;
+    }
+
+    /**
+     * Sets the max time in milliseconds the entries of the previous cache version can be served after a cache clear,
+     * while they're refreshed in the background (stale-while-revalidate). 0 or less disables the mode. Ignored if
+     * there's a cache warmer.
+     */
+    public void setCacheMaxStaleness(long cacheMaxStaleness) {
+        this.cacheMaxStaleness = cacheMaxStaleness;
+    }
+
+    /**
+     * Sets the executor used to refresh stale cache entries in the background.
+     */
+    public void setCacheRefreshExecutor(Executor cacheRefreshExecutor) {
+        this.cacheRefreshExecutor = cacheRefreshExecutor;
+    }
+
+    /**
+     * Returns true if after a cache clear the entries of the previous cache version are still served while they're
+     * refreshed in the background.
+     */
+    public boolean isStaleWhileRevalidateEnabled() {
+        return cacheWarmer == null && cacheMaxStaleness > 0 && cacheRefreshExecutor != null;
+    }
+
+    /**
+     * Sets the pre-parser used to parse all the FreeMarker templates of the site during init. If not set, templates
+     * are parsed on first use.
+     */
+    public void setTemplatePreParser(TemplatePreParser templatePreParser) {
+        this.templatePreParser = templatePreParser;
+    }
+
+    /**
+     * Returns the result of the template pre-parsing done during init, or null if templates were not pre-parsed.
+     */
+    public TemplatePreParseResult getTemplatePreParseResult() {
+        return templatePreParseResult;
+    }
+
+    /**
+     * Sets the interval in milliseconds in which the content store of the site is validated in the background. 0 or
+     * less means the store is validated every time {@link #isValid()} is called.
+     */
+    public void setStoreValidationInterval(long storeValidationInterval) {
+        this.storeValidationInterval = storeValidationInterval;
+    }
+
+    /**
+     * Sets the executor used to validate the content store in the background.
+     */
+    public void setStoreValidationExecutor(ScheduledExecutorService storeValidationExecutor) {
+        this.storeValidationExecutor = storeValidationExecutor;
+    }
+
+    /**
+     * Sets the executor used to run the independent phases of the initialization concurrently. If not set the phases
+     * are run one after another.
+     */
+    public void setInitPhaseExecutor(Executor initPhaseExecutor) {
+        this.initPhaseExecutor = initPhaseExecutor;
+    }
+
+    /**
+     * Returns the time in milliseconds that each phase of the last initialization took, or null if the context
+     * hasn't been initialized yet.
+     */
+    public Map<String, Long> getInitPhaseTimes() {
+        return initPhaseTimes;
+    }
+
     public void setInitTimeout(final long initTimeout) {
         this.initTimeout = initTimeout;
     }
@@ -431,16 +744,86 @@ public class SiteContext {
 
     public boolean isValid() throws CrafterException {
         try {
-            if (state == State.INITIALIZING) {
-                logger.debug("Waiting for initialization of {}", this);
-                initializationLatch.await(initTimeout, TimeUnit.MILLISECONDS);
-            }
-            return state == State.READY && storeService.validate(context);
+            return awaitInitialization() && isStoreValid();
         } catch (InterruptedException e) {
             throw new CrafterException("Error while waiting for initialization of " + this);
         }
     }
 
+    /**
+     * Waits until the context finishes initializing (or the init timeout is reached).
+     *
+     * @return true if the context is ready
+     */
+    public boolean awaitInitialization() throws InterruptedException {
+        if (state == State.INITIALIZING) {
+            logger.debug("Waiting for initialization of {}", this);
+            initializationLatch.await(initTimeout, TimeUnit.MILLISECONDS);
+        }
+        return state == State.READY;
+    }
+
+    /**
+     * Returns true if the content store of the site is valid. When the store is validated in the background this
+     * just returns the result of the last validation, so it's cheap enough to be called on every request.
+     */
+    protected boolean isStoreValid() {
+        if (isStoreValidatedInBackground()) {
+            return storeValid;
+        } else {
+            return storeService.validate(context);
+        }
+    }
+
+    protected boolean isStoreValidatedInBackground() {
+        return storeValidationInterval > 0 && storeValidationExecutor != null;
+    }
+
+    /**
+     * Validates the content store of the site and keeps the result, which is then returned by {@link #isValid()}.
+     */
+    protected void validateStore() {
+        boolean valid;
+        try {
+            valid = storeService.validate(context);
+        } catch (Exception e) {
+            logger.error("Error validating the content store of site '{}'", siteName, e);
+
+            valid = false;
+        }
+
+        if (valid != storeValid) {
+            if (valid) {
+                logger.info("Content store of site '{}' is valid again", siteName);
+            } else {
+                logger.warn("Content store of site '{}' is not valid anymore", siteName);
+            }
+        }
+
+        storeValid = valid;
+    }
+
+    protected void startStoreValidation() {
+        if (isStoreValidatedInBackground()) {
+            try {
+                storeValidationTask = storeValidationExecutor.scheduleWithFixedDelay(
+                    this::validateStore, storeValidationInterval, storeValidationInterval, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Unable to schedule the content store validation of site '{}', the store will be " +
+                            "validated on every request", siteName);
+
+                storeValidationExecutor = null;
+            }
+        }
+    }
+
+    protected void stopStoreValidation() {
+        if (storeValidationTask != null) {
+            storeValidationTask.cancel(false);
+            storeValidationTask = null;
+        }
+    }
+
     public State getState() {
         return state;
     }
@@ -456,12 +839,36 @@ public class SiteContext {
                     logger.info("<Initializing context site: " + siteName + ">");
                     logger.info("--------------------------------------------------");
 
-                    if (cacheWarmer != null) {
-                        cacheWarmer.warmUpCache(this, false);
-                    }
-
-                    buildGraphQLSchema();
-                    executeInitScript();
+                    Map<String, Long> phaseTimes = Collections.synchronizedMap(new LinkedHashMap<>());
+                    Executor phaseExecutor = initPhaseExecutor != null ?
+                        new SiteAwareThreadPoolExecutor(this, initPhaseExecutor) : null;
+
+                    // The cache warm up, template pre-parsing and GraphQL build only read from the store, so they
+                    // can run at the same time. The init script can use the cache and the GraphQL schema
+                    CompletableFuture<Void> cacheWarmUp = runInitPhase("cacheWarmUp", () -> {
+                        if (cacheWarmer != null) {
+                            cacheWarmer.warmUpCache(this, false);
+                        }
+                    }, phaseExecutor, phaseTimes);
+                    CompletableFuture<Void> templatePreParse = runInitPhase("templatePreParse", () -> {
+                        if (templatePreParser != null) {
+                            templatePreParseResult = templatePreParser.preParse(this);
+                        }
+                    }, phaseExecutor, phaseTimes);
+                    CompletableFuture<Void> graphQLSchemaBuild = runInitPhase("graphQLSchemaBuild",
+                                                                              this::buildGraphQLSchema,
+                                                                              phaseExecutor, phaseTimes);
+                    CompletableFuture<Void> initScript = runInitPhase("initScript", this::executeInitScript,
+                                                                      phaseExecutor, phaseTimes, cacheWarmUp,
+                                                                      graphQLSchemaBuild);
+
+                    CompletableFuture.allOf(templatePreParse, initScript).join();
+
+                    initPhaseTimes = Collections.unmodifiableMap(phaseTimes);
+
+                    logger.info("Init phase times in ms for site '{}': {}", siteName, initPhaseTimes);
+
+                    startStoreValidation();
 
                     state = State.READY;
 
@@ -469,7 +876,7 @@ public class SiteContext {
                     logger.info("</Initializing context site: " + siteName + ">");
                     logger.info("--------------------------------------------------");
 
-                    publishEvent(new SiteContextInitializedEvent(this));
+                    publishEvent(new SiteContextInitializedEvent(this, initPhaseTimes));
                 } catch (Exception e) {
                     // If there is any exception during the init process then release the resources created so far
                     this.destroy();
@@ -482,23 +889,33 @@ public class SiteContext {
 
             if (waitTillFinished) {
                 // Done through the executor so that maintenance tasks submitted while init are queued
-                Future<?> future = maintenanceTaskExecutor.submit(initTask);
+                Future<?> future = getMaintenanceTaskExecutor().submit(initTask);
                 try {
                     future.get();
                 } catch (InterruptedException | ExecutionException e) {
                     throw new SiteContextInitializationException("Error while waiting for context init", e);
                 }
             } else {
-                maintenanceTaskExecutor.execute(initTask);
+                getMaintenanceTaskExecutor().execute(initTask);
             }
         }
     }
 
     public void startCacheClear() {
-        maintenanceTaskExecutor.execute(() -> {
+        startCacheClear(null);
+    }
+
+    /**
+     * Starts a cache clear that, if there's a cache warmer, only evicts and warms up again the given changed paths
+     * when possible, instead of switching to a new cache.
+     *
+     * @param changedPaths the paths changed by the deployment, or null if they're unknown
+     */
+    public void startCacheClear(Collection<String> changedPaths) {
+        getMaintenanceTaskExecutor().execute(() -> {
             SiteContext.setCurrent(this);
             try {
-                cacheClear();
+                cacheClear(changedPaths);
             } finally {
                 SiteContext.clear();
             }
@@ -506,7 +923,7 @@ public class SiteContext {
     }
 
     public void startGraphQLSchemaBuild() throws GraphQLBuildException {
-        maintenanceTaskExecutor.execute(() -> {
+        getMaintenanceTaskExecutor().execute(() -> {
             SiteContext.setCurrent(this);
             try {
                 buildGraphQLSchema();
@@ -519,7 +936,9 @@ public class SiteContext {
     public void destroy() throws CrafterException {
         boolean locked;
         try {
-            logger.debug("Getting shutdown lock for context {}", this);
+            // The requests hold the access lock while they use the context (like jobs and maintenance tasks), so
+            // the shutdown lock already waits for them to finish
+            logger.debug("Getting shutdown lock for context {} with {} active requests", this, getActiveRequests());
             locked = shutdownLock.tryLock(shutdownTimeout, TimeUnit.MINUTES);
             try {
                 if (!locked) {
@@ -532,17 +951,30 @@ public class SiteContext {
 
                 publishEvent(new SiteContextDestroyedEvent(this));
 
-                maintenanceTaskExecutor.shutdownNow();
+                getMaintenanceTaskExecutor().shutdownNow();
+
+                stopStoreValidation();
+
+                removeStaleCacheScope();
 
                 storeService.destroyContext(context);
 
                 if (scheduler != null) {
                     try {
-                        scheduler.shutdown();
+                        if (schedulerShared) {
+                            scheduler.deleteJobs(new ArrayList<>(
+                                scheduler.getJobKeys(GroupMatcher.jobGroupEquals(getJobGroup()))));
+                        } else {
+                            scheduler.shutdown();
+                        }
                     } catch (SchedulerException e) {
                         throw new CrafterException("Unable to shutdown scheduler", e);
                     }
                 }
+                synchronized (applicationContextLock) {
+                    // Don't create the application context if it hasn't been requested yet
+                    applicationContextLoader = null;
+                }
                 if (applicationContext != null) {
                     try {
                         applicationContext.close();
@@ -570,16 +1002,174 @@ public class SiteContext {
         }
     }
 
+    /**
+     * Records that a request started using this context. Only used for monitoring: waiting for the requests on
+     * destroy is done by the shutdown lock.
+     */
+    public void requestStarted() {
+        activeRequests.increment();
+    }
+
+    /**
+     * Records that a request stopped using this context.
+     */
+    public void requestFinished() {
+        activeRequests.decrement();
+    }
+
+    /**
+     * Returns the number of requests currently using this context.
+     */
+    public long getActiveRequests() {
+        return activeRequests.sum();
+    }
+
+    /**
+     * Returns the {@link CacheLoadCoalescer} used to avoid concurrent loads of the same missing cache key.
+     */
+    public CacheLoadCoalescer getCacheLoadCoalescer() {
+        return cacheLoadCoalescer;
+    }
+
+    /**
+     * Returns the item from the cache of this site context. On a cache miss, concurrent loads of the same key are
+     * coalesced so the loader is only executed once.
+     */
     public <T> T getFromCache(Callback<T> loader, Object... keyElements) {
-        return cacheTemplate.getObject(context, loader, keyElements);
+        return getFromCache((CachingOptions) null, loader, keyElements);
+    }
+
+    /**
+     * Returns the item from the cache of this site context, using the specified caching options when the item is
+     * loaded. On a cache miss, concurrent loads of the same key are coalesced so the loader is only executed once. If
+     * the cache was recently cleared in stale-while-revalidate mode and the item is still in the previous cache
+     * version, the stale item is returned and refreshed in the background.
+     */
+    public <T> T getFromCache(CachingOptions cachingOptions, Callback<T> loader, Object... keyElements) {
+        return getFromCache(getContext(), cachingOptions, loader, keyElements);
+    }
+
+    /**
+     * Returns the item from the cache of the given store context, like
+     * {@link #getFromCache(CachingOptions, Callback, Object...)}. Used by the store adapters, which receive the
+     * context from the store service. Stale items are only served when the given context is the current context of
+     * the site.
+     */
+    public <T> T getFromCache(Context context, CachingOptions cachingOptions, Callback<T> loader,
+                              Object... keyElements) {
+        // Stale items shouldn't be used when the context is overridden, since it's not the current cache version
+        StaleCacheScope staleScope = isContextOverridden() || context != this.context? null : getStaleCacheScope();
+        if (staleScope != null) {
+            T item = getIfCached(context, cachingOptions, keyElements);
+            if (item != null) {
+                return item;
+            }
+
+            item = getIfCached(staleScope.getContext(), cachingOptions, keyElements);
+            if (item != null) {
+                refreshInBackground(staleScope, context, cachingOptions, loader, keyElements);
+
+                return item;
+            }
+        }
+
+        return getCacheLoadCoalescer().getObject(getCacheTemplate(), context, cachingOptions, loader, keyElements);
+    }
+
+    /**
+     * Returns the scope of the previous cache version that can still be served, or null if there's none or it
+     * has already expired.
+     */
+    public StaleCacheScope getStaleCacheScope() {
+        StaleCacheScope staleScope = staleCacheScope;
+        if (staleScope != null && staleScope.isExpired()) {
+            removeStaleCacheScope();
+
+            return null;
+        }
+
+        return staleScope;
+    }
+
+    /**
+     * Returns the item if it's already in the cache of the given context, without loading it.
+     */
+    protected <T> T getIfCached(Context context, CachingOptions cachingOptions, Object... keyElements) {
+        return getCacheLoadCoalescer().getIfCached(getCacheTemplate(), context, cachingOptions, keyElements);
+    }
+
+    protected <T> void refreshInBackground(StaleCacheScope staleScope, Context context, CachingOptions cachingOptions,
+                                           Callback<T> loader, Object... keyElements) {
+        if (!staleScope.startRefresh(keyElements)) {
+            // Already being refreshed by another thread
+            return;
+        }
+
+        try {
+            cacheRefreshExecutor.execute(() -> {
+                SiteContext.setCurrent(this);
+                try {
+                    getCacheLoadCoalescer().getObject(getCacheTemplate(), context, cachingOptions, loader,
+                                                      keyElements);
+                } catch (Exception e) {
+                    logger.debug("Background refresh of stale cache item {} for site '{}' failed",
+                                 Arrays.toString(keyElements), siteName, e);
+                } finally {
+                    staleScope.finishRefresh(keyElements);
+                    SiteContext.clear();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The stale item will be served again and the refresh retried on a later access
+            staleScope.finishRefresh(keyElements);
+        }
     }
 
-    protected void cacheClear() {
+    protected synchronized void removeStaleCacheScope() {
+        if (staleCacheScope != null) {
+            logger.debug("Removing stale cache {} of site '{}'", staleCacheScope, siteName);
+
+            cacheTemplate.getCacheService().removeScope(staleCacheScope.getContext());
+            staleCacheScope = null;
+        }
+    }
+
+    /**
+     * Switches to a new empty cache version, keeping the current one as stale so that its entries can still be
+     * served (and refreshed in the background) until the max staleness is reached.
+     */
+    protected synchronized void switchToStaleCache() {
+        long newCacheVersion = System.nanoTime();
+
+        Context staleContext = context.clone();
+        Context newContext = context.clone();
+        newContext.setCacheVersion(newCacheVersion);
+
+        cacheTemplate.getCacheService().addScope(newContext);
+
+        // Only the previous version is kept as stale, any older one is dropped
+        removeStaleCacheScope();
+
+        context.setCacheVersion(newCacheVersion);
+        staleCacheScope = new StaleCacheScope(staleContext, cacheMaxStaleness);
+
+        logger.info("Cache of site '{}' switched to a new version, stale entries will be served for at most {} secs",
+                    siteName, TimeUnit.MILLISECONDS.toSeconds(cacheMaxStaleness));
+    }
+
+    protected void cacheClear(Collection<String> changedPaths) {
         publishEvent(new CacheClearStartedEvent(this));
 
-        // If there's a cache warmer, do a content cache switch instead of aclear
+        // If there's a cache warmer, do a content cache switch instead of aclear, unless the changed paths can be
+        // warmed up in the current cache
         if (cacheWarmer != null) {
-            cacheWarmer.warmUpCache(this, true);
+            if (changedPaths == null || !cacheWarmer.warmUpCache(this, changedPaths)) {
+                cacheWarmer.warmUpCache(this, true);
+            }
+            // Clear Freemarker cache
+            freeMarkerConfig.getConfiguration().clearTemplateCache();
+        } else if (isStaleWhileRevalidateEnabled()) {
+            switchToStaleCache();
             // Clear Freemarker cache
             freeMarkerConfig.getConfiguration().clearTemplateCache();
         } else {
@@ -591,6 +1181,42 @@ public class SiteContext {
         publishEvent(new CacheClearCompletedEvent(this));
     }
 
+    /**
+     * Runs a phase of the initialization after the given phases have finished.
+     *
+     * @param name          the name of the phase, used for the timings
+     * @param phase         the phase to run
+     * @param executor      the executor to run the phase, or null to run it in the thread that finishes the last
+     *                      dependency
+     * @param phaseTimes    the map where the time of the phase should be recorded
+     * @param dependencies  the phases that need to finish before this one
+     *
+     * @return the future of the phase
+     */
+    protected CompletableFuture<Void> runInitPhase(String name, Runnable phase, Executor executor,
+                                                   Map<String, Long> phaseTimes,
+                                                   CompletableFuture<?>... dependencies) {
+        Runnable timedPhase = () -> {
+            StopWatch stopWatch = new StopWatch();
+            stopWatch.start();
+
+            phase.run();
+
+            stopWatch.stop();
+
+            phaseTimes.put(name, stopWatch.getTime());
+
+            logger.debug("Init phase '{}' of site '{}' completed in {} ms", name, siteName, stopWatch.getTime());
+        };
+
+        CompletableFuture<Void> dependenciesFuture = CompletableFuture.allOf(dependencies);
+        if (executor != null) {
+            return dependenciesFuture.thenRunAsync(timedPhase, executor);
+        } else {
+            return dependenciesFuture.thenRun(timedPhase);
+        }
+    }
+
     protected void buildGraphQLSchema() {
         logger.info("Starting GraphQL schema build for site '{}'", siteName);
 
@@ -631,6 +1257,10 @@ public class SiteContext {
         }
     }
 
+    /**
+     * Publishes an event of the site in its application context, or in the global one if the site doesn't have one
+     * or it hasn't been created yet (lazy application contexts are only deferred when they don't have listeners).
+     */
     protected void publishEvent(SiteEvent event) {
         if (applicationContext != null) {
             applicationContext.publishEvent(event);
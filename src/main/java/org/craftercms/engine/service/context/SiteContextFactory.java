@@ -18,6 +18,7 @@ package org.craftercms.engine.service.context;
 import groovy.lang.GroovyClassLoader;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.config.ConfigurationException;
@@ -31,6 +32,7 @@ import org.craftercms.core.url.UrlTransformationEngine;
 import org.craftercms.core.util.cache.CacheTemplate;
 import org.craftercms.engine.cache.SiteCacheWarmer;
 import org.craftercms.engine.exception.SiteContextCreationException;
+import org.craftercms.engine.freemarker.TemplatePreParser;
 import org.craftercms.engine.graphql.GraphQLFactory;
 import org.craftercms.engine.macro.MacroResolver;
 import org.craftercms.engine.scripting.ScriptFactory;
@@ -41,25 +43,35 @@ import org.craftercms.engine.util.config.SiteAwarePublishingTargetResolver;
 import org.craftercms.engine.util.groovy.ContentStoreGroovyResourceLoader;
 import org.craftercms.engine.util.groovy.ContentStoreResourceConnector;
 import org.craftercms.engine.util.groovy.Dom4jExtension;
+import org.craftercms.engine.util.groovy.SharedGroovyClasses;
 import org.craftercms.engine.util.quartz.JobContext;
 import org.craftercms.engine.util.spring.ContentStoreResourceLoader;
+import org.craftercms.engine.util.spring.LazyInitBeanDefinitionDocumentReader;
 import org.craftercms.engine.util.spring.servlet.i18n.ChainLocaleResolver;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.Whitelist;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.blacklists.Blacklist;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.groovy.SandboxInterceptor;
 import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.PermitAllWhitelist;
 import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.web.context.ServletContextAware;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
@@ -70,9 +82,12 @@ import javax.servlet.ServletContext;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Method;
 import java.net.URLClassLoader;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static java.util.Collections.singletonList;
@@ -96,6 +111,10 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     public static final long DEFAULT_SHUTDOWN_TIMEOUT = 5;
     public static final String DEFAULT_PUBLISHING_TARGET_MACRO_NAME = "publishingTarget";
     public static final String CONFIG_KEY_ALLOWED_TEMPLATE_PATHS = "templates.allowed";
+    public static final String CONFIG_KEY_CACHE_MAX_STALENESS = "cache.staleWhileRevalidate.maxStaleness";
+    public static final long DEFAULT_CACHE_MAX_STALENESS = 300;
+    public static final long DEFAULT_CACHE_LOAD_MAX_WAIT = 30;
+    public static final String CONFIG_KEY_TEMPLATES_PRE_PARSE_ENABLED = "templates.preParse.enabled";
 
     private static final Log logger = LogFactory.getLog(SiteContextFactory.class);
 
@@ -130,6 +149,20 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     protected GraphQLFactory graphQLFactory;
     protected boolean cacheWarmUpEnabled;
     protected SiteCacheWarmer cacheWarmer;
+    protected boolean cacheStaleWhileRevalidateEnabled;
+    protected long cacheMaxStaleness;
+    protected Executor cacheRefreshExecutor;
+    protected long cacheLoadMaxWait;
+    protected boolean templatePreParseEnabled;
+    protected TemplatePreParser templatePreParser;
+    protected long storeValidationInterval;
+    protected ScheduledExecutorService storeValidationExecutor;
+    protected Executor initPhaseExecutor;
+    protected Executor maintenanceExecutor;
+    protected boolean sharedMaintenanceExecutorEnabled;
+    protected Scheduler jobScheduler;
+    protected boolean sharedJobSchedulerEnabled;
+    protected int maxConcurrentJobsPerSite;
     protected long initTimeout;
     protected EncryptionAwareConfigurationReader configurationReader;
     protected boolean disableVariableRestrictions;
@@ -138,6 +171,8 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     protected PublishingTargetResolver publishingTargetResolver;
     protected String publishingTargetMacroName;
     protected boolean enableScriptSandbox;
+    protected SharedGroovyClasses sharedGroovyClasses;
+    protected boolean lazyApplicationContext;
     protected boolean enableSandboxBlacklist;
     protected String sandboxBlacklist;
     protected boolean enableExpressions;
@@ -151,6 +186,8 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         initTimeout = DEFAULT_INIT_TIMEOUT;
         defaultPublicBeans = new String[0];
         shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+        cacheMaxStaleness = DEFAULT_CACHE_MAX_STALENESS;
+        cacheLoadMaxWait = DEFAULT_CACHE_LOAD_MAX_WAIT;
         publishingTargetMacroName = DEFAULT_PUBLISHING_TARGET_MACRO_NAME;
     }
 
@@ -298,6 +335,89 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         this.cacheWarmer = cacheWarmer;
     }
 
+    public void setCacheStaleWhileRevalidateEnabled(boolean cacheStaleWhileRevalidateEnabled) {
+        this.cacheStaleWhileRevalidateEnabled = cacheStaleWhileRevalidateEnabled;
+    }
+
+    /**
+     * Sets the default max time in seconds the entries of the previous cache version can be served after a cache
+     * clear. Sites can override it in their config.
+     */
+    public void setCacheMaxStaleness(long cacheMaxStaleness) {
+        this.cacheMaxStaleness = cacheMaxStaleness;
+    }
+
+    public void setCacheRefreshExecutor(Executor cacheRefreshExecutor) {
+        this.cacheRefreshExecutor = cacheRefreshExecutor;
+    }
+
+    /**
+     * Sets the max time in seconds a request waits for another request that is loading the same missing cache item,
+     * before loading it itself.
+     */
+    public void setCacheLoadMaxWait(long cacheLoadMaxWait) {
+        this.cacheLoadMaxWait = cacheLoadMaxWait;
+    }
+
+    /**
+     * Indicates if the FreeMarker templates of the sites should be parsed during context init. Sites can override it
+     * in their config.
+     */
+    public void setTemplatePreParseEnabled(boolean templatePreParseEnabled) {
+        this.templatePreParseEnabled = templatePreParseEnabled;
+    }
+
+    public void setTemplatePreParser(TemplatePreParser templatePreParser) {
+        this.templatePreParser = templatePreParser;
+    }
+
+    /**
+     * Sets the interval in seconds in which the content store of each site is validated in the background. 0 or less
+     * means the store is validated on every request.
+     */
+    public void setStoreValidationInterval(long storeValidationInterval) {
+        this.storeValidationInterval = storeValidationInterval;
+    }
+
+    public void setStoreValidationExecutor(ScheduledExecutorService storeValidationExecutor) {
+        this.storeValidationExecutor = storeValidationExecutor;
+    }
+
+    /**
+     * Sets the executor shared by all sites to run their maintenance tasks, used only when
+     * {@link #setSharedMaintenanceExecutorEnabled(boolean)} is true. Otherwise each site uses its own thread.
+     */
+    public void setMaintenanceExecutor(Executor maintenanceExecutor) {
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    public void setSharedMaintenanceExecutorEnabled(boolean sharedMaintenanceExecutorEnabled) {
+        this.sharedMaintenanceExecutorEnabled = sharedMaintenanceExecutorEnabled;
+    }
+
+    /**
+     * Sets the scheduler shared by all sites to run their job scripts, used only when
+     * {@link #setSharedJobSchedulerEnabled(boolean)} is true. Otherwise each site with jobs gets its own scheduler.
+     */
+    public void setJobScheduler(Scheduler jobScheduler) {
+        this.jobScheduler = jobScheduler;
+    }
+
+    public void setSharedJobSchedulerEnabled(boolean sharedJobSchedulerEnabled) {
+        this.sharedJobSchedulerEnabled = sharedJobSchedulerEnabled;
+    }
+
+    /**
+     * Sets the max number of job scripts that each site can run at the same time, 0 or less for no limit.
+     */
+    public void setMaxConcurrentJobsPerSite(int maxConcurrentJobsPerSite) {
+        this.maxConcurrentJobsPerSite = maxConcurrentJobsPerSite;
+    }
+
+    public void setInitPhaseExecutor(Executor initPhaseExecutor) {
+        this.initPhaseExecutor = initPhaseExecutor;
+    }
+
     public void setInitTimeout(final long initTimeout) {
         this.initTimeout = initTimeout;
     }
@@ -327,6 +447,10 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         this.enableScriptSandbox = enableScriptSandbox;
     }
 
+    public void setSharedGroovyClasses(SharedGroovyClasses sharedGroovyClasses) {
+        this.sharedGroovyClasses = sharedGroovyClasses;
+    }
+
     public void setEnableSandboxBlacklist(boolean enableSandboxBlacklist) {
         this.enableSandboxBlacklist = enableSandboxBlacklist;
     }
@@ -335,6 +459,16 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         this.sandboxBlacklist = sandboxBlacklist;
     }
 
+    /**
+     * Sets if the application context of each site should be created the first time it's used instead of when the
+     * site context is created. The singletons of lazy application contexts are also lazy-init by default. The
+     * application contexts that define event listeners are always created with the site context, so that they
+     * receive the events of the site.
+     */
+    public void setLazyApplicationContext(boolean lazyApplicationContext) {
+        this.lazyApplicationContext = lazyApplicationContext;
+    }
+
     public void setEnableExpressions(boolean enableExpressions) {
         this.enableExpressions = enableExpressions;
     }
@@ -365,6 +499,7 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
             siteContext.setCacheTemplate(cacheTemplate);
             siteContext.setSiteName(siteName);
             siteContext.setContext(context);
+            siteContext.setRootFolderPath(resolvedRootFolderPath);
             siteContext.setStaticAssetsPath(staticAssetsPath);
             siteContext.setTemplatesPath(templatesPath);
             siteContext.setInitScriptPath(initScriptPath);
@@ -374,6 +509,14 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
             siteContext.setControllerScriptsPath(controllerScriptsPath);
             siteContext.setGraphQLFactory(graphQLFactory);
             siteContext.setShutdownTimeout(shutdownTimeout);
+            siteContext.setStoreValidationInterval(TimeUnit.SECONDS.toMillis(storeValidationInterval));
+            siteContext.setStoreValidationExecutor(storeValidationExecutor);
+            siteContext.setInitPhaseExecutor(initPhaseExecutor);
+            siteContext.setMaxConcurrentJobs(maxConcurrentJobsPerSite);
+
+            if (sharedMaintenanceExecutorEnabled && maintenanceExecutor != null) {
+                siteContext.setMaintenanceExecutor(maintenanceExecutor);
+            }
 
             if (disableVariableRestrictions) {
                 siteContext.setServletContext(servletContext);
@@ -412,8 +555,6 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
             configureScriptSandbox(siteContext, resourceLoader);
             URLClassLoader classLoader = getClassLoader(siteContext);
             ScriptFactory scriptFactory = getScriptFactory(siteContext, classLoader);
-            ConfigurableApplicationContext appContext = getApplicationContext(siteContext, classLoader, config,
-                                                                              resolvedAppContextPaths, resourceLoader);
             UrlRewriter urlRewriter = getUrlRewriter(siteContext, resolvedUrlRewriteConfPaths, resourceLoader);
             HierarchicalConfiguration proxyConfig = getProxyConfig(siteContext, resolvedProxyConfPaths, resourceLoader);
             HierarchicalConfiguration translationConfig =
@@ -422,13 +563,41 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
             siteContext.setScriptFactory(scriptFactory);
             siteContext.setConfig(config);
             siteContext.setGlobalApplicationContext(globalApplicationContext);
-            siteContext.setApplicationContext(appContext);
+            if (lazyApplicationContext) {
+                GenericApplicationContext appContext = loadApplicationContext(siteContext, classLoader, config,
+                                                                              resolvedAppContextPaths, resourceLoader);
+                if (appContext != null && hasEventListeners(appContext, classLoader)) {
+                    // The events of the site are published before the application context would be used otherwise,
+                    // so the listeners of the site would miss them
+                    logger.info("Site '" + siteName + "' defines event listeners, its application context won't " +
+                                "be lazy");
+
+                    siteContext.setApplicationContext(refreshApplicationContext(siteContext, appContext));
+                } else if (appContext != null) {
+                    siteContext.setApplicationContextLoader(() -> refreshApplicationContext(siteContext, appContext));
+                }
+            } else {
+                siteContext.setApplicationContext(getApplicationContext(siteContext, classLoader, config,
+                                                                        resolvedAppContextPaths, resourceLoader));
+            }
             siteContext.setClassLoader(classLoader);
             siteContext.setUrlRewriter(urlRewriter);
             siteContext.setProxyConfig(proxyConfig);
             siteContext.setTranslationConfig(translationConfig);
             siteContext.setLocaleResolver(buildLocaleResolver(translationConfig));
             siteContext.setAllowedTemplatePaths(config.getStringArray(CONFIG_KEY_ALLOWED_TEMPLATE_PATHS));
+            siteContext.getCacheLoadCoalescer().setMaxWaitTime(TimeUnit.SECONDS.toMillis(cacheLoadMaxWait));
+
+            if (cacheStaleWhileRevalidateEnabled && !cacheWarmUpEnabled) {
+                long maxStaleness = config.getLong(CONFIG_KEY_CACHE_MAX_STALENESS, cacheMaxStaleness);
+
+                siteContext.setCacheMaxStaleness(TimeUnit.SECONDS.toMillis(maxStaleness));
+                siteContext.setCacheRefreshExecutor(cacheRefreshExecutor);
+            }
+
+            if (config.getBoolean(CONFIG_KEY_TEMPLATES_PRE_PARSE_ENABLED, templatePreParseEnabled)) {
+                siteContext.setTemplatePreParser(templatePreParser);
+            }
 
             Scheduler scheduler = scheduleJobs(siteContext);
             siteContext.setScheduler(scheduler);
@@ -490,6 +659,13 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     }
 
     protected URLClassLoader getClassLoader(SiteContext siteContext) {
+        if (sharedGroovyClasses != null && sharedGroovyClasses.isEnabled()) {
+            URLClassLoader sharedClassLoader = sharedGroovyClasses.getClassLoader(siteContext);
+            if (sharedClassLoader != null) {
+                return sharedClassLoader;
+            }
+        }
+
         GroovyClassLoader classLoader =
                 new GroovyClassLoader(getClass().getClassLoader(), getCompilerConfiguration(enableScriptSandbox));
         ContentStoreGroovyResourceLoader resourceLoader = new ContentStoreGroovyResourceLoader(siteContext,
@@ -504,6 +680,24 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
                                                                    HierarchicalConfiguration config,
                                                                    String[] applicationContextPaths,
                                                                    ResourceLoader resourceLoader) {
+        GenericApplicationContext appContext = loadApplicationContext(siteContext, classLoader, config,
+                                                                      applicationContextPaths, resourceLoader);
+        if (appContext != null) {
+            return refreshApplicationContext(siteContext, appContext);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the application context of the site and loads its bean definitions, without refreshing it.
+     *
+     * @return the application context, or null if the site doesn't have one
+     */
+    protected GenericApplicationContext loadApplicationContext(SiteContext siteContext, URLClassLoader classLoader,
+                                                               HierarchicalConfiguration config,
+                                                               String[] applicationContextPaths,
+                                                               ResourceLoader resourceLoader) {
         String siteName = siteContext.getSiteName();
 
         logger.info("--------------------------------------------------");
@@ -529,6 +723,8 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
                     appContext = new RestrictedApplicationContext(globalApplicationContext, defaultPublicBeans);
                 }
                 appContext.setClassLoader(classLoader);
+                // Also set before the refresh, so the bean classes can be resolved to look for event listeners
+                appContext.getBeanFactory().setBeanClassLoader(classLoader);
 
                 if (!enableExpressions) {
                     appContext.addBeanFactoryPostProcessor(factory -> factory.setBeanExpressionResolver(null));
@@ -543,9 +739,11 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
                 XmlBeanDefinitionReader reader = new XmlBeanDefinitionReader(appContext);
                 reader.setValidationMode(XmlBeanDefinitionReader.VALIDATION_XSD);
 
-                reader.loadBeanDefinitions(appContextResource);
+                if (lazyApplicationContext) {
+                    reader.setDocumentReaderClass(LazyInitBeanDefinitionDocumentReader.class);
+                }
 
-                appContext.refresh();
+                reader.loadBeanDefinitions(appContextResource);
 
                 return appContext;
             } else {
@@ -560,6 +758,64 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         }
     }
 
+    /**
+     * Refreshes an application context previously loaded by
+     * {@link #loadApplicationContext(SiteContext, URLClassLoader, HierarchicalConfiguration, String[], ResourceLoader)}.
+     */
+    protected ConfigurableApplicationContext refreshApplicationContext(SiteContext siteContext,
+                                                                       GenericApplicationContext appContext) {
+        String siteName = siteContext.getSiteName();
+        try {
+            StopWatch stopWatch = new StopWatch();
+            stopWatch.start();
+
+            appContext.refresh();
+
+            stopWatch.stop();
+
+            siteContext.setApplicationContextRefreshTime(stopWatch.getTime());
+
+            logger.info("Application context for site '" + siteName + "' refreshed in " + stopWatch.getTime() +
+                        " ms with " + appContext.getBeanDefinitionCount() + " bean definitions and " +
+                        appContext.getBeanFactory().getSingletonCount() + " singletons created");
+
+            return appContext;
+        } catch (Exception e) {
+            throw new SiteContextCreationException("Unable to refresh application context for site '" + siteName +
+                                                   "'", e);
+        }
+    }
+
+    /**
+     * Indicates if any of the beans of the (not yet refreshed) application context listens to events, either by
+     * implementing {@link ApplicationListener} or with {@link EventListener} methods. The beans are not created.
+     */
+    protected boolean hasEventListeners(GenericApplicationContext appContext, ClassLoader classLoader) {
+        ConfigurableListableBeanFactory beanFactory = appContext.getBeanFactory();
+        if (beanFactory.getBeanNamesForType(ApplicationListener.class, true, false).length > 0) {
+            return true;
+        }
+
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            String className = beanFactory.getBeanDefinition(beanName).getBeanClassName();
+            if (className != null) {
+                try {
+                    Class<?> beanClass = ClassUtils.forName(className, classLoader);
+                    for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanClass)) {
+                        if (AnnotatedElementUtils.hasAnnotation(method, EventListener.class)) {
+                            return true;
+                        }
+                    }
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // The refresh will report it, if the bean is ever used
+                    logger.debug("Unable to resolve class of bean '" + beanName + "'", e);
+                }
+            }
+        }
+
+        return false;
+    }
+
     protected UrlRewriter getUrlRewriter(SiteContext siteContext, String[] urlRewriteConfPaths,
                                          ResourceLoader resourceLoader) {
         String siteName = siteContext.getSiteName();
@@ -675,8 +931,16 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
     }
 
     protected ScriptFactory getScriptFactory(SiteContext siteContext, URLClassLoader classLoader) {
-        return new GroovyScriptFactory(siteContext, new ContentStoreResourceConnector(siteContext), classLoader,
-                                       groovyGlobalVars, enableScriptSandbox);
+        SharedGroovyClasses.ClassSpace sharedClassSpace = null;
+        ClassLoader parentClassLoader = classLoader;
+        if (classLoader instanceof SharedGroovyClasses.SiteClassLoader) {
+            sharedClassSpace = ((SharedGroovyClasses.SiteClassLoader) classLoader).getClassSpace();
+            // If the scripts of the site diverge, they shouldn't see the classes of the shared class space
+            parentClassLoader = sharedGroovyClasses.createIsolatedClassLoader(siteContext);
+        }
+
+        return new GroovyScriptFactory(siteContext, new ContentStoreResourceConnector(siteContext), parentClassLoader,
+                                       groovyGlobalVars, enableScriptSandbox, sharedClassSpace);
     }
 
     protected Scheduler scheduleJobs(SiteContext siteContext) {
@@ -697,6 +961,10 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
             }
 
             if (CollectionUtils.isNotEmpty(allJobContexts)) {
+                if (sharedJobSchedulerEnabled && jobScheduler != null) {
+                    return scheduleJobs(siteContext, allJobContexts);
+                }
+
                 Scheduler scheduler = SchedulingUtils.createScheduler(
                         String.format("%s_%s_scheduler", siteName, siteContext.getContext().getId()),
                         jobThreadPoolExecutor);
@@ -722,4 +990,29 @@ public class SiteContextFactory implements ApplicationContextAware, ServletConte
         return null;
     }
 
+    /**
+     * Schedules the jobs of the site in the shared scheduler, under the job group of the site.
+     */
+    protected Scheduler scheduleJobs(SiteContext siteContext, List<JobContext> jobContexts)
+        throws SchedulerException {
+        String siteName = siteContext.getSiteName();
+        try {
+            for (JobContext jobContext : jobContexts) {
+                jobScheduler.scheduleJob(jobContext.getDetail(), jobContext.getTrigger());
+
+                logger.info("Scheduled job: " + jobContext + " for site '" + siteName + "' in shared scheduler");
+            }
+        } catch (SchedulerException e) {
+            // Don't leave the jobs that were already scheduled in the shared scheduler
+            jobScheduler.deleteJobs(new ArrayList<>(
+                jobScheduler.getJobKeys(GroupMatcher.jobGroupEquals(siteContext.getJobGroup()))));
+
+            throw e;
+        }
+
+        siteContext.setSchedulerShared(true);
+
+        return jobScheduler;
+    }
+
 }
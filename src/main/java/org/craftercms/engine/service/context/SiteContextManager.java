@@ -16,6 +16,8 @@
 package org.craftercms.engine.service.context;
 
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.concurrent.locks.KeyBasedLockFactory;
@@ -23,29 +25,56 @@ import org.craftercms.commons.concurrent.locks.WeakKeyBasedReentrantLockFactory;
 import org.craftercms.commons.entitlements.exception.EntitlementException;
 import org.craftercms.commons.entitlements.model.EntitlementType;
 import org.craftercms.commons.entitlements.validator.EntitlementValidator;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.beans.factory.DisposableBean;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 /**
  * Registry and lifecycle manager of {@link SiteContext}s.
  *
  * @author Alfonso Vásquez
  */
-public class SiteContextManager implements DisposableBean {
+public class SiteContextManager implements InitializingBean, DisposableBean {
 
     private static final Log logger = LogFactory.getLog(SiteContextManager.class);
 
     protected KeyBasedLockFactory<ReentrantLock> siteLockFactory;
+    protected KeyBasedLockFactory<ReentrantLock> rebuildLockFactory;
     protected Map<String, SiteContext> contextRegistry;
     protected SiteContextFactory contextFactory;
     protected SiteContextFactory fallbackContextFactory;
@@ -54,10 +83,33 @@ public class SiteContextManager implements DisposableBean {
     protected boolean waitForContextInit;
     protected Executor jobThreadPoolExecutor;
     protected String defaultSiteName;
+    protected boolean contextEvictionEnabled;
+    protected long contextEvictionInterval;
+    protected long contextMaxIdleTime;
+    protected int contextEvictionMaxHeapUsage;
+    protected int contextEvictionBatchSize;
+    protected Set<String> pinnedSiteNames;
+    protected ScheduledExecutorService contextEvictionExecutor;
+    protected ScheduledFuture<?> contextEvictionTask;
+    protected Set<String> evictedSiteNames;
+    protected List<String> startupPrioritySites;
+    protected int startupConcurrency;
+    protected long startupDelay;
+    protected String requestCountsFile;
+    protected Map<String, LongAdder> requestCounts;
+    protected Map<String, Long> previousRequestCounts;
+    protected volatile SiteContextsStartupProgress startupProgress;
 
     public SiteContextManager() {
         siteLockFactory = new WeakKeyBasedReentrantLockFactory();
+        rebuildLockFactory = new WeakKeyBasedReentrantLockFactory();
         contextRegistry = new ConcurrentHashMap<>();
+        pinnedSiteNames = new HashSet<>();
+        evictedSiteNames = ConcurrentHashMap.newKeySet();
+        startupPrioritySites = Collections.emptyList();
+        requestCounts = new ConcurrentHashMap<>();
+        startupProgress = new SiteContextsStartupProgress(0);
+        startupProgress.complete();
     }
 
     @Required
@@ -95,7 +147,110 @@ public class SiteContextManager implements DisposableBean {
         this.defaultSiteName = defaultSiteName;
     }
 
+    @Required
+    public void setContextEvictionEnabled(boolean contextEvictionEnabled) {
+        this.contextEvictionEnabled = contextEvictionEnabled;
+    }
+
+    /**
+     * Sets the time in seconds between each check for contexts that should be evicted.
+     */
+    @Required
+    public void setContextEvictionInterval(long contextEvictionInterval) {
+        this.contextEvictionInterval = contextEvictionInterval;
+    }
+
+    /**
+     * Sets the time in minutes after which a context that hasn't been accessed is evicted. 0 or less means contexts
+     * are not evicted because of idle time.
+     */
+    @Required
+    public void setContextMaxIdleTime(long contextMaxIdleTime) {
+        this.contextMaxIdleTime = contextMaxIdleTime;
+    }
+
+    /**
+     * Sets the percentage of the max heap that, when exceeded, causes the eviction of the contexts that have been
+     * accessed least recently. 0 or less means contexts are not evicted because of heap usage.
+     */
+    @Required
+    public void setContextEvictionMaxHeapUsage(int contextEvictionMaxHeapUsage) {
+        this.contextEvictionMaxHeapUsage = contextEvictionMaxHeapUsage;
+    }
+
+    /**
+     * Sets the max number of contexts evicted in each check when the heap usage is exceeded. The memory is only
+     * reclaimed after the next GC, so the eviction is done in batches instead of until the heap usage goes down.
+     */
+    @Required
+    public void setContextEvictionBatchSize(int contextEvictionBatchSize) {
+        this.contextEvictionBatchSize = contextEvictionBatchSize;
+    }
+
+    /**
+     * Sets the names of the sites whose contexts should never be evicted. Sites can also be pinned in their config.
+     */
+    @Required
+    public void setPinnedSiteNames(String[] pinnedSiteNames) {
+        this.pinnedSiteNames = new HashSet<>(Arrays.asList(pinnedSiteNames));
+    }
+
+    @Required
+    public void setContextEvictionExecutor(ScheduledExecutorService contextEvictionExecutor) {
+        this.contextEvictionExecutor = contextEvictionExecutor;
+    }
+
+    /**
+     * Sets the names of the sites that should be created first on startup, in order.
+     */
+    @Required
+    public void setStartupPrioritySites(String[] startupPrioritySites) {
+        this.startupPrioritySites = Arrays.asList(startupPrioritySites);
+    }
+
+    /**
+     * Sets the max number of sites that are created and initialized at the same time on startup. 0 for no limit, in
+     * which case the initialization of all the sites overlaps.
+     */
+    @Required
+    public void setStartupConcurrency(int startupConcurrency) {
+        this.startupConcurrency = startupConcurrency;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait between starting the creation of each site on startup, to limit the
+     * load on the content store.
+     */
+    @Required
+    public void setStartupDelay(long startupDelay) {
+        this.startupDelay = startupDelay;
+    }
+
+    /**
+     * Sets the path of the file where the number of requests of each site is saved on shutdown. If empty the
+     * request counts are not used to sort the sites on startup.
+     */
+    @Required
+    public void setRequestCountsFile(String requestCountsFile) {
+        this.requestCountsFile = requestCountsFile;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (contextEvictionEnabled) {
+            contextEvictionTask = contextEvictionExecutor.scheduleWithFixedDelay(this::evictContexts,
+                                                                                 contextEvictionInterval,
+                                                                                 contextEvictionInterval,
+                                                                                 TimeUnit.SECONDS);
+        }
+    }
+
     public void destroy() {
+        if (contextEvictionTask != null) {
+            contextEvictionTask.cancel(false);
+        }
+
+        saveRequestCounts();
         destroyAllContexts();
     }
 
@@ -104,56 +259,276 @@ public class SiteContextManager implements DisposableBean {
     }
 
     /**
-     * Creates all contexts (if not already created) from the site list resolver
+     * Creates all contexts (if not already created) from the site list resolver. The sites in the priority list are
+     * created first, followed by the ones that received more requests before the last shutdown. If the manager
+     * doesn't wait for the context initialization, the creation is done in the background and its progress can be
+     * checked with {@link #getStartupProgress()}.
      *
-     * @param concurrent if the context creation should be done concurrently
+     * @param concurrent if the context creation should be done concurrently (when the startup concurrency is
+     *                   limited, it's always done concurrently up to the limit)
      */
     public void createContexts(boolean concurrent) {
         Collection<String> siteNames = siteListResolver.getSiteList();
+        List<String> orderedSiteNames = getSitesInStartupOrder(siteNames);
+        SiteContextsStartupProgress progress = new SiteContextsStartupProgress(orderedSiteNames.size());
+
+        startupProgress = progress;
+
+        if (waitForContextInit) {
+            createContexts(orderedSiteNames, concurrent, progress);
+        } else {
+            jobThreadPoolExecutor.execute(() -> createContexts(orderedSiteNames, concurrent, progress));
+        }
+    }
 
+    /**
+     * Returns the progress of the creation of the contexts on startup.
+     */
+    public SiteContextsStartupProgress getStartupProgress() {
+        return startupProgress;
+    }
+
+    protected void createContexts(List<String> siteNames, boolean concurrent, SiteContextsStartupProgress progress) {
         logger.info("==================================================");
         logger.info("<CREATING SITE CONTEXTS>");
         logger.info("==================================================");
 
-        if (CollectionUtils.isNotEmpty(siteNames)) {
-            if (concurrent) {
-                CompletionService<SiteContext> cs = new ExecutorCompletionService<>(jobThreadPoolExecutor);
-                for (String siteName : siteNames) {
-                    cs.submit(() -> {
-                        try {
-                            // If the site context doesn't exist (it's new), it will be created
-                            return getContext(siteName, false);
-                        } catch (Exception e) {
-                            logger.error("Error creating site context for site '" + siteName + "'", e);
-                        }
-
-                        return null;
-                    });
-                }
+        try {
+            if (startupConcurrency > 0) {
+                createContextsThrottled(siteNames, startupConcurrency, progress);
+            } else {
+                createContextsUnthrottled(siteNames, concurrent, progress);
+            }
+        } catch (InterruptedException e) {
+            logger.error("Stopping creation of site contexts, thread interrupted");
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        progress.complete();
+
+        logger.info("==================================================");
+        logger.info("</CREATING SITE CONTEXTS>");
+        logger.info("==================================================");
+    }
 
-                for (int i = 0; i < siteNames.size(); i++) {
-                    try {
-                        cs.take();
-                    } catch (InterruptedException e) {
-                        logger.error("Stopping creation of site contexts, thread interrupted");
-                        return;
+    /**
+     * Creates the contexts keeping at most the given number of sites in creation and initialization at the same
+     * time. Since the permits are acquired in order, the sites with more priority are always started first.
+     */
+    protected void createContextsThrottled(List<String> siteNames, int concurrency,
+                                           SiteContextsStartupProgress progress) throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        CompletionService<Void> cs = new ExecutorCompletionService<>(jobThreadPoolExecutor);
+
+        for (String siteName : siteNames) {
+            permits.acquire();
+
+            cs.submit(() -> {
+                AtomicBoolean released = new AtomicBoolean();
+                Runnable releasePermit = () -> {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
                     }
+                };
+
+                try {
+                    createStartupContext(siteName, progress, releasePermit);
+                } finally {
+                    releasePermit.run();
                 }
+
+                return null;
+            });
+
+            if (startupDelay > 0) {
+                Thread.sleep(startupDelay);
+            }
+        }
+
+        for (int i = 0; i < siteNames.size(); i++) {
+            cs.take();
+        }
+    }
+
+    /**
+     * Creates all the contexts without waiting for their initialization (like a request would), and only then
+     * waits for each one to be initialized, so that the initialization of all the sites overlaps.
+     */
+    protected void createContextsUnthrottled(List<String> siteNames, boolean concurrent,
+                                             SiteContextsStartupProgress progress) throws InterruptedException {
+        Map<String, FutureTask<SiteContext>> creations = new LinkedHashMap<>();
+
+        for (String siteName : siteNames) {
+            // If the site context doesn't exist (it's new), it will be created
+            FutureTask<SiteContext> creation = new FutureTask<>(() -> getContext(siteName, false));
+            if (concurrent) {
+                jobThreadPoolExecutor.execute(creation);
             } else {
-                for (String siteName : siteNames) {
-                    try {
-                        // If the site context doesn't exist (it's new), it will be created
-                        getContext(siteName, false);
-                    } catch (Exception e) {
-                        logger.error("Error creating site context for site '" + siteName + "'", e);
-                    }
+                creation.run();
+            }
+
+            creations.put(siteName, creation);
+
+            if (startupDelay > 0) {
+                Thread.sleep(startupDelay);
+            }
+        }
+
+        for (Map.Entry<String, FutureTask<SiteContext>> creation : creations.entrySet()) {
+            String siteName = creation.getKey();
+            try {
+                awaitStartupContext(siteName, creation.getValue().get(), progress, () -> {});
+            } catch (ExecutionException e) {
+                logger.error("Error creating site context for site '" + siteName + "'", e.getCause());
+
+                progress.siteFailed(siteName);
+            }
+        }
+    }
+
+    /**
+     * Creates the context of a site on startup and waits for it to be initialized. If the init timeout is reached
+     * while the site is still initializing, the permit is released so the next site can start, and the site is kept
+     * as pending until its initialization actually finishes.
+     */
+    protected void createStartupContext(String siteName, SiteContextsStartupProgress progress,
+                                        Runnable releasePermit) {
+        SiteContext siteContext;
+        try {
+            // If the site context doesn't exist (it's new), it will be created
+            siteContext = getContext(siteName, false);
+        } catch (Exception e) {
+            logger.error("Error creating site context for site '" + siteName + "'", e);
+
+            progress.siteFailed(siteName);
+            return;
+        }
+
+        awaitStartupContext(siteName, siteContext, progress, releasePermit);
+    }
+
+    /**
+     * Waits for the context of a site to be initialized on startup. If the init timeout is reached while the site is
+     * still initializing, the permit is released and the site is kept as pending until its initialization actually
+     * finishes.
+     */
+    protected void awaitStartupContext(String siteName, SiteContext siteContext,
+                                       SiteContextsStartupProgress progress, Runnable releasePermit) {
+        try {
+            boolean ready = siteContext != null && siteContext.awaitInitialization();
+
+            if (!ready && siteContext != null && siteContext.getState() == SiteContext.State.INITIALIZING) {
+                logger.info("Site '" + siteName + "' is taking longer than the init timeout, starting the next site");
+
+                releasePermit.run();
+
+                while (siteContext.getState() == SiteContext.State.INITIALIZING) {
+                    ready = siteContext.awaitInitialization();
                 }
             }
+
+            if (ready) {
+                progress.siteReady();
+            } else {
+                progress.siteFailed(siteName);
+            }
+        } catch (InterruptedException e) {
+            progress.siteFailed(siteName);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Error initializing site context for site '" + siteName + "'", e);
+
+            progress.siteFailed(siteName);
+        }
+    }
+
+    /**
+     * Sorts the sites in the order they should be created on startup: first the ones in the priority list, and then
+     * the rest by the number of requests they received before the last shutdown.
+     */
+    protected List<String> getSitesInStartupOrder(Collection<String> siteNames) {
+        if (CollectionUtils.isEmpty(siteNames)) {
+            return Collections.emptyList();
         }
 
-        logger.info("==================================================");
-        logger.info("</CREATING SITE CONTEXTS>");
-        logger.info("==================================================");
+        Map<String, Long> previousCounts = getPreviousRequestCounts();
+
+        List<String> orderedSiteNames = new ArrayList<>(siteNames);
+        orderedSiteNames.sort(Comparator.comparingInt(this::getStartupPriority)
+                                        .thenComparing(siteName -> previousCounts.getOrDefault(siteName, 0L),
+                                                       Comparator.reverseOrder()));
+
+        return orderedSiteNames;
+    }
+
+    protected int getStartupPriority(String siteName) {
+        int priority = startupPrioritySites.indexOf(siteName);
+        return priority >= 0 ? priority : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Counts a request of a site, so that the busiest sites are created first on the next startup. Only the requests
+     * of the users should be counted, not the internal lookups of the context.
+     */
+    public void countRequest(String siteName) {
+        requestCounts.computeIfAbsent(siteName, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns the request counts saved on the last shutdown, loading them the first time.
+     */
+    protected synchronized Map<String, Long> getPreviousRequestCounts() {
+        if (previousRequestCounts == null) {
+            previousRequestCounts = loadRequestCounts();
+        }
+
+        return previousRequestCounts;
+    }
+
+    protected Map<String, Long> loadRequestCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        if (StringUtils.isNotEmpty(requestCountsFile)) {
+            File file = new File(requestCountsFile);
+            if (file.exists()) {
+                Properties properties = new Properties();
+                try (InputStream in = new FileInputStream(file)) {
+                    properties.load(in);
+
+                    properties.stringPropertyNames().forEach(siteName -> {
+                        counts.put(siteName, NumberUtils.toLong(properties.getProperty(siteName)));
+                    });
+                } catch (IOException e) {
+                    logger.warn("Unable to load the site request counts from " + file, e);
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Saves the number of requests of each site, so that the busiest sites are created first on the next startup.
+     * Half of the previous count is kept, so the order adapts over time without forgetting a single short run.
+     */
+    protected void saveRequestCounts() {
+        if (StringUtils.isNotEmpty(requestCountsFile)) {
+            // Load the previous counts if the contexts weren't created on startup, so they're not overwritten
+            Map<String, Long> previousCounts = getPreviousRequestCounts();
+            Properties properties = new Properties();
+            previousCounts.forEach((siteName, count) -> properties.setProperty(siteName, Long.toString(count / 2)));
+            requestCounts.forEach((siteName, count) -> {
+                long previousCount = previousCounts.getOrDefault(siteName, 0L) / 2;
+                properties.setProperty(siteName, Long.toString(previousCount + count.sum()));
+            });
+
+            File file = new File(requestCountsFile);
+            try (OutputStream out = new FileOutputStream(file)) {
+                properties.store(out, "Number of requests per site, used to sort the sites on startup");
+            } catch (IOException e) {
+                logger.warn("Unable to save the site request counts to " + file, e);
+            }
+        }
     }
 
     public void syncContexts() {
@@ -172,10 +547,15 @@ public class SiteContextManager implements DisposableBean {
             }
         });
 
-        // create the contexts for new sites
+        // forget the evicted sites that are not present anymore
+        evictedSiteNames.retainAll(siteNames);
+
+        // create the contexts for new sites (evicted sites are created again on their next request)
         siteNames.forEach(siteName -> {
             try {
-                getContext(siteName, false);
+                if (!evictedSiteNames.contains(siteName)) {
+                    getContext(siteName, false);
+                }
             } catch (Exception e) {
                 logger.error("Error creating site context for site '" + siteName + "'", e);
             }
@@ -249,6 +629,8 @@ public class SiteContextManager implements DisposableBean {
 
                     siteContext = createContext(siteName, fallback);
 
+                    evictedSiteNames.remove(siteName);
+
                     logger.info("==================================================");
                     logger.info("</Creating site context: " + siteName + ">");
                     logger.info("==================================================");
@@ -267,6 +649,102 @@ public class SiteContextManager implements DisposableBean {
         return siteContext;
     }
 
+    /**
+     * Destroys the contexts of the sites that haven't been accessed in the max idle time, and if the heap usage is
+     * over the limit, also a batch of the contexts that have been accessed least recently. Evicted contexts are
+     * created again when the site is requested. Fallback contexts, the default site, pinned sites and sites with
+     * scheduled jobs are never evicted.
+     */
+    public void evictContexts() {
+        try {
+            List<SiteContext> candidates = contextRegistry.values().stream()
+                                                          .filter(this::isEvictable)
+                                                          .sorted(Comparator.comparingLong(
+                                                              SiteContext::getLastAccessTime))
+                                                          .collect(Collectors.toList());
+            Iterator<SiteContext> iter = candidates.iterator();
+
+            if (contextMaxIdleTime > 0) {
+                long minAccessTime = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(contextMaxIdleTime);
+                while (iter.hasNext()) {
+                    SiteContext siteContext = iter.next();
+                    if (siteContext.getLastAccessTime() >= minAccessTime) {
+                        break;
+                    }
+
+                    if (evictContext(siteContext, minAccessTime)) {
+                        logger.info("Evicted site context " + siteContext + ", it hasn't been accessed in " +
+                                    contextMaxIdleTime + " minutes");
+                    }
+                    iter.remove();
+                }
+            }
+
+            if (contextEvictionMaxHeapUsage > 0 && getHeapUsage() > contextEvictionMaxHeapUsage) {
+                iter = candidates.iterator();
+                for (int i = 0; i < contextEvictionBatchSize && iter.hasNext(); i++) {
+                    SiteContext siteContext = iter.next();
+
+                    // Skip the contexts that have been accessed since they were selected
+                    if (evictContext(siteContext, siteContext.getLastAccessTime() + 1)) {
+                        logger.info("Evicted site context " + siteContext + ", heap usage is over " +
+                                    contextEvictionMaxHeapUsage + "%");
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error evicting site contexts", e);
+        }
+    }
+
+    protected boolean isEvictable(SiteContext siteContext) {
+        return !siteContext.isFallback() &&
+               siteContext.getState() == SiteContext.State.READY &&
+               !siteContext.getSiteName().equals(defaultSiteName) &&
+               !pinnedSiteNames.contains(siteContext.getSiteName()) &&
+               !siteContext.isPinned() &&
+               !siteContext.hasScheduledJobs();
+    }
+
+    /**
+     * Evicts the context if it hasn't been accessed since the given time.
+     *
+     * @param siteContext   the context to evict
+     * @param minAccessTime the min access time of the contexts that are kept
+     *
+     * @return true if the context was evicted
+     */
+    protected boolean evictContext(SiteContext siteContext, long minAccessTime) {
+        String siteName = siteContext.getSiteName();
+        boolean removed = false;
+        Lock lock = siteLockFactory.getLock(siteName);
+        lock.lock();
+        try {
+            // The context could have been accessed, rebuilt or destroyed since the candidates were selected
+            if (siteContext.getLastAccessTime() < minAccessTime) {
+                removed = contextRegistry.remove(siteName, siteContext);
+                if (removed) {
+                    evictedSiteNames.add(siteName);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (removed) {
+            destroyContext(siteContext);
+        }
+
+        return removed;
+    }
+
+    protected int getHeapUsage() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+
+        return (int) (usedMemory * 100 / runtime.maxMemory());
+    }
+
     /**
      * Starts a context rebuild in the background
      *
@@ -335,6 +813,18 @@ public class SiteContextManager implements DisposableBean {
     }
 
     protected SiteContext createContext(String siteName, boolean fallback) {
+        SiteContext siteContext = buildContext(siteName, fallback);
+
+        siteContext.init(waitForContextInit);
+
+        contextRegistry.put(siteName, siteContext);
+
+        logger.info("Site context created: " + siteContext);
+
+        return siteContext;
+    }
+
+    protected SiteContext buildContext(String siteName, boolean fallback) {
         SiteContext siteContext;
 
         if (fallback) {
@@ -344,34 +834,79 @@ public class SiteContextManager implements DisposableBean {
             siteContext = contextFactory.createContext(siteName);
         }
 
-        siteContext.init(waitForContextInit);
-
-        contextRegistry.put(siteName, siteContext);
-
-        logger.info("Site context created: " + siteContext);
-
         return siteContext;
     }
 
+    /**
+     * Rebuilds the context of the site. The new context is created and fully initialized while the current one keeps
+     * serving requests, and it's only put in the registry once it's ready. The current context is then destroyed
+     * after its in-flight requests finish. If the new context can't be initialized the current one is kept.
+     *
+     * @param siteName the site name of the context
+     * @param fallback if the new context should be a fallback context
+     */
     protected void rebuildContext(String siteName, boolean fallback) {
-        Lock lock = siteLockFactory.getLock(siteName);
-        lock.lock();
+        // Rebuilds of the same site are done one at a time, but without blocking the requests that use the site lock
+        if (evictedSiteNames.contains(siteName)) {
+            logger.debug("Site context for site '" + siteName + "' has been evicted, skipping rebuild");
+            return;
+        }
+
+        Lock rebuildLock = rebuildLockFactory.getLock(siteName);
+        rebuildLock.lock();
         try {
             logger.info("==================================================");
             logger.info("<Rebuilding site context: " + siteName + ">");
             logger.info("==================================================");
 
             SiteContext oldSiteContext = contextRegistry.get(siteName);
+            SiteContext newSiteContext = buildContext(siteName, fallback);
+            try {
+                newSiteContext.init(true);
+            } catch (Exception e) {
+                logger.error("Error initializing new site context for site '" + siteName + "', the current " +
+                             "context will be kept", e);
+            }
 
-            createContext(siteName, fallback);
+            if (newSiteContext.getState() == SiteContext.State.READY) {
+                boolean swapped;
+                Lock lock = siteLockFactory.getLock(siteName);
+                lock.lock();
+                try {
+                    // The site could have been deleted or evicted while the new context was initialized
+                    if (evictedSiteNames.contains(siteName)) {
+                        swapped = false;
+                    } else if (oldSiteContext != null) {
+                        swapped = contextRegistry.replace(siteName, oldSiteContext, newSiteContext);
+                    } else {
+                        swapped = contextRegistry.putIfAbsent(siteName, newSiteContext) == null;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                if (swapped) {
+                    logger.info("Site context created: " + newSiteContext);
 
-            oldSiteContext.destroy();
+                    if (oldSiteContext != null) {
+                        // Waits for the requests that are still using the old context
+                        destroyContext(oldSiteContext);
+                    }
+                } else {
+                    logger.info("Site context for site '" + siteName + "' changed during the rebuild, discarding " +
+                                "new context " + newSiteContext);
+
+                    destroyContext(newSiteContext);
+                }
+            } else if (newSiteContext.getState() != SiteContext.State.DESTROYED) {
+                destroyContext(newSiteContext);
+            }
 
             logger.info("==================================================");
             logger.info("</Rebuilding site context: " + siteName + ">");
             logger.info("==================================================");
         } finally {
-            lock.unlock();
+            rebuildLock.unlock();
         }
     }
 
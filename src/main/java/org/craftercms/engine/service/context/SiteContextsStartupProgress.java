@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of the creation of the site contexts on startup.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class SiteContextsStartupProgress {
+
+    private final int total;
+    private final AtomicInteger ready;
+    private final Set<String> failedSites;
+    private volatile boolean completed;
+
+    public SiteContextsStartupProgress(int total) {
+        this.total = total;
+        this.ready = new AtomicInteger();
+        this.failedSites = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Returns the number of sites that should be created.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the number of sites that have been created and initialized.
+     */
+    public int getReady() {
+        return ready.get();
+    }
+
+    /**
+     * Returns the number of sites that couldn't be created or initialized.
+     */
+    public int getFailed() {
+        return failedSites.size();
+    }
+
+    /**
+     * Returns the number of sites that are still waiting to be created or initialized.
+     */
+    public int getPending() {
+        return total - getReady() - getFailed();
+    }
+
+    public Set<String> getFailedSites() {
+        return Collections.unmodifiableSet(new TreeSet<>(failedSites));
+    }
+
+    /**
+     * Returns true if all the sites have been processed (even if some of them failed).
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    void siteReady() {
+        ready.incrementAndGet();
+    }
+
+    void siteFailed(String siteName) {
+        failedSites.add(siteName);
+    }
+
+    void complete() {
+        completed = true;
+    }
+
+}
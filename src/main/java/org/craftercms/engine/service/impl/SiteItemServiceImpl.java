@@ -30,6 +30,7 @@ import org.craftercms.core.service.Item;
 import org.craftercms.core.service.ItemFilter;
 import org.craftercms.core.service.Tree;
 import org.craftercms.core.service.impl.CompositeItemFilter;
+import org.craftercms.engine.cache.HotPathSampler;
 import org.craftercms.engine.model.DefaultSiteItem;
 import org.craftercms.engine.model.EmbeddedSiteItem;
 import org.craftercms.engine.model.SiteItem;
@@ -62,6 +63,7 @@ public class SiteItemServiceImpl implements SiteItemService {
     protected List<ItemProcessor> defaultProcessors;
     protected Converter<Element, Object> modelFieldConverter;
     protected Comparator<SiteItem> sortComparator;
+    protected HotPathSampler hotPathSampler;
 
     @Required
     public void setStoreService(ContentStoreService storeService) {
@@ -89,8 +91,16 @@ public class SiteItemServiceImpl implements SiteItemService {
         this.sortComparator = sortComparator;
     }
 
+    public void setHotPathSampler(HotPathSampler hotPathSampler) {
+        this.hotPathSampler = hotPathSampler;
+    }
+
     @Override
     public Content getRawContent(String url) {
+        if (hotPathSampler != null) {
+            hotPathSampler.sampleContent(url);
+        }
+
         return storeService.findContent(getSiteContext().getContext(), url);
     }
 
@@ -118,6 +128,10 @@ public class SiteItemServiceImpl implements SiteItemService {
             return null;
         }
 
+        if (hotPathSampler != null) {
+            hotPathSampler.sampleItem(url);
+        }
+
         if (CollectionUtils.isNotEmpty(defaultPredicates)) {
             List<Predicate<Item>> predicates = new ArrayList<>(defaultPredicates);
 
@@ -29,7 +29,9 @@ import javax.servlet.http.HttpServletResponse;
 import freemarker.template.Configuration;
 import freemarker.template.SimpleHash;
 import freemarker.template.Template;
+import org.craftercms.engine.cache.RenderContextCacheWarmer;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.service.context.SiteContextManager;
 import org.craftercms.engine.service.context.SiteContextResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,7 +41,9 @@ import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
 
 /**
  * Filter that uses a {@link org.craftercms.engine.service.context.SiteContextResolver} to resolve the context for
- * the current request. The site context and the site name are then set as request attributes.
+ * the current request. The site context and the site name are then set as request attributes. The filter also keeps
+ * count of the requests using each site context, so that destroying a context only waits for those requests. The
+ * renders of a {@link RenderContextCacheWarmer} use the site context of the warm up, with the context being warmed up.
  *
  * @author avasquez
  */
@@ -53,6 +57,10 @@ public class SiteContextResolvingFilter implements Filter {
 
     protected ObjectFactory<FreeMarkerConfig> freeMarkerConfigFactory;
 
+    protected RenderContextCacheWarmer renderCacheWarmer;
+
+    protected SiteContextManager contextManager;
+
     @Required
     public void setErrorTemplate(final String errorTemplate) {
         this.errorTemplate = errorTemplate;
@@ -68,6 +76,17 @@ public class SiteContextResolvingFilter implements Filter {
         this.freeMarkerConfigFactory = freeMarkerConfigFactory;
     }
 
+    public void setRenderCacheWarmer(RenderContextCacheWarmer renderCacheWarmer) {
+        this.renderCacheWarmer = renderCacheWarmer;
+    }
+
+    /**
+     * Sets the {@link SiteContextManager} that counts the requests of each site, to sort the sites on startup.
+     */
+    public void setContextManager(SiteContextManager contextManager) {
+        this.contextManager = contextManager;
+    }
+
     @Override
     public void init(FilterConfig filterConfig) {
     }
@@ -75,20 +94,47 @@ public class SiteContextResolvingFilter implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response,
                          FilterChain chain) throws IOException, ServletException {
-        SiteContext siteContext = getContext((HttpServletRequest) request);
+        RenderContextCacheWarmer.WarmUp warmUp = getWarmUp((HttpServletRequest) request);
+        if (warmUp != null && warmUp.getSiteContext().getState() != SiteContext.State.READY) {
+            // The resolver is skipped for warm ups, so check here that the site can serve requests
+            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        SiteContext siteContext = warmUp != null? warmUp.getSiteContext() : getContext((HttpServletRequest) request);
         if (siteContext != null) {
             SiteContext.setCurrent(siteContext);
+            siteContext.requestStarted();
         } else {
             renderError((HttpServletResponse) response);
             return;
         }
+        if (warmUp != null) {
+            siteContext.overrideContext(warmUp.getContext());
+        } else {
+            // Only the requests of the users count as accesses for the eviction of idle contexts and for the
+            // startup order
+            siteContext.touch();
+
+            if (contextManager != null) {
+                contextManager.countRequest(siteContext.getSiteName());
+            }
+        }
         try {
             chain.doFilter(request, response);
         } finally {
+            if (warmUp != null) {
+                siteContext.clearContextOverride();
+            }
+            siteContext.requestFinished();
             SiteContext.clear();
         }
     }
 
+    protected RenderContextCacheWarmer.WarmUp getWarmUp(HttpServletRequest request) {
+        return renderCacheWarmer != null? renderCacheWarmer.getWarmUp(request) : null;
+    }
+
     protected SiteContext getContext(HttpServletRequest request) {
         try {
             return contextResolver.getContext(request);
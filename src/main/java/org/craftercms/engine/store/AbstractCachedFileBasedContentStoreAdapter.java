@@ -23,6 +23,7 @@ import org.craftercms.core.service.Context;
 import org.craftercms.core.store.impl.AbstractFileBasedContentStoreAdapter;
 import org.craftercms.core.store.impl.File;
 import org.craftercms.core.util.cache.impl.CachingAwareList;
+import org.craftercms.engine.service.context.SiteContext;
 
 import java.util.List;
 
@@ -42,7 +43,7 @@ public abstract class AbstractCachedFileBasedContentStoreAdapter extends Abstrac
                             String path) throws InvalidContextException, StoreException {
         final CachingOptions actualCachingOptions = cachingOptions != null? cachingOptions: defaultCachingOptions;
 
-        return cacheTemplate.getObject(context, actualCachingOptions, new Callback<File>() {
+        return getObjectCoalesced(context, actualCachingOptions, new Callback<File>() {
 
             @Override
             public File execute() {
@@ -63,7 +64,7 @@ public abstract class AbstractCachedFileBasedContentStoreAdapter extends Abstrac
                                      File dir) throws InvalidContextException, StoreException {
         final CachingOptions actualCachingOptions = cachingOptions != null? cachingOptions: defaultCachingOptions;
 
-        return cacheTemplate.getObject(context, actualCachingOptions, new Callback<List<File>>() {
+        return getObjectCoalesced(context, actualCachingOptions, new Callback<List<File>>() {
 
             @Override
             public List<File> execute() {
@@ -88,6 +89,22 @@ public abstract class AbstractCachedFileBasedContentStoreAdapter extends Abstrac
         }, dir, CONST_KEY_ELEM_CHILDREN);
     }
 
+    /**
+     * Gets the object from the cache through the current site context (if any), so that concurrent misses of the
+     * same file don't hit the remote store several times, not even while the first loaded file is being put in the
+     * cache. Right after a cache clear in stale-while-revalidate mode, the file of the previous cache version is
+     * returned and refreshed in the background.
+     */
+    protected <T> T getObjectCoalesced(Context context, CachingOptions cachingOptions, Callback<T> loader,
+                                       Object... keyElements) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (siteContext != null) {
+            return siteContext.getFromCache(context, cachingOptions, loader, keyElements);
+        } else {
+            return cacheTemplate.getObject(context, cachingOptions, loader, keyElements);
+        }
+    }
+
     protected abstract File doFindFile(Context context, String path) throws InvalidContextException, StoreException;
 
     protected abstract List<File> doGetChildren(Context context, File dir) throws InvalidContextException, StoreException;
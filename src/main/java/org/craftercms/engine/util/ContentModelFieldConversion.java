@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.craftercms.commons.converters.Converter;
+import org.craftercms.engine.properties.SiteProperties;
+import org.craftercms.engine.service.context.SiteContext;
+import org.dom4j.Element;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Holds the content model field converter and the full model type conversion flag of a site, so that they're
+ * resolved once per site context instead of on every field conversion.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class ContentModelFieldConversion {
+
+    protected final Converter<Element, Object> fieldConverter;
+    protected final boolean disableFullModelTypeConversion;
+
+    public ContentModelFieldConversion(Converter<Element, Object> fieldConverter,
+                                       boolean disableFullModelTypeConversion) {
+        this.fieldConverter = fieldConverter;
+        this.disableFullModelTypeConversion = disableFullModelTypeConversion;
+    }
+
+    /**
+     * Resolves the field converter from the global application context and the flag from the site configuration.
+     *
+     * @param siteContext the site context
+     */
+    @SuppressWarnings("unchecked")
+    public static ContentModelFieldConversion resolve(SiteContext siteContext) {
+        Converter<Element, Object> fieldConverter = null;
+        boolean disableFullModelTypeConversion = false;
+
+        ApplicationContext appContext = siteContext.getGlobalApplicationContext();
+        if (appContext != null) {
+            fieldConverter = appContext.getBean(ContentModelUtils.FIELD_CONVERTER_BEAN_NAME, Converter.class);
+        }
+
+        HierarchicalConfiguration config = siteContext.getConfig();
+        if (config != null) {
+            disableFullModelTypeConversion = config.getBoolean(
+                SiteProperties.DISABLE_FULL_MODEL_TYPE_CONVERSION_CONFIG_KEY, false);
+        }
+
+        return new ContentModelFieldConversion(fieldConverter, disableFullModelTypeConversion);
+    }
+
+    public Converter<Element, Object> getFieldConverter() {
+        return fieldConverter;
+    }
+
+    public boolean isDisableFullModelTypeConversion() {
+        return disableFullModelTypeConversion;
+    }
+
+    /**
+     * Converts the field with the site field converter, or returns it as is if there's no converter.
+     */
+    public Object convertField(Element field) {
+        if (fieldConverter != null) {
+            return fieldConverter.convert(field);
+        } else {
+            return field;
+        }
+    }
+
+}
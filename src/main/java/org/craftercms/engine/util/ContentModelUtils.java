@@ -15,10 +15,8 @@
  */
 package org.craftercms.engine.util;
 
-import org.craftercms.commons.converters.Converter;
 import org.craftercms.engine.service.context.SiteContext;
 import org.dom4j.Element;
-import org.springframework.context.ApplicationContext;
 
 public class ContentModelUtils {
 
@@ -28,17 +26,14 @@ public class ContentModelUtils {
 
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Converts the field using the content model field converter of the current site, or returns it as is if there's
+     * no current site.
+     */
     public static final Object convertField(Element field) {
         SiteContext siteContext = SiteContext.getCurrent();
         if (siteContext != null) {
-            ApplicationContext appContext = siteContext.getGlobalApplicationContext();
-            if (appContext != null) {
-                Converter<Element, Object> converter = appContext.getBean(FIELD_CONVERTER_BEAN_NAME, Converter.class);
-                if (converter != null) {
-                    return converter.convert(field);
-                }
-            }
+            return siteContext.getContentModelFieldConversion().convertField(field);
         }
 
         return field;
@@ -57,6 +57,15 @@ public class SchedulingUtils {
         return trigger;
     }
 
+    public static Trigger createCronTrigger(String triggerName, String triggerGroup, String cronExpression) {
+        Trigger trigger = newTrigger()
+            .withIdentity(triggerName, triggerGroup)
+            .withSchedule(cronSchedule(cronExpression))
+            .build();
+
+        return trigger;
+    }
+
     public static JobDetail createScriptJob(SiteContext siteContext, String jobName, String scriptUrl,
                                             ServletContext servletContext) {
         JobDataMap dataMap = new JobDataMap();
@@ -65,7 +74,7 @@ public class SchedulingUtils {
         dataMap.put(SERVLET_CONTEXT_DATA_KEY, servletContext);
 
         JobDetail job = newJob(ScriptJob.class)
-            .withIdentity(jobName)
+            .withIdentity(jobName, siteContext.getJobGroup())
             .setJobData(dataMap)
             .build();
 
@@ -76,7 +85,8 @@ public class SchedulingUtils {
                                               ServletContext servletContext) {
         String jobName = siteContext.getSiteName() + ":" + scriptUrl;
         JobDetail detail = SchedulingUtils.createScriptJob(siteContext, jobName, scriptUrl, servletContext);
-        Trigger trigger = SchedulingUtils.createCronTrigger("trigger for " + jobName, cronExpression);
+        Trigger trigger = SchedulingUtils.createCronTrigger("trigger for " + jobName, siteContext.getJobGroup(),
+                                                            cronExpression);
         String description = "Job{url='" + scriptUrl + "', cron='" + cronExpression + "'}";
 
         return new JobContext(detail, trigger, description);
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.craftercms.core.util.XmlUtils;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.Node;
+import org.dom4j.XPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Equivalent of the {@link XmlUtils} query methods that keeps the compiled XPath expressions in a bounded cache, so
+ * they're not parsed again on every call. Expressions that are just a child element name (like {@code title_s}) are
+ * resolved directly by iterating the child elements of the node, without going through the XPath engine.
+ *
+ * <p>Expressions that contain a {@code :} (namespace prefixes or axes) are delegated to {@link XmlUtils} as is, since
+ * their result can depend on the namespaces declared in the document being queried.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class XPathUtils {
+
+    /**
+     * Max number of compiled expressions kept in the cache. When reached, new expressions are compiled on each call.
+     */
+    public static final int MAX_CACHED_EXPRESSIONS = 2000;
+
+    private static final Pattern SIMPLE_ELEMENT_NAME_PATTERN = Pattern.compile("[A-Za-z_][\\w.\\-]*");
+
+    private static final ConcurrentMap<Object, CompiledExpression> cache = new ConcurrentHashMap<>();
+
+    private XPathUtils() {
+    }
+
+    /**
+     * Returns the result of the XPath query: {@code null} if nothing matched, the node if just one matched or the
+     * list of nodes (or the value of the expression) otherwise.
+     */
+    public static Object selectObject(Node node, String xpathQuery) {
+        if (isNotCacheable(xpathQuery)) {
+            return XmlUtils.selectObject(node, xpathQuery);
+        }
+
+        Object result = compile(xpathQuery, null).selectObject(node);
+        if (result instanceof Collection && ((Collection<?>) result).isEmpty()) {
+            return null;
+        } else {
+            return result;
+        }
+    }
+
+    /**
+     * Returns the text of the first node that matches the XPath query, or {@code null} if nothing matched.
+     */
+    public static String selectSingleNodeValue(Node node, String xpathQuery) {
+        if (isNotCacheable(xpathQuery)) {
+            return XmlUtils.selectSingleNodeValue(node, xpathQuery);
+        }
+
+        return getText(compile(xpathQuery, null).selectSingleNode(node));
+    }
+
+    /**
+     * Returns the text of the first node that matches the XPath query, or {@code null} if nothing matched.
+     */
+    public static String selectSingleNodeValue(Node node, String xpathQuery, Map<String, String> namespaceUris) {
+        return getText(compile(xpathQuery, namespaceUris).selectSingleNode(node));
+    }
+
+    /**
+     * Returns the text of all the nodes that match the XPath query.
+     */
+    public static List<String> selectNodeValues(Node node, String xpathQuery) {
+        if (isNotCacheable(xpathQuery)) {
+            return XmlUtils.selectNodeValues(node, xpathQuery);
+        }
+
+        return getTexts(compile(xpathQuery, null).selectNodes(node));
+    }
+
+    /**
+     * Returns the text of all the nodes that match the XPath query.
+     */
+    public static List<String> selectNodeValues(Node node, String xpathQuery, Map<String, String> namespaceUris) {
+        return getTexts(compile(xpathQuery, namespaceUris).selectNodes(node));
+    }
+
+    /**
+     * Returns true if the expression is just a child element name, like {@code title_s}.
+     */
+    public static boolean isElementName(String xpathQuery) {
+        return SIMPLE_ELEMENT_NAME_PATTERN.matcher(xpathQuery).matches();
+    }
+
+    /**
+     * Returns the number of compiled expressions currently in the cache.
+     */
+    public static int getCachedExpressionCount() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all the compiled expressions from the cache.
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    private static boolean isNotCacheable(String xpathQuery) {
+        return xpathQuery.indexOf(':') >= 0;
+    }
+
+    private static String getText(Node node) {
+        return node != null? node.getText() : null;
+    }
+
+    private static List<String> getTexts(List<Node> nodes) {
+        List<String> texts = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            texts.add(node.getText());
+        }
+
+        return texts;
+    }
+
+    private static CompiledExpression compile(String xpathQuery, Map<String, String> namespaceUris) {
+        Object key = namespaceUris != null? Arrays.asList(xpathQuery, namespaceUris) : xpathQuery;
+
+        CompiledExpression expression = cache.get(key);
+        if (expression == null) {
+            expression = new CompiledExpression(xpathQuery, namespaceUris);
+            if (cache.size() < MAX_CACHED_EXPRESSIONS) {
+                cache.putIfAbsent(key, expression);
+            }
+        }
+
+        return expression;
+    }
+
+    /**
+     * An XPath expression ready to be evaluated: a compiled {@link XPath}, plus the child element name when the
+     * expression is just that. Instances are thread-safe since the namespace context of the XPath is fixed at
+     * compile time.
+     */
+    private static class CompiledExpression {
+
+        private final String elementName;
+        private final XPath xpath;
+
+        CompiledExpression(String xpathQuery, Map<String, String> namespaceUris) {
+            if (namespaceUris == null && isElementName(xpathQuery)) {
+                elementName = xpathQuery;
+            } else {
+                elementName = null;
+            }
+
+            // Still needed for simple names when the node is not an element (e.g. a document)
+            xpath = DocumentHelper.createXPath(xpathQuery);
+            // Setting the namespaces here avoids the XPath changing its namespace context on each evaluation
+            xpath.setNamespaceURIs(namespaceUris != null? namespaceUris : Collections.emptyMap());
+        }
+
+        Object selectObject(Node node) {
+            if (isElementLookup(node)) {
+                List<Node> children = getChildElements((Element) node, false);
+                return children.size() == 1? children.get(0) : children;
+            } else {
+                return xpath.evaluate(node);
+            }
+        }
+
+        Node selectSingleNode(Node node) {
+            if (isElementLookup(node)) {
+                List<Node> children = getChildElements((Element) node, true);
+                return !children.isEmpty()? children.get(0) : null;
+            } else {
+                return xpath.selectSingleNode(node);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Node> selectNodes(Node node) {
+            if (isElementLookup(node)) {
+                return getChildElements((Element) node, false);
+            } else {
+                return xpath.selectNodes(node);
+            }
+        }
+
+        private boolean isElementLookup(Node node) {
+            return elementName != null && node instanceof Element;
+        }
+
+        private List<Node> getChildElements(Element parent, boolean firstOnly) {
+            List<Node> children = null;
+
+            for (Iterator<?> iter = parent.elementIterator(elementName); iter.hasNext();) {
+                Element child = (Element) iter.next();
+                // Same as the XPath name test: an unprefixed name only matches elements with no namespace
+                if (StringUtils.isEmpty(child.getNamespaceURI())) {
+                    if (firstOnly) {
+                        return Collections.singletonList(child);
+                    }
+                    if (children == null) {
+                        children = new ArrayList<>();
+                    }
+
+                    children.add(child);
+                }
+            }
+
+            return children != null? children : Collections.emptyList();
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple rate limiter that spaces the operations evenly so that no more than a max number of operations per second
+ * are executed, across all the threads that use it.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class RateLimiter {
+
+    protected final long intervalNanos;
+    protected long nextSlot;
+
+    /**
+     * Creates a new rate limiter.
+     *
+     * @param permitsPerSecond the max number of operations per second
+     */
+    public RateLimiter(int permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("The number of permits per second must be greater than 0");
+        }
+
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.nextSlot = nanoTime();
+    }
+
+    /**
+     * Blocks until the next operation can be executed. If the thread is interrupted while waiting, it returns
+     * immediately with the interrupt flag set.
+     */
+    public void acquire() {
+        long waitNanos;
+        synchronized (this) {
+            long now = nanoTime();
+            long slot = Math.max(nextSlot, now);
+
+            nextSlot = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+
+        if (waitNanos > 0) {
+            try {
+                sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    protected void sleep(long nanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+
+}
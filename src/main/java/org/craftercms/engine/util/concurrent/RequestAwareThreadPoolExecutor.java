@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import java.util.concurrent.Executor;
+
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.engine.service.context.SiteContext;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+/**
+ * Extension of {@link SiteAwareThreadPoolExecutor} that also propagates the {@link RequestContext} and the
+ * {@link LocaleContext} of the thread that creates it, so that work done on behalf of a request (like rendering a
+ * component) can be executed in reusable threads.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class RequestAwareThreadPoolExecutor extends SiteAwareThreadPoolExecutor {
+
+    /**
+     * The {@link RequestContext} to use for all threads
+     */
+    protected RequestContext requestContext;
+
+    /**
+     * The {@link LocaleContext} to use for all threads
+     */
+    protected LocaleContext localeContext;
+
+    public RequestAwareThreadPoolExecutor(final SiteContext siteContext, final Executor wrappedExecutor) {
+        super(siteContext, wrappedExecutor);
+        this.requestContext = RequestContext.getCurrent();
+        this.localeContext = LocaleContextHolder.getLocaleContext();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        super.execute(() -> {
+            RequestContext.setCurrent(requestContext);
+            LocaleContextHolder.setLocaleContext(localeContext);
+            try {
+                command.run();
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+                RequestContext.clear();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link java.util.concurrent.ExecutorService} that runs its tasks one at a time, in the order they're submitted,
+ * using the threads of a shared {@link Executor}. This gives each site the behavior of a single thread executor
+ * without having a dedicated thread per site.
+ *
+ * <p>{@link #shutdownNow()} interrupts the running task like a single thread executor would, but since the thread
+ * belongs to the shared executor the interrupt is only delivered while the task is running, and cleared before the
+ * thread goes back to the shared executor.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class SerialExecutorService extends AbstractExecutorService {
+
+    protected final Executor executor;
+    protected final Queue<Runnable> tasks;
+    protected Runnable activeTask;
+    protected Thread activeThread;
+    protected boolean shutdown;
+
+    public SerialExecutorService(Executor executor) {
+        this.executor = executor;
+        this.tasks = new ArrayDeque<>();
+    }
+
+    @Override
+    public synchronized void execute(Runnable command) {
+        if (shutdown) {
+            throw new RejectedExecutionException("The executor has been shutdown");
+        }
+
+        tasks.add(() -> {
+            setActiveThread(Thread.currentThread());
+            try {
+                command.run();
+            } finally {
+                clearActiveThread();
+                scheduleNext();
+            }
+        });
+
+        if (activeTask == null) {
+            scheduleNext();
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+
+        if (activeTask == null) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown();
+
+        List<Runnable> pendingTasks = new ArrayList<>(tasks);
+        tasks.clear();
+
+        if (activeThread != null) {
+            activeThread.interrupt();
+        }
+
+        return pendingTasks;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && activeTask == null;
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    protected synchronized void setActiveThread(Thread thread) {
+        activeThread = thread;
+    }
+
+    protected synchronized void clearActiveThread() {
+        activeThread = null;
+
+        // Don't leak an interrupt from shutdownNow() to the next task of the shared thread
+        Thread.interrupted();
+    }
+
+    protected synchronized void scheduleNext() {
+        activeTask = tasks.poll();
+        if (activeTask != null) {
+            try {
+                executor.execute(activeTask);
+            } catch (RejectedExecutionException e) {
+                activeTask = null;
+                throw e;
+            }
+        } else if (shutdown) {
+            notifyAll();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.deployment;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The files changed by a deployment, as written by the Deployer in the change set file (by default
+ * {@code deployment-changes.json}) next to the deployment events file. The timestamp is the same of the clear cache
+ * event of the deployment, and the previous timestamp is the one of the clear cache event of the deployment before
+ * it, so Engine can tell if it missed any deployment and the change set doesn't cover all the changes.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DeploymentChangeSet {
+
+    private String timestamp;
+    private String previousTimestamp;
+    private List<String> createdFiles = Collections.emptyList();
+    private List<String> updatedFiles = Collections.emptyList();
+    private List<String> deletedFiles = Collections.emptyList();
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(String timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getPreviousTimestamp() {
+        return previousTimestamp;
+    }
+
+    public void setPreviousTimestamp(String previousTimestamp) {
+        this.previousTimestamp = previousTimestamp;
+    }
+
+    public List<String> getCreatedFiles() {
+        return createdFiles;
+    }
+
+    public void setCreatedFiles(List<String> createdFiles) {
+        this.createdFiles = createdFiles;
+    }
+
+    public List<String> getUpdatedFiles() {
+        return updatedFiles;
+    }
+
+    public void setUpdatedFiles(List<String> updatedFiles) {
+        this.updatedFiles = updatedFiles;
+    }
+
+    public List<String> getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public void setDeletedFiles(List<String> deletedFiles) {
+        this.deletedFiles = deletedFiles;
+    }
+
+    /**
+     * Returns all the created, updated and deleted files.
+     */
+    public Set<String> getChangedPaths() {
+        Set<String> paths = new LinkedHashSet<>();
+        if (createdFiles != null) {
+            paths.addAll(createdFiles);
+        }
+        if (updatedFiles != null) {
+            paths.addAll(updatedFiles);
+        }
+        if (deletedFiles != null) {
+            paths.addAll(deletedFiles);
+        }
+
+        return paths;
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.craftercms.engine.util.deployment;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.craftercms.core.service.CachingOptions;
 import org.craftercms.core.service.Content;
 import org.craftercms.core.service.ContentStoreService;
@@ -29,9 +30,11 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
@@ -48,6 +51,7 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
     private static final Logger logger = LoggerFactory.getLogger(DeploymentEventsWatcher.class);
 
     public static final String DEFAULT_DEPLOYMENT_EVENTS_FILE_URL = "deployment-events.properties";
+    public static final String DEFAULT_DEPLOYMENT_CHANGE_SET_FILE_URL = "deployment-changes.json";
 
     private static final String LATEST_EVENT_KEY_FORMAT = "siteName=%s, eventType=%s";
 
@@ -56,21 +60,31 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
     private static final String REBUILD_GRAPHQL_EVENT_KEY = "events.deployment.rebuildGraphQL";
 
     private String deploymentEventsFileUrl;
+    private String deploymentChangeSetFileUrl;
     private SiteContextManager siteContextManager;
+    private ObjectMapper objectMapper;
 
     private volatile boolean startupCompleted;
     private Map<String, SiteEvent> latestEvents;
+    private Map<String, Long> processedClearCacheEvents;
 
     public DeploymentEventsWatcher() {
         this.deploymentEventsFileUrl = DEFAULT_DEPLOYMENT_EVENTS_FILE_URL;
+        this.deploymentChangeSetFileUrl = DEFAULT_DEPLOYMENT_CHANGE_SET_FILE_URL;
+        this.objectMapper = new ObjectMapper();
         this.startupCompleted = false;
         this.latestEvents = new ConcurrentHashMap<>();
+        this.processedClearCacheEvents = new ConcurrentHashMap<>();
     }
 
     public void setDeploymentEventsFileUrl(String deploymentEventsFileUrl) {
         this.deploymentEventsFileUrl = deploymentEventsFileUrl;
     }
 
+    public void setDeploymentChangeSetFileUrl(String deploymentChangeSetFileUrl) {
+        this.deploymentChangeSetFileUrl = deploymentChangeSetFileUrl;
+    }
+
     @Required
     public void setSiteContextManager(SiteContextManager siteContextManager) {
         this.siteContextManager = siteContextManager;
@@ -124,7 +138,17 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
             if (lastContextBuildEvent < clearCacheEvent && lastCacheClearEvent < clearCacheEvent) {
                 logger.info("Clear cache deployment event received. Clearing cache for site {}...", siteName);
 
-                siteContext.startCacheClear();
+                Long previousClearCacheEvent = processedClearCacheEvents.put(siteName, clearCacheEvent);
+                DeploymentChangeSet changeSet = loadDeploymentChangeSet(siteContext, clearCacheEvent,
+                                                                        previousClearCacheEvent);
+                if (changeSet != null) {
+                    siteContext.startCacheClear(changeSet.getChangedPaths());
+                } else {
+                    siteContext.startCacheClear();
+                }
+            } else {
+                // The cache already includes the changes of the deployment (the context was built after it)
+                processedClearCacheEvents.merge(siteName, clearCacheEvent, Math::max);
             }
         }
 
@@ -180,6 +204,53 @@ public class DeploymentEventsWatcher implements ApplicationListener<ApplicationE
         return events;
     }
 
+    /**
+     * Returns the change set of the deployment that triggered the clear cache event, or null if there's none (e.g.
+     * the Deployer doesn't write it or it belongs to another deployment). Since the file only holds the changes of
+     * the last deployment, the change set is also ignored when it doesn't follow the previous clear cache event
+     * processed for the site (e.g. several deployments happened between two checks, or no event has been processed
+     * since the startup), so the whole cache is switched instead of missing the changes of the other deployments.
+     */
+    private DeploymentChangeSet loadDeploymentChangeSet(SiteContext siteContext, long clearCacheEvent,
+                                                        Long previousClearCacheEvent) {
+        String siteName = siteContext.getSiteName();
+        ContentStoreService contentStoreService = siteContext.getStoreService();
+        Context context = siteContext.getContext();
+        CachingOptions cachingOptions = CachingOptions.CACHE_OFF_CACHING_OPTIONS;
+        Content content = contentStoreService.findContent(context, cachingOptions, deploymentChangeSetFileUrl);
+
+        if (content == null) {
+            return null;
+        }
+
+        DeploymentChangeSet changeSet;
+        try (InputStream is = content.getInputStream()) {
+            changeSet = objectMapper.readValue(is, DeploymentChangeSet.class);
+        } catch (IOException e) {
+            logger.error("Unable to load deployment change set for site '{}'", siteName, e);
+            return null;
+        }
+
+        try {
+            if (changeSet.getTimestamp() == null ||
+                Instant.parse(changeSet.getTimestamp()).toEpochMilli() != clearCacheEvent) {
+                logger.debug("The deployment change set for site '{}' doesn't match the clear cache event", siteName);
+                return null;
+            }
+            if (previousClearCacheEvent == null || changeSet.getPreviousTimestamp() == null ||
+                Instant.parse(changeSet.getPreviousTimestamp()).toEpochMilli() != previousClearCacheEvent) {
+                logger.info("The deployment change set for site '{}' doesn't follow the last processed deployment, " +
+                            "the whole cache will be switched", siteName);
+                return null;
+            }
+        } catch (DateTimeParseException e) {
+            logger.error("Invalid timestamp in deployment change set for site '{}'", siteName, e);
+            return null;
+        }
+
+        return changeSet;
+    }
+
     private long getEventProperty(Properties deploymentEvents, String name) {
         return Instant.parse(deploymentEvents.getProperty(name)).toEpochMilli();
     }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.freemarker;
+
+import freemarker.cache.CacheStorage;
+import freemarker.cache.CacheStorageWithGetSize;
+import freemarker.cache.ConcurrentCacheStorage;
+import org.craftercms.engine.service.context.SiteContext;
+
+/**
+ * Freemarker {@link CacheStorage} that is skipped while the context of the current site is overridden (like during
+ * the renders of a cache warm up). The storage of Freemarker is shared by all the versions of the site cache, so
+ * the templates loaded from a version that hasn't been switched yet shouldn't be stored or retrieved from it. The
+ * templates are still cached per version by {@link CrafterCacheAwareConfiguration}.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class ContextOverrideAwareCacheStorage implements ConcurrentCacheStorage, CacheStorageWithGetSize {
+
+    protected final CacheStorage actualStorage;
+
+    public ContextOverrideAwareCacheStorage(CacheStorage actualStorage) {
+        this.actualStorage = actualStorage;
+    }
+
+    public CacheStorage getActualStorage() {
+        return actualStorage;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (isContextOverridden()) {
+            return null;
+        } else {
+            return actualStorage.get(key);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (!isContextOverridden()) {
+            actualStorage.put(key, value);
+        }
+    }
+
+    @Override
+    public void remove(Object key) {
+        if (!isContextOverridden()) {
+            actualStorage.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        actualStorage.clear();
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return actualStorage instanceof ConcurrentCacheStorage &&
+               ((ConcurrentCacheStorage) actualStorage).isConcurrent();
+    }
+
+    @Override
+    public int getSize() {
+        if (actualStorage instanceof CacheStorageWithGetSize) {
+            return ((CacheStorageWithGetSize) actualStorage).getSize();
+        } else {
+            return 0;
+        }
+    }
+
+    protected boolean isContextOverridden() {
+        SiteContext siteContext = SiteContext.getCurrent();
+
+        return siteContext != null && siteContext.isContextOverridden();
+    }
+
+}
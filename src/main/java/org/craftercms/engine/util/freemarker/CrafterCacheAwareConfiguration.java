@@ -28,7 +28,8 @@ import java.util.Locale;
 /**
  * Extension of Freemarker's {@code Configuration} that caches the result of {@code getTemplate()} in Crafter's own
  * cache, which handles key-based smart locking so that the same template is not compiled several times by concurrent
- * threads.
+ * threads. Freemarker's own storage is wrapped in a {@link ContextOverrideAwareCacheStorage}, so that the templates
+ * compiled for a cache version that hasn't been switched yet are only cached in that version.
  *
  * @author avasquez
  * @since 3.1.5
@@ -40,6 +41,10 @@ public class CrafterCacheAwareConfiguration extends Configuration {
     public CrafterCacheAwareConfiguration(Version incompatibleImprovements, boolean cacheTemplates) {
         super(incompatibleImprovements);
         this.cacheTemplates = cacheTemplates;
+
+        if (cacheTemplates) {
+            setCacheStorage(new ContextOverrideAwareCacheStorage(getCacheStorage()));
+        }
     }
 
     @Override
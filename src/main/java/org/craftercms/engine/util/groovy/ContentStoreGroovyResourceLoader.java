@@ -46,6 +46,22 @@ public class ContentStoreGroovyResourceLoader implements GroovyResourceLoader {
 
     @Override
     public URL loadGroovySource(String filename) throws MalformedURLException {
+        filename = getGroovySourcePath(filename, groovyResourcesUrlPrefix);
+
+        if (siteContext.getStoreService().exists(siteContext.getContext(), filename)){
+            return urlStreamHandler.createUrl(filename);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the path of the source file of the given Groovy class name.
+     *
+     * @param filename                  the class name or file name
+     * @param groovyResourcesUrlPrefix  the folder where the sources are, can be empty
+     */
+    public static String getGroovySourcePath(String filename, String groovyResourcesUrlPrefix) {
         if (filename.contains(".")) {
             filename = filename.replace('.', '/');
         }
@@ -56,11 +72,7 @@ public class ContentStoreGroovyResourceLoader implements GroovyResourceLoader {
             filename = UrlUtils.concat(groovyResourcesUrlPrefix, filename);
         }
 
-        if (siteContext.getStoreService().exists(siteContext.getContext(), filename)){
-            return urlStreamHandler.createUrl(filename);
-        } else {
-            return null;
-        }
+        return filename;
     }
 
 }
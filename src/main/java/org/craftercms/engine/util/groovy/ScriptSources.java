@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyResourceLoader;
+import groovy.util.ResourceConnector;
+import groovy.util.ResourceException;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.FieldNode;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.engine.exception.ScriptException;
+import org.craftercms.engine.scripting.impl.GroovyScriptFactory;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.url.ContentStoreUrlConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory copy of the Groovy sources of a site, identified by a hash of their paths and content. Since it doesn't
+ * depend on the content store of the site, it can be used to compile the scripts of all the sites that have the
+ * exact same sources (e.g. sites created from the same blueprint).
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class ScriptSources implements ResourceConnector {
+
+    private static final String URL_SCHEME = "shared";
+    private static final String SITE_URL_SCHEME_PREFIX = "site:";
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+    private static final Set<String> IMMUTABLE_STATIC_FIELD_TYPES = new HashSet<>(Arrays.asList(
+        String.class.getName(), Class.class.getName(), Pattern.class.getName(), "org.slf4j.Logger",
+        "org.apache.commons.logging.Log", "org.apache.logging.log4j.Logger", "java.util.logging.Logger"));
+
+    protected final Map<String, byte[]> sources;
+    protected final String fingerprint;
+    protected final long lastModified;
+    protected final URLStreamHandler urlStreamHandler;
+
+    public ScriptSources(Map<String, byte[]> sources) {
+        this.sources = Collections.unmodifiableMap(new TreeMap<>(sources));
+        this.fingerprint = calculateFingerprint(this.sources);
+        this.lastModified = System.currentTimeMillis();
+        this.urlStreamHandler = new SourceUrlStreamHandler();
+    }
+
+    /**
+     * Loads all the Groovy sources under the given folder of the site.
+     *
+     * @param siteContext   the context of the site
+     * @param folder        the folder where the sources are
+     */
+    public static ScriptSources load(SiteContext siteContext, String folder) {
+        return load(siteContext.getStoreService(), siteContext.getContext(), folder);
+    }
+
+    /**
+     * Loads all the Groovy sources under the given folder of the given store context.
+     *
+     * @param storeService  the content store service
+     * @param context       the context of the store (e.g. the one of a cache version being warmed up)
+     * @param folder        the folder where the sources are
+     */
+    public static ScriptSources load(ContentStoreService storeService, Context context, String folder) {
+        Map<String, byte[]> sources = new TreeMap<>();
+
+        loadSources(storeService, context, folder, sources);
+
+        return new ScriptSources(sources);
+    }
+
+    protected static void loadSources(ContentStoreService storeService, Context context, String folder,
+                                      Map<String, byte[]> sources) {
+        List<Item> items = storeService.findChildren(context, null, folder, null, null);
+        if (CollectionUtils.isNotEmpty(items)) {
+            for (Item item : items) {
+                if (item.isFolder()) {
+                    loadSources(storeService, context, item.getUrl(), sources);
+                } else if (item.getName().endsWith("." + GroovyScriptFactory.GROOVY_FILE_EXTENSION)) {
+                    Content content = storeService.getContent(context, item.getUrl());
+                    try (InputStream is = content.getInputStream()) {
+                        sources.put(item.getUrl(), IOUtils.toByteArray(is));
+                    } catch (IOException e) {
+                        throw new ScriptException("Unable to read script " + item.getUrl(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the hash of the paths and content of all the sources.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isEmpty() {
+        return sources.isEmpty();
+    }
+
+    public boolean contains(String path) {
+        return sources.containsKey(normalizePath(path));
+    }
+
+    /**
+     * Returns the static fields declared in the sources that can hold state, in other words the ones that are not
+     * constants of an immutable type (primitives, strings, enums, classes, patterns and loggers). The sources are
+     * only parsed and resolved, not compiled to bytecode.
+     *
+     * @param parentClassLoader the class loader used to resolve the classes referenced by the sources
+     *
+     * @return the names of the fields, as {@code class.field}
+     *
+     * @throws CompilationFailedException if the sources can't be parsed or their classes can't be resolved
+     */
+    public List<String> findMutableStaticFields(ClassLoader parentClassLoader) throws CompilationFailedException {
+        List<String> fields = new ArrayList<>();
+
+        try (GroovyClassLoader classLoader = new GroovyClassLoader(parentClassLoader)) {
+            CompilationUnit unit = new CompilationUnit(new CompilerConfiguration(), null, classLoader);
+            for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+                unit.addSource(source.getKey(), new String(source.getValue(), StandardCharsets.UTF_8));
+            }
+
+            // Script fields (@Field) and the fields of AST transformations like @Slf4j are added in this phase
+            unit.compile(Phases.SEMANTIC_ANALYSIS);
+
+            for (ClassNode classNode : unit.getAST().getClasses()) {
+                for (FieldNode field : classNode.getFields()) {
+                    // Internal fields of Groovy start with $ or __
+                    if (field.isStatic() && !field.getName().startsWith("$") && !field.getName().startsWith("__") &&
+                        !(field.isFinal() && isImmutableType(field.getType()))) {
+                        fields.add(classNode.getName() + "." + field.getName());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Only thrown when closing the class loader
+            throw new ScriptException("Unable to close class loader used to check the static fields", e);
+        }
+
+        return fields;
+    }
+
+    protected boolean isImmutableType(ClassNode type) {
+        if (ClassHelper.isPrimitiveType(type) || ClassHelper.isPrimitiveType(ClassHelper.getUnwrapper(type)) ||
+            type.isEnum()) {
+            return true;
+        }
+
+        return IMMUTABLE_STATIC_FIELD_TYPES.contains(type.getName());
+    }
+
+    @Override
+    public URLConnection getResourceConnection(String name) throws ResourceException {
+        try {
+            URL url = createUrl(name);
+            if (url != null) {
+                return url.openConnection();
+            }
+        } catch (IOException e) {
+            throw new ResourceException("Unable to open URL connection to '" + name + "'", e);
+        }
+
+        throw new ResourceException("Unable to open URL connection to '" + name + "'",
+                                    new FileNotFoundException("No script found at '" + name + "'"));
+    }
+
+    /**
+     * Returns a {@link GroovyResourceLoader} for the Groovy classes under the given folder.
+     */
+    public GroovyResourceLoader getGroovyResourceLoader(String groovyResourcesUrlPrefix) {
+        return filename -> createUrl(
+            ContentStoreGroovyResourceLoader.getGroovySourcePath(filename, groovyResourcesUrlPrefix));
+    }
+
+    protected URL createUrl(String path) throws MalformedURLException {
+        path = normalizePath(path);
+        if (sources.containsKey(path)) {
+            return new URL(null, URL_SCHEME + ':' + path, urlStreamHandler);
+        } else {
+            return null;
+        }
+    }
+
+    protected String normalizePath(String path) {
+        path = StringUtils.removeStart(path, SITE_URL_SCHEME_PREFIX);
+
+        return StringUtils.prependIfMissing(path, "/");
+    }
+
+    protected static String calculateFingerprint(Map<String, byte[]> sources) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+            for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+                digest.update(source.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(source.getValue());
+                digest.update((byte) 0);
+            }
+
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(FINGERPRINT_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    protected class SourceUrlStreamHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) throws IOException {
+            byte[] source = sources.get(url.getFile());
+            if (source == null) {
+                throw new FileNotFoundException("No script found at '" + url.getFile() + "'");
+            }
+
+            return new ContentStoreUrlConnection(url, new SourceContent(source));
+        }
+
+    }
+
+    protected class SourceContent implements Content {
+
+        protected final byte[] source;
+
+        public SourceContent(byte[] source) {
+            this.source = source;
+        }
+
+        @Override
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public long getLength() {
+            return source.length;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(source);
+        }
+
+    }
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.util.GroovyScriptEngine;
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.cache.ContextCacheWarmer;
+import org.craftercms.engine.service.context.SiteContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.craftercms.engine.util.GroovyScriptUtils.getCompilerConfiguration;
+
+/**
+ * Keeps the Groovy classes compiled for sites that have the exact same scripts, so that they're compiled and loaded
+ * only once. Sites with the same {@link ScriptSources#getFingerprint()} share a {@link ClassSpace}: the class loader
+ * of the Groovy classes and the script engine. The variables of the scripts still come from each site. Since the
+ * static fields of the shared classes would be shared too, scripts that declare static fields that can hold state
+ * (anything but constants of immutable types) are never shared, each site compiles its own classes for them.
+ *
+ * <p>It's also a {@link ContextCacheWarmer}, so that the fingerprint of the scripts of a site (used to check if they
+ * have diverged from the shared ones) is calculated during the warm up of a new cache, and not by the first request
+ * that uses a script after the cache is switched.</p>
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class SharedGroovyClasses implements ContextCacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedGroovyClasses.class);
+
+    public static final String SCRIPTS_FINGERPRINT_CACHE_KEY_ELEM = "scriptsFingerprint";
+
+    protected boolean enabled;
+    protected String scriptsFolder;
+    protected String groovyClassesPath;
+    protected boolean enableScriptSandbox;
+    protected final Map<String, ClassSpace> classSpaces;
+
+    public SharedGroovyClasses() {
+        classSpaces = new HashMap<>();
+    }
+
+    /**
+     * Sets if the compiled classes should be shared between sites.
+     */
+    @Required
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the folder with all the Groovy sources of a site (classes and scripts).
+     */
+    @Required
+    public void setScriptsFolder(String scriptsFolder) {
+        this.scriptsFolder = scriptsFolder;
+    }
+
+    @Required
+    public void setGroovyClassesPath(String groovyClassesPath) {
+        this.groovyClassesPath = groovyClassesPath;
+    }
+
+    @Required
+    public void setEnableScriptSandbox(boolean enableScriptSandbox) {
+        this.enableScriptSandbox = enableScriptSandbox;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the number of class spaces currently shared.
+     */
+    public synchronized int getClassSpaceCount() {
+        return classSpaces.size();
+    }
+
+    /**
+     * Returns a class loader for the site that loads the classes from the class space of its scripts, or null if the
+     * site has no scripts. The class space is released when the class loader is closed.
+     */
+    public URLClassLoader getClassLoader(SiteContext siteContext) {
+        ScriptSources sources = ScriptSources.load(siteContext, scriptsFolder);
+        if (sources.isEmpty()) {
+            return null;
+        }
+
+        ClassSpace classSpace;
+        synchronized (this) {
+            classSpace = classSpaces.get(sources.getFingerprint());
+            if (classSpace != null) {
+                classSpace.references++;
+            }
+        }
+
+        if (classSpace == null) {
+            // Checked out of the lock, only the first site with these scripts needs to do it
+            if (!isShareable(siteContext, sources)) {
+                return null;
+            }
+
+            synchronized (this) {
+                classSpace = classSpaces.computeIfAbsent(sources.getFingerprint(), fingerprint -> {
+                    logger.info("Creating shared Groovy class space {}", fingerprint);
+
+                    return new ClassSpace(sources);
+                });
+                classSpace.references++;
+            }
+        }
+
+        // Prime the cache used to check if the scripts of the site have changed
+        siteContext.getFromCache(sources::getFingerprint, SCRIPTS_FINGERPRINT_CACHE_KEY_ELEM);
+
+        logger.debug("Site '{}' is using shared Groovy class space {}", siteContext.getSiteName(),
+                     classSpace.getFingerprint());
+
+        return new SiteClassLoader(classSpace);
+    }
+
+    /**
+     * Returns a class loader for the Groovy classes of the site that doesn't delegate to any shared class space. Used
+     * to compile the scripts of a site once they have diverged from the ones of its class space.
+     */
+    public GroovyClassLoader createIsolatedClassLoader(SiteContext siteContext) {
+        GroovyClassLoader classLoader = new GroovyClassLoader(getClass().getClassLoader(),
+                                                              getCompilerConfiguration(enableScriptSandbox));
+        classLoader.setResourceLoader(new ContentStoreGroovyResourceLoader(siteContext, groovyClassesPath));
+
+        return classLoader;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void warmUpCache(Context context) {
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (!isUsingSharedClasses(siteContext)) {
+            return;
+        }
+
+        String fingerprint = ScriptSources.load(siteContext.getStoreService(), context, scriptsFolder)
+                                          .getFingerprint();
+
+        logger.debug("Scripts fingerprint of site '{}' for new cache is {}", siteContext.getSiteName(), fingerprint);
+
+        siteContext.getCacheTemplate().getObject(context, () -> fingerprint, SCRIPTS_FINGERPRINT_CACHE_KEY_ELEM);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean warmUpPaths(Context context, Collection<String> changedPaths) {
+        // The fingerprint of the scripts is not tied to a path, so it can't be evicted and warmed up incrementally
+        SiteContext siteContext = SiteContext.getCurrent();
+        if (isUsingSharedClasses(siteContext)) {
+            for (String path : changedPaths) {
+                if (path.startsWith(scriptsFolder + "/")) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates if the classes of the scripts can be shared, which is only when they don't declare static fields that
+     * can hold state, since those would leak from one site to the others.
+     */
+    protected boolean isShareable(SiteContext siteContext, ScriptSources sources) {
+        List<String> fields;
+        try {
+            fields = sources.findMutableStaticFields(getClass().getClassLoader());
+        } catch (CompilationFailedException e) {
+            logger.debug("Unable to check the static fields of the scripts of site '{}', they won't be shared",
+                         siteContext.getSiteName(), e);
+            return false;
+        }
+
+        if (!fields.isEmpty()) {
+            logger.info("The scripts of site '{}' won't be shared with other sites because they declare static " +
+                        "fields that can hold state: {}", siteContext.getSiteName(), fields);
+            return false;
+        }
+
+        return true;
+    }
+
+    protected boolean isUsingSharedClasses(SiteContext siteContext) {
+        return enabled && siteContext != null && siteContext.getClassLoader() instanceof SiteClassLoader;
+    }
+
+    protected synchronized void release(ClassSpace classSpace) {
+        if (--classSpace.references == 0) {
+            logger.info("Closing shared Groovy class space {}", classSpace.getFingerprint());
+
+            classSpaces.remove(classSpace.getFingerprint());
+            classSpace.close();
+        }
+    }
+
+    /**
+     * The classes compiled from a set of {@link ScriptSources}.
+     */
+    public class ClassSpace {
+
+        protected final ScriptSources sources;
+        protected final GroovyClassLoader classLoader;
+        protected final GroovyScriptEngine scriptEngine;
+        protected int references;
+
+        protected ClassSpace(ScriptSources sources) {
+            this.sources = sources;
+            this.classLoader = new GroovyClassLoader(getClass().getClassLoader(),
+                                                     getCompilerConfiguration(enableScriptSandbox));
+            this.classLoader.setResourceLoader(sources.getGroovyResourceLoader(groovyClassesPath));
+            this.scriptEngine = new GroovyScriptEngine(sources, classLoader);
+            this.scriptEngine.setConfig(getCompilerConfiguration(enableScriptSandbox));
+        }
+
+        public String getFingerprint() {
+            return sources.getFingerprint();
+        }
+
+        public GroovyScriptEngine getScriptEngine() {
+            return scriptEngine;
+        }
+
+        /**
+         * Returns true if the script can be loaded from this class space by the site, which means that it's one of
+         * the shared sources and that the scripts of the site haven't changed since the class space was created.
+         */
+        public boolean isShared(SiteContext siteContext, String scriptUrl) {
+            if (!sources.contains(scriptUrl)) {
+                return false;
+            }
+
+            String fingerprint = siteContext.getFromCache(
+                () -> ScriptSources.load(siteContext, scriptsFolder).getFingerprint(),
+                SCRIPTS_FINGERPRINT_CACHE_KEY_ELEM);
+
+            return getFingerprint().equals(fingerprint);
+        }
+
+        protected void close() {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                logger.error("Unable to close class loader of shared Groovy class space {}", getFingerprint(), e);
+            }
+        }
+
+    }
+
+    /**
+     * Class loader used by each site, it delegates to the class loader of the shared class space.
+     */
+    public class SiteClassLoader extends URLClassLoader {
+
+        protected final ClassSpace classSpace;
+        protected boolean closed;
+
+        protected SiteClassLoader(ClassSpace classSpace) {
+            super(new URL[0], classSpace.classLoader);
+
+            this.classSpace = classSpace;
+        }
+
+        public ClassSpace getClassSpace() {
+            return classSpace;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+            }
+
+            try {
+                super.close();
+            } finally {
+                release(classSpace);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.servlet;
+
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Response wrapper for pages that can be flushed early. The page is kept in a buffer until it's actually flushed,
+ * and only then the content caching of the ETag filter is disabled, so that pages that don't flush still get an
+ * ETag. Only explicit flushes should reach the writer, so the page should be processed without auto flush.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class EarlyFlushResponseWrapper extends HttpServletResponseWrapper {
+
+    private final HttpServletRequest request;
+    private final StringBuilder buffer;
+    private Writer actualWriter;
+    private PrintWriter writer;
+
+    public EarlyFlushResponseWrapper(HttpServletRequest request, HttpServletResponse response) {
+        super(response);
+        this.request = request;
+        this.buffer = new StringBuilder(1024);
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            writer = new PrintWriter(new EarlyFlushWriter());
+        }
+
+        return writer;
+    }
+
+    /**
+     * Indicates if the page has been flushed before it was complete.
+     */
+    public boolean isFlushed() {
+        return actualWriter != null;
+    }
+
+    /**
+     * Writes the rest of the page to the actual response. If the page was never flushed, the whole page is written
+     * at this point, through the content caching of the ETag filter.
+     */
+    public void finish() throws IOException {
+        if (actualWriter == null) {
+            getResponse().getWriter().append(buffer);
+        } else {
+            actualWriter.append(buffer);
+        }
+
+        buffer.setLength(0);
+    }
+
+    private class EarlyFlushWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            buffer.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            buffer.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (actualWriter == null) {
+                // An ETag can't be calculated for a response that is sent before it's complete, so the ETag filter
+                // needs to let it pass through
+                ShallowEtagHeaderFilter.disableContentCaching(request);
+
+                actualWriter = getResponse().getWriter();
+            }
+
+            actualWriter.append(buffer);
+            actualWriter.flush();
+
+            buffer.setLength(0);
+        }
+
+        @Override
+        public void close() {
+            // The actual writer is closed by the container
+        }
+
+    }
+
+}
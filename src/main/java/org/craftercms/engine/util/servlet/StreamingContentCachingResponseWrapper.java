@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Response wrapper that, unlike Spring's {@code ContentCachingResponseWrapper}, writes the content to the actual
+ * response as it's generated (so that it can be flushed before it's complete) while keeping a copy of it.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class StreamingContentCachingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream content;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public StreamingContentCachingResponseWrapper(HttpServletResponse response) {
+        super(response);
+        content = new ByteArrayOutputStream(1024);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CopyingOutputStream(getResponse().getOutputStream());
+        }
+
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (outputStream != null) {
+            outputStream.flush();
+        }
+
+        super.flushBuffer();
+    }
+
+    /**
+     * Returns a copy of the content written so far.
+     */
+    public byte[] getContentAsByteArray() {
+        if (writer != null) {
+            writer.flush();
+        }
+
+        return content.toByteArray();
+    }
+
+    private class CopyingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream actualOutputStream;
+
+        private CopyingOutputStream(ServletOutputStream actualOutputStream) {
+            this.actualOutputStream = actualOutputStream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            actualOutputStream.write(b);
+            content.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            actualOutputStream.write(b, off, len);
+            content.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            actualOutputStream.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return actualOutputStream.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            actualOutputStream.setWriteListener(writeListener);
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.spring;
+
+import org.springframework.beans.factory.xml.BeanDefinitionParserDelegate;
+import org.springframework.beans.factory.xml.DefaultBeanDefinitionDocumentReader;
+import org.springframework.beans.factory.xml.XmlReaderContext;
+import org.w3c.dom.Element;
+
+/**
+ * {@link DefaultBeanDefinitionDocumentReader} that makes singletons lazy-init by default, like if the root
+ * {@code beans} element had {@code default-lazy-init="true"}. Beans or nested {@code beans} elements that specify
+ * their own lazy-init are not changed.
+ *
+ * @author joseross
+ * @since 4.0.0
+ */
+public class LazyInitBeanDefinitionDocumentReader extends DefaultBeanDefinitionDocumentReader {
+
+    @Override
+    protected BeanDefinitionParserDelegate createDelegate(XmlReaderContext readerContext, Element root,
+                                                          BeanDefinitionParserDelegate parentDelegate) {
+        BeanDefinitionParserDelegate delegate = super.createDelegate(readerContext, root, parentDelegate);
+
+        String lazyInit = root.getAttribute(BeanDefinitionParserDelegate.DEFAULT_LAZY_INIT_ATTRIBUTE);
+        if (parentDelegate == null &&
+            (lazyInit.isEmpty() || BeanDefinitionParserDelegate.DEFAULT_VALUE.equals(lazyInit))) {
+            delegate.getDefaults().setLazyInit(BeanDefinitionParserDelegate.TRUE_VALUE);
+        }
+
+        return delegate;
+    }
+
+}
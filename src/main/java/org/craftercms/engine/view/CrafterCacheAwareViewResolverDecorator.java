@@ -24,7 +24,8 @@ import org.springframework.web.servlet.ViewResolver;
 import java.util.Locale;
 
 /**
- * {@code ViewResolver} decorator that caches views on Crafter's own cache per site.
+ * {@code ViewResolver} decorator that caches views on Crafter's own cache per site. Concurrent misses of the same
+ * view are coalesced so that the view is only resolved once.
  *
  * <p>
  *     <strong>NOTE:</strong> if you're decorating a  {@code AbstractCachingViewResolver} please make sure you turn
@@ -60,7 +61,7 @@ public class CrafterCacheAwareViewResolverDecorator implements ViewResolver, Ord
         SiteContext siteContext = SiteContext.getCurrent();
         if (siteContext != null) {
             try {
-                return siteContext.getCacheTemplate().getObject(siteContext.getContext(), () -> {
+                return siteContext.getFromCache(() -> {
                     try {
                         return actualViewResolver.resolveViewName(viewName, locale);
                     } catch (Exception e) {
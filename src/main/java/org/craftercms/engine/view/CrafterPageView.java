@@ -21,20 +21,29 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.craftercms.core.util.ExceptionUtils;
 import org.craftercms.core.util.cache.CachingAwareObject;
+import org.craftercms.engine.cache.CachedPageOutput;
+import org.craftercms.engine.cache.PageOutputCache;
 import org.craftercms.engine.exception.HttpStatusCodeAwareException;
 import org.craftercms.engine.exception.RenderingException;
 import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.scripting.Script;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.servlet.StreamingContentCachingResponseWrapper;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.ViewResolver;
 import org.springframework.web.servlet.view.AbstractView;
+import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -68,6 +77,7 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
     protected List<Script> scripts;
     protected ViewResolver delegatedViewResolver;
     protected boolean disableVariableRestrictions;
+    protected PageOutputCache pageOutputCache;
 
     public SiteItem getPage() {
         return page;
@@ -137,6 +147,10 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
         this.disableVariableRestrictions = disableVariableRestrictions;
     }
 
+    public void setPageOutputCache(PageOutputCache pageOutputCache) {
+        this.pageOutputCache = pageOutputCache;
+    }
+
     @Override
     public String toString() {
         return "CrafterPageView[" +
@@ -158,6 +172,79 @@ public class CrafterPageView extends AbstractView implements CachingAwareObject,
     @Override
     protected void renderMergedOutputModel(Map<String, Object> model, HttpServletRequest request,
                                            HttpServletResponse response) throws Exception {
+        if (pageOutputCache != null && pageOutputCache.isCacheable(request)) {
+            renderWithOutputCache(model, request, response);
+        } else {
+            renderPage(model, request, response);
+        }
+    }
+
+    protected void renderWithOutputCache(Map<String, Object> model, HttpServletRequest request,
+                                         HttpServletResponse response) throws Exception {
+        String siteName = SiteContext.getCurrent().getSiteName();
+        Object key = pageOutputCache.createKey(request, locale);
+
+        CachedPageOutput output = pageOutputCache.get(siteName, key);
+        if (output != null) {
+            request.setAttribute(PAGE_URL_ATTRIBUTE_NAME, page.getStoreUrl());
+
+            output.writeTo(response);
+
+            return;
+        }
+
+        if (SiteProperties.isEarlyFlushEnabled()) {
+            // The page is streamed to the client, so that it can be flushed early, while a copy is kept for the cache
+            StreamingContentCachingResponseWrapper responseWrapper =
+                new StreamingContentCachingResponseWrapper(response);
+
+            renderPage(model, request, responseWrapper);
+
+            if (isCacheable(responseWrapper)) {
+                cacheOutput(siteName, key, responseWrapper, responseWrapper.getContentAsByteArray());
+            }
+
+            responseWrapper.flushBuffer();
+        } else {
+            ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+
+            renderPage(model, request, responseWrapper);
+
+            // Only cache complete responses (not committed by the scripts)
+            if (!response.isCommitted() && isCacheable(responseWrapper)) {
+                cacheOutput(siteName, key, responseWrapper, responseWrapper.getContentAsByteArray());
+            }
+
+            responseWrapper.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Only successful responses that don't set any cookies are cached.
+     */
+    protected boolean isCacheable(HttpServletResponse response) {
+        return response.getStatus() == HttpServletResponse.SC_OK && !response.containsHeader(HttpHeaders.SET_COOKIE);
+    }
+
+    protected void cacheOutput(String siteName, Object key, HttpServletResponse response, byte[] content) {
+        pageOutputCache.put(siteName, key, new CachedPageOutput(response.getStatus(), response.getContentType(),
+                                                                getCacheableHeaders(response), content));
+    }
+
+    protected Map<String, List<String>> getCacheableHeaders(HttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (!HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name) && !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) &&
+                !HttpHeaders.DATE.equalsIgnoreCase(name)) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+
+        return headers;
+    }
+
+    protected void renderPage(Map<String, Object> model, HttpServletRequest request,
+                              HttpServletResponse response) throws Exception {
         request.setAttribute(PAGE_URL_ATTRIBUTE_NAME, page.getStoreUrl());
 
         Map<String, Object> scriptVariables = createScriptVariables(request, response, model);
@@ -21,8 +21,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.craftercms.commons.http.RequestContext;
+import org.craftercms.commons.lang.Callback;
 import org.craftercms.core.service.CachingOptions;
 import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.PageOutputCache;
 import org.craftercms.engine.mobile.UserAgentTemplateDetector;
 import org.craftercms.engine.model.SiteItem;
 import org.craftercms.engine.properties.SiteProperties;
@@ -65,6 +67,7 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
     protected String storeUrlToRenderUrlTransformerName;
     protected String toFullHttpsUrlTransformerName;
     protected UrlTransformationService urlTransformationService;
+    @Deprecated
     protected CacheTemplate cacheTemplate;
     protected CachingOptions cachingOptions;
     protected SiteItemService siteItemService;
@@ -80,6 +83,7 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
     protected UserAgentTemplateDetector userAgentTemplateDetector;
     protected CrafterPageAccessManager accessManager;
     protected boolean disableVariableRestrictions;
+    protected PageOutputCache pageOutputCache;
 
     public CrafterPageViewResolver() {
         order = 10;
@@ -119,7 +123,11 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
         this.urlTransformationService = urlTransformationService;
     }
 
-    @Required
+    /**
+     * @deprecated the views are cached through the {@link SiteContext} of the current site, which coalesces the
+     * concurrent loads of the same view. The cache template is no longer used.
+     */
+    @Deprecated
     public void setCacheTemplate(CacheTemplate cacheTemplate) {
         this.cacheTemplate = cacheTemplate;
     }
@@ -192,6 +200,10 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
         this.disableVariableRestrictions = disableVariableRestrictions;
     }
 
+    public void setPageOutputCache(PageOutputCache pageOutputCache) {
+        this.pageOutputCache = pageOutputCache;
+    }
+
     @Override
     public View resolveViewName(String renderUrl, Locale locale)  {
         String storeUrl = urlTransformationService.transform(renderUrlToStoreUrlTransformerName, renderUrl, cacheUrlTransformations);
@@ -248,7 +260,7 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
     protected View getCachedLocalizedView(final String url, final Locale locale) {
         final SiteContext siteContext = SiteContext.getCurrent();
         if (siteContext != null) {
-            return cacheTemplate.getObject(siteContext.getContext(), cachingOptions, () -> {
+            Callback<View> loader = () -> {
                 SiteItem page = getPage(url);
                 if (page != null) {
                     String redirectUrl = page.queryValue(redirectUrlXPathQuery);
@@ -278,6 +290,7 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
                         view.setMimeTypeXPathQuery(mimeTypeXPathQuery);
                         view.setDelegatedViewResolver(delegatedViewResolver);
                         view.setUserAgentTemplateDetector(userAgentTemplateDetector);
+                        view.setPageOutputCache(pageOutputCache);
 
                         loadScripts(siteContext.getScriptFactory(), page, view);
 
@@ -287,7 +300,9 @@ public class CrafterPageViewResolver extends WebApplicationObjectSupport impleme
                     // Return null to continue with the ViewResolverChain
                     return null;
                 }
-            }, url, locale, PAGE_CONST_KEY_ELEM);
+            };
+
+            return siteContext.getFromCache(cachingOptions, loader, url, locale, PAGE_CONST_KEY_ELEM);
         } else {
             // Return null to continue with the ViewResolverChain
             return null;
@@ -15,21 +15,31 @@
  */
 package org.craftercms.engine.view.freemarker;
 
+import freemarker.core.Environment;
 import freemarker.ext.beans.BeansWrapper;
 import freemarker.ext.servlet.HttpRequestParametersHashModel;
 import freemarker.ext.servlet.HttpSessionHashModel;
 import freemarker.template.SimpleHash;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
 import freemarker.template.TemplateHashModel;
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.ArrayUtils;
 import org.craftercms.engine.freemarker.ExecuteControllerDirective;
+import org.craftercms.engine.freemarker.FlushResponseDirective;
+import org.craftercms.engine.freemarker.ParallelComponentWriter;
 import org.craftercms.engine.freemarker.RenderComponentDirective;
 import org.craftercms.engine.freemarker.ServletContextHashModel;
+import org.craftercms.engine.mobile.UserAgentTemplateDetector;
+import org.craftercms.engine.properties.SiteProperties;
 import org.craftercms.engine.scripting.SiteItemScriptResolver;
 import org.craftercms.engine.service.SiteItemService;
 import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.TargetIdManager;
+import org.craftercms.engine.util.concurrent.RequestAwareThreadPoolExecutor;
 import org.craftercms.engine.util.freemarker.HttpRequestHashModel;
 import org.craftercms.engine.util.freemarker.SiteContextHashModel;
+import org.craftercms.engine.util.servlet.EarlyFlushResponseWrapper;
 import org.craftercms.engine.util.spring.ApplicationContextAccessor;
 import org.craftercms.engine.util.spring.security.profile.ProfileUser;
 import org.springframework.beans.BeansException;
@@ -47,9 +57,11 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Extends {@link FreeMarkerView} to add {@link RenderComponentDirective}s to support page component rendering in
@@ -61,6 +73,7 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
 
     public static final String RENDER_COMPONENT_DIRECTIVE_NAME = "renderComponent";
     public static final String EXECUTE_CONTROLLER_DIRECTIVE_NAME = "controller";
+    public static final String FLUSH_RESPONSE_DIRECTIVE_NAME = "flushResponse";
 
     public static final String KEY_APPLICATION_CAP = "Application";
     public static final String KEY_APPLICATION = "application";
@@ -97,6 +110,13 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
     protected String componentIncludeElementName;
     protected String componentEmbeddedElementName;
     protected SiteItemScriptResolver componentScriptResolver;
+    protected String componentFragmentCacheXPathQuery;
+    protected TargetIdManager targetIdManager;
+    protected UserAgentTemplateDetector userAgentTemplateDetector;
+    protected String componentParallelRenderingXPathQuery;
+    protected boolean parallelComponentRenderingEnabled;
+    protected Executor componentRenderExecutor;
+    protected int maxParallelComponentsPerPage;
 
     // Needed because the field in the superclass is private
     protected boolean disableVariableRestrictions;
@@ -153,6 +173,34 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
         this.componentScriptResolver = componentScriptResolver;
     }
 
+    public void setComponentFragmentCacheXPathQuery(String componentFragmentCacheXPathQuery) {
+        this.componentFragmentCacheXPathQuery = componentFragmentCacheXPathQuery;
+    }
+
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
+    public void setUserAgentTemplateDetector(UserAgentTemplateDetector userAgentTemplateDetector) {
+        this.userAgentTemplateDetector = userAgentTemplateDetector;
+    }
+
+    public void setComponentParallelRenderingXPathQuery(String componentParallelRenderingXPathQuery) {
+        this.componentParallelRenderingXPathQuery = componentParallelRenderingXPathQuery;
+    }
+
+    public void setParallelComponentRenderingEnabled(boolean parallelComponentRenderingEnabled) {
+        this.parallelComponentRenderingEnabled = parallelComponentRenderingEnabled;
+    }
+
+    public void setComponentRenderExecutor(Executor componentRenderExecutor) {
+        this.componentRenderExecutor = componentRenderExecutor;
+    }
+
+    public void setMaxParallelComponentsPerPage(int maxParallelComponentsPerPage) {
+        this.maxParallelComponentsPerPage = maxParallelComponentsPerPage;
+    }
+
     /**
      * Instead of returning the same bean from the application context, a {@link FreeMarkerConfig} is returned for
      * the current {@link SiteContext}.
@@ -249,16 +297,75 @@ public class CrafterFreeMarkerView extends FreeMarkerView {
         renderComponentDirective.setComponentElementName(componentEmbeddedElementName);
         renderComponentDirective.setScriptResolver(componentScriptResolver);
         renderComponentDirective.setServletContext(getServletContext());
+        renderComponentDirective.setFragmentCacheXPathQuery(componentFragmentCacheXPathQuery);
+        renderComponentDirective.setTargetIdManager(targetIdManager);
+        renderComponentDirective.setUserAgentTemplateDetector(userAgentTemplateDetector);
+        renderComponentDirective.setParallelRenderingXPathQuery(componentParallelRenderingXPathQuery);
 
         ExecuteControllerDirective executeControllerDirective = new ExecuteControllerDirective();
         executeControllerDirective.setServletContext(getServletContext());
 
         templateModel.put(RENDER_COMPONENT_DIRECTIVE_NAME, renderComponentDirective);
         templateModel.put(EXECUTE_CONTROLLER_DIRECTIVE_NAME, executeControllerDirective);
+        templateModel.put(FLUSH_RESPONSE_DIRECTIVE_NAME, new FlushResponseDirective());
 
         return templateModel;
     }
 
+    @Override
+    protected void renderMergedTemplateModel(Map<String, Object> model, HttpServletRequest request,
+                                             HttpServletResponse response) throws Exception {
+        if (SiteProperties.isEarlyFlushEnabled()) {
+            // The ETag filter is only bypassed if the page is actually flushed
+            EarlyFlushResponseWrapper responseWrapper = new EarlyFlushResponseWrapper(request, response);
+
+            super.renderMergedTemplateModel(model, request, responseWrapper);
+
+            responseWrapper.finish();
+        } else {
+            super.renderMergedTemplateModel(model, request, response);
+        }
+    }
+
+    /**
+     * When parallel component rendering is enabled for the site, the page is processed with a
+     * {@link ParallelComponentWriter}, so that its components are rendered in the component render executor, with the
+     * current site, request and security contexts. When early flush is enabled, the page is processed without auto
+     * flush, so that only the flushes of the templates send the page before it's complete.
+     */
+    @Override
+    protected void processTemplate(Template template, SimpleHash model, HttpServletResponse response)
+            throws IOException, TemplateException {
+        if (isParallelComponentRenderingEnabled()) {
+            Executor executor = new RequestAwareThreadPoolExecutor(SiteContext.getCurrent(), componentRenderExecutor);
+            ParallelComponentWriter output = new ParallelComponentWriter(response.getWriter(), executor,
+                                                                         maxParallelComponentsPerPage);
+            Environment env = template.createProcessingEnvironment(model, output);
+            env.setAutoFlush(!SiteProperties.isEarlyFlushEnabled());
+
+            try {
+                env.process();
+            } catch (IOException | TemplateException | RuntimeException e) {
+                output.cancel();
+                throw e;
+            }
+
+            output.finish(env);
+        } else if (SiteProperties.isEarlyFlushEnabled()) {
+            Environment env = template.createProcessingEnvironment(model, response.getWriter());
+            env.setAutoFlush(false);
+            env.process();
+        } else {
+            super.processTemplate(template, model, response);
+        }
+    }
+
+    protected boolean isParallelComponentRenderingEnabled() {
+        return parallelComponentRenderingEnabled && componentRenderExecutor != null &&
+               maxParallelComponentsPerPage > 0 && SiteContext.getCurrent() != null &&
+               SiteProperties.isParallelComponentRenderingEnabled();
+    }
+
     protected HttpSessionHashModel createSessionModel(HttpServletRequest request, HttpServletResponse response) {
         HttpSession session = request.getSession(false);
         if(session != null) {
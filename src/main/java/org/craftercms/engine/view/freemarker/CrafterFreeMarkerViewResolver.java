@@ -15,12 +15,16 @@
  */
 package org.craftercms.engine.view.freemarker;
 
+import org.craftercms.engine.mobile.UserAgentTemplateDetector;
 import org.craftercms.engine.scripting.SiteItemScriptResolver;
 import org.craftercms.engine.service.SiteItemService;
+import org.craftercms.engine.targeting.TargetIdManager;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.web.servlet.view.AbstractUrlBasedView;
 import org.springframework.web.servlet.view.freemarker.FreeMarkerViewResolver;
 
+import java.util.concurrent.Executor;
+
 /**
  * View resolver tha resolves to {@link CrafterFreeMarkerView}s.
  *
@@ -33,6 +37,13 @@ public class CrafterFreeMarkerViewResolver extends FreeMarkerViewResolver {
     protected String componentIncludeElementName;
     protected String componentEmbeddedElementName;
     protected SiteItemScriptResolver componentScriptResolver;
+    protected String componentFragmentCacheXPathQuery;
+    protected TargetIdManager targetIdManager;
+    protected UserAgentTemplateDetector userAgentTemplateDetector;
+    protected String componentParallelRenderingXPathQuery;
+    protected boolean parallelComponentRenderingEnabled;
+    protected Executor componentRenderExecutor;
+    protected int maxParallelComponentsPerPage;
 
     @Required
     public void setSiteItemService(SiteItemService siteItemService) {
@@ -59,6 +70,40 @@ public class CrafterFreeMarkerViewResolver extends FreeMarkerViewResolver {
         this.componentScriptResolver = componentScriptResolver;
     }
 
+    public void setComponentFragmentCacheXPathQuery(String componentFragmentCacheXPathQuery) {
+        this.componentFragmentCacheXPathQuery = componentFragmentCacheXPathQuery;
+    }
+
+    public void setTargetIdManager(TargetIdManager targetIdManager) {
+        this.targetIdManager = targetIdManager;
+    }
+
+    public void setUserAgentTemplateDetector(UserAgentTemplateDetector userAgentTemplateDetector) {
+        this.userAgentTemplateDetector = userAgentTemplateDetector;
+    }
+
+    public void setComponentParallelRenderingXPathQuery(String componentParallelRenderingXPathQuery) {
+        this.componentParallelRenderingXPathQuery = componentParallelRenderingXPathQuery;
+    }
+
+    /**
+     * Indicates if components can be rendered in parallel. Each site also needs to enable it in its config.
+     */
+    public void setParallelComponentRenderingEnabled(boolean parallelComponentRenderingEnabled) {
+        this.parallelComponentRenderingEnabled = parallelComponentRenderingEnabled;
+    }
+
+    public void setComponentRenderExecutor(Executor componentRenderExecutor) {
+        this.componentRenderExecutor = componentRenderExecutor;
+    }
+
+    /**
+     * Sets the max number of components of a page that can be rendered at the same time.
+     */
+    public void setMaxParallelComponentsPerPage(int maxParallelComponentsPerPage) {
+        this.maxParallelComponentsPerPage = maxParallelComponentsPerPage;
+    }
+
     @Override
     protected Class requiredViewClass() {
         return CrafterFreeMarkerView.class;
@@ -74,6 +119,13 @@ public class CrafterFreeMarkerViewResolver extends FreeMarkerViewResolver {
         view.setComponentIncludeElementName(componentIncludeElementName);
         view.setComponentEmbeddedElementName(componentEmbeddedElementName);
         view.setComponentScriptResolver(componentScriptResolver);
+        view.setComponentFragmentCacheXPathQuery(componentFragmentCacheXPathQuery);
+        view.setTargetIdManager(targetIdManager);
+        view.setUserAgentTemplateDetector(userAgentTemplateDetector);
+        view.setComponentParallelRenderingXPathQuery(componentParallelRenderingXPathQuery);
+        view.setParallelComponentRenderingEnabled(parallelComponentRenderingEnabled);
+        view.setComponentRenderExecutor(componentRenderExecutor);
+        view.setMaxParallelComponentsPerPage(maxParallelComponentsPerPage);
 
         return view;
     }
@@ -15,3 +15,8 @@
         <@initPageBuilder props=pageBuilderProps />
     </#if>
 </#macro>
+
+<#-- Macro to send the page rendered so far (e.g. the head) to the client, needs rendering.earlyFlush.enabled -->
+<#macro flush>
+    <@flushResponse/>
+</#macro>
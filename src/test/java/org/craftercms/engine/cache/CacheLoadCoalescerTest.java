@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link CacheLoadCoalescer}.
+ *
+ * @author joseross
+ */
+public class CacheLoadCoalescerTest {
+
+    private CacheLoadCoalescer coalescer;
+
+    @Before
+    public void setUp() throws Exception {
+        coalescer = new CacheLoadCoalescer();
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> leader = executor.submit(() -> coalescer.load("key", () -> {
+                executions.incrementAndGet();
+                loadStarted.countDown();
+                try {
+                    releaseLoad.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return "value";
+            }));
+
+            loadStarted.await(5, TimeUnit.SECONDS);
+
+            Future<String> follower = executor.submit(() -> coalescer.load("key", () -> {
+                executions.incrementAndGet();
+                return "other";
+            }));
+
+            // Wait till the follower is actually waiting for the leader
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coalescer.getCoalescedLoadCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            releaseLoad.countDown();
+
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, executions.get());
+            assertEquals(1, coalescer.getLoadCount());
+            assertEquals(1, coalescer.getCoalescedLoadCount());
+            assertEquals(0, coalescer.getInFlightLoadCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaitForSlowLoadTimesOut() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        coalescer.setMaxWaitTime(50);
+
+        try {
+            Future<String> leader = executor.submit(() -> coalescer.load("key", () -> {
+                loadStarted.countDown();
+                try {
+                    releaseLoad.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return "value";
+            }));
+
+            loadStarted.await(5, TimeUnit.SECONDS);
+
+            // The leader never finishes while the follower waits, so the follower loads the key itself
+            assertEquals("other", coalescer.load("key", () -> "other"));
+            assertEquals(1, coalescer.getTimedOutWaitCount());
+
+            releaseLoad.countDown();
+
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            assertEquals(0, coalescer.getInFlightLoadCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSequentialLoadsAreNotCoalesced() throws Exception {
+        assertEquals("a", coalescer.load("key", () -> "a"));
+        assertEquals("b", coalescer.load("key", () -> "b"));
+        assertEquals(2, coalescer.getLoadCount());
+        assertEquals(0, coalescer.getCoalescedLoadCount());
+    }
+
+    @Test
+    public void testFailedLoadIsNotKept() throws Exception {
+        try {
+            coalescer.load("key", () -> {
+                throw new IllegalStateException("Load failed");
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("Load failed", e.getMessage());
+        }
+
+        assertEquals(0, coalescer.getInFlightLoadCount());
+        assertEquals("value", coalescer.load("key", () -> "value"));
+    }
+
+}
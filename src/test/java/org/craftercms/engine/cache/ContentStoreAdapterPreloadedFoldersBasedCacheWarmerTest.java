@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.core.store.ContentStoreAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ContentStoreAdapterPreloadedFoldersBasedCacheWarmer}.
+ *
+ * @author joseross
+ */
+public class ContentStoreAdapterPreloadedFoldersBasedCacheWarmerTest {
+
+    private static final List<String> FILES = Arrays.asList("/scripts/rest/test.get.groovy",
+                                                            "/scripts/rest/v1/items.get.groovy",
+                                                            "/scripts/classes/org/test/Greeter.groovy",
+                                                            "/site/website/index.xml",
+                                                            "/site/website/about/index.xml",
+                                                            "/site/website/about/team/index.xml",
+                                                            "/site/website/contact/index.xml",
+                                                            "/site/components/header.xml",
+                                                            "/site/components/footer.xml");
+
+    private ForkJoinPool warmUpPool;
+
+    @Before
+    public void setUp() {
+        warmUpPool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        warmUpPool.shutdownNow();
+    }
+
+    @Test
+    public void testParallelPreloadIsSameAsSerial() {
+        List<PreloadedFolder> serialFolders = warmUpCache(null);
+        List<PreloadedFolder> parallelFolders = warmUpCache(warmUpPool);
+
+        assertEquals(2, serialFolders.size());
+        assertTrue(serialFolders.stream().noneMatch(folder -> folder.getDescendants().isEmpty()));
+        assertEquals(serialFolders, parallelFolders);
+    }
+
+    private List<PreloadedFolder> warmUpCache(ForkJoinPool pool) {
+        ContentStoreAdapterPreloadedFoldersBasedCacheWarmer cacheWarmer =
+            new ContentStoreAdapterPreloadedFoldersBasedCacheWarmer();
+        cacheWarmer.setWarmUpEnabled(true);
+        cacheWarmer.setContentPreloadFolders(new String[] { "/scripts" });
+        cacheWarmer.setDescriptorPreloadFolders(new String[] { "/site:2" });
+        cacheWarmer.setWarmUpPool(pool);
+
+        Context actualContext = mock(Context.class);
+        when(actualContext.getStoreAdapter()).thenReturn(createStoreAdapter());
+
+        PreloadedFoldersAwareContext contextWrapper = new PreloadedFoldersAwareContext(
+            actualContext, mock(ContentStoreAdapter.class), createCacheService());
+
+        cacheWarmer.warmUpCache(contextWrapper);
+
+        return contextWrapper.getPreloadedFolders();
+    }
+
+    private ContentStoreAdapter createStoreAdapter() {
+        ContentStoreAdapter storeAdapter = mock(ContentStoreAdapter.class);
+
+        when(storeAdapter.findItem(any(Context.class), any(CachingOptions.class), anyString(), anyBoolean())).then(
+            invocation -> createItem((String) invocation.getArguments()[2]));
+        when(storeAdapter.findItems(any(Context.class), any(CachingOptions.class), anyString())).then(invocation -> {
+            String folder = (String) invocation.getArguments()[2];
+            Map<String, Item> children = new LinkedHashMap<>();
+
+            for (String file : new TreeSet<>(FILES)) {
+                if (file.startsWith(folder + "/")) {
+                    String name = file.substring(folder.length() + 1).split("/")[0];
+                    children.putIfAbsent(name, createItem(folder + "/" + name));
+                }
+            }
+
+            return new ArrayList<>(children.values());
+        });
+
+        return storeAdapter;
+    }
+
+    private Item createItem(String path) {
+        boolean folder = FILES.stream().anyMatch(file -> file.startsWith(path + "/"));
+        if (!folder && !FILES.contains(path)) {
+            return null;
+        }
+
+        Item item = new Item();
+        item.setName(path.substring(path.lastIndexOf('/') + 1));
+        item.setUrl(path);
+        item.setFolder(folder);
+
+        return item;
+    }
+
+    private CacheService createCacheService() {
+        Map<Object, Object> cache = new HashMap<>();
+        CacheService cacheService = mock(CacheService.class);
+
+        doAnswer(invocation -> cache.put(invocation.getArguments()[1], invocation.getArguments()[2]))
+            .when(cacheService).put(any(Context.class), any(), any());
+        when(cacheService.get(any(Context.class), any())).then(invocation -> cache.get(invocation.getArguments()[1]));
+
+        return cacheService;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.engine.event.SiteContextDestroyedEvent;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link HotPathSampler}.
+ *
+ * @author joseross
+ */
+public class HotPathSamplerTest {
+
+    private static final String SITE_NAME = "test";
+    private static final String INDEX_PATH = "/site/website/index.xml";
+    private static final String ABOUT_PATH = "/site/website/about/index.xml";
+    private static final String CSS_PATH = "/static-assets/css/main.css";
+
+    private Map<String, Object> snapshots;
+    private SiteSnapshotStore snapshotStore;
+    private List<Runnable> tasks;
+    private SiteContext siteContext;
+    private HotPathSampler sampler;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        snapshots = new HashMap<>();
+        Map<String, Long> previousCounts = new HashMap<>();
+        previousCounts.put("item:" + INDEX_PATH, 10L);
+        snapshots.put(SITE_NAME, previousCounts);
+
+        snapshotStore = mock(SiteSnapshotStore.class);
+        when(snapshotStore.isEnabled()).thenReturn(true);
+        when(snapshotStore.loadAnyVersion(anyString(), eq(HotPathSampler.HOT_PATHS_SNAPSHOT_NAME), eq(Map.class)))
+            .then(invocation -> snapshots.get((String) invocation.getArguments()[0]));
+        doAnswer(invocation -> snapshots.put((String) invocation.getArguments()[0], invocation.getArguments()[2]))
+            .when(snapshotStore).saveAnyVersion(anyString(), eq(HotPathSampler.HOT_PATHS_SNAPSHOT_NAME), any());
+
+        // Keep the tasks so the tests can check what runs in the background
+        tasks = new ArrayList<>();
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        doAnswer(invocation -> tasks.add((Runnable) invocation.getArguments()[0]))
+            .when(executor).execute(any(Runnable.class));
+
+        sampler = new HotPathSampler();
+        sampler.setEnabled(true);
+        sampler.setSampleRate(1);
+        sampler.setCapacity(10);
+        sampler.setPersistInterval(0);
+        sampler.setSnapshotStore(snapshotStore);
+        sampler.setPersistExecutor(executor);
+        sampler.afterPropertiesSet();
+
+        siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn(SITE_NAME);
+
+        SiteContext.setCurrent(siteContext);
+        RequestContext.setCurrent(new RequestContext(new MockHttpServletRequest(), null, null));
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+        RequestContext.clear();
+    }
+
+    @Test
+    public void testSavedPathsAreLoadedInTheBackground() {
+        sampler.sampleItem(INDEX_PATH);
+
+        // The request thread doesn't load the saved paths, and its sample is discarded
+        verify(snapshotStore, never()).loadAnyVersion(anyString(), anyString(), any());
+        assertTrue(sampler.sketches.isEmpty());
+        assertEquals(1, tasks.size());
+
+        // Only one load is started per site
+        sampler.sampleItem(INDEX_PATH);
+        assertEquals(1, tasks.size());
+
+        runTasks();
+
+        sampler.sampleItem(ABOUT_PATH);
+        sampler.sampleContent(CSS_PATH);
+        sampler.sampleContent(CSS_PATH);
+
+        List<HotPathSampler.HotPath> hotPaths = sampler.getHotPaths(SITE_NAME, 10);
+
+        // The counts saved before the startup are halved
+        assertEquals(3, hotPaths.size());
+        assertHotPath(hotPaths.get(0), INDEX_PATH, false, 5);
+        assertHotPath(hotPaths.get(1), CSS_PATH, true, 2);
+        assertHotPath(hotPaths.get(2), ABOUT_PATH, false, 1);
+    }
+
+    @Test
+    public void testWarmUpsAndJobsAreNotSampled() {
+        sampler.getHotPaths(SITE_NAME, 10);
+
+        when(siteContext.isContextOverridden()).thenReturn(true);
+        sampler.sampleItem(ABOUT_PATH);
+
+        when(siteContext.isContextOverridden()).thenReturn(false);
+        RequestContext.clear();
+        sampler.sampleItem(ABOUT_PATH);
+
+        List<HotPathSampler.HotPath> hotPaths = sampler.getHotPaths(SITE_NAME, 10);
+
+        assertEquals(1, hotPaths.size());
+        assertHotPath(hotPaths.get(0), INDEX_PATH, false, 5);
+    }
+
+    @Test
+    public void testPathsAreSavedAndDroppedWhenContextIsDestroyed() {
+        sampler.getHotPaths(SITE_NAME, 10);
+        sampler.sampleItem(ABOUT_PATH);
+
+        sampler.onApplicationEvent(new SiteContextDestroyedEvent(siteContext));
+
+        assertFalse(sampler.sketches.containsKey(SITE_NAME));
+        verify(snapshotStore).saveAnyVersion(eq(SITE_NAME), eq(HotPathSampler.HOT_PATHS_SNAPSHOT_NAME), any());
+
+        // When the site is requested again, the paths saved on destroy are not halved again
+        List<HotPathSampler.HotPath> hotPaths = sampler.getHotPaths(SITE_NAME, 10);
+
+        assertEquals(2, hotPaths.size());
+        assertHotPath(hotPaths.get(0), INDEX_PATH, false, 5);
+        assertHotPath(hotPaths.get(1), ABOUT_PATH, false, 1);
+    }
+
+    private void runTasks() {
+        List<Runnable> pendingTasks = new ArrayList<>(tasks);
+        tasks.clear();
+
+        pendingTasks.forEach(Runnable::run);
+    }
+
+    private void assertHotPath(HotPathSampler.HotPath hotPath, String path, boolean content, long count) {
+        assertEquals(path, hotPath.getPath());
+        assertEquals(content, hotPath.isContent());
+        assertEquals(count, hotPath.getCount());
+    }
+
+}
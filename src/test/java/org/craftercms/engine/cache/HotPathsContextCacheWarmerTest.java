@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.store.ContentStoreAdapter;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link HotPathsContextCacheWarmer}.
+ *
+ * @author joseross
+ */
+public class HotPathsContextCacheWarmerTest {
+
+    private static final String SITE_NAME = "test";
+    private static final String INDEX_PATH = "/site/website/index.xml";
+    private static final String ABOUT_PATH = "/site/website/about/index.xml";
+    private static final String CSS_PATH = "/static-assets/css/main.css";
+
+    private ContentStoreAdapter storeAdapter;
+    private Context context;
+    private HotPathsContextCacheWarmer cacheWarmer;
+
+    @Before
+    public void setUp() {
+        storeAdapter = mock(ContentStoreAdapter.class);
+        context = mock(Context.class);
+        when(context.getStoreAdapter()).thenReturn(storeAdapter);
+
+        HotPathSampler sampler = mock(HotPathSampler.class);
+        when(sampler.isEnabled()).thenReturn(true);
+        when(sampler.getHotPaths(SITE_NAME, 2)).thenReturn(Arrays.asList(
+            new HotPathSampler.HotPath(INDEX_PATH, false, 10),
+            new HotPathSampler.HotPath(CSS_PATH, true, 5)));
+
+        cacheWarmer = new HotPathsContextCacheWarmer();
+        cacheWarmer.setWarmUpEnabled(true);
+        cacheWarmer.setHotPathSampler(sampler);
+        cacheWarmer.setMaxPaths(2);
+
+        SiteContext siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn(SITE_NAME);
+
+        SiteContext.setCurrent(siteContext);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testHotPathsAreLoadedLikeTheyWereRequested() {
+        cacheWarmer.warmUpCache(context);
+
+        verify(storeAdapter).findItem(context, null, INDEX_PATH, true);
+        verify(storeAdapter).findContent(context, null, CSS_PATH);
+        verify(storeAdapter, never()).findItem(context, null, CSS_PATH, true);
+        verify(storeAdapter, never()).findContent(context, null, INDEX_PATH);
+    }
+
+    @Test
+    public void testOnlyChangedHotPathsAreLoadedIncrementally() {
+        assertTrue(cacheWarmer.warmUpPaths(context, Arrays.asList("site/website/index.xml", ABOUT_PATH)));
+
+        verify(storeAdapter).findItem(context, null, INDEX_PATH, true);
+        verify(storeAdapter, never()).findItem(context, null, ABOUT_PATH, true);
+        verify(storeAdapter, never()).findContent(any(Context.class), any(CachingOptions.class), anyString());
+    }
+
+    @Test
+    public void testNothingIsLoadedWhenWarmUpIsDisabled() {
+        cacheWarmer.setWarmUpEnabled(false);
+        cacheWarmer.warmUpCache(context);
+
+        verify(storeAdapter, never()).findItem(any(Context.class), any(CachingOptions.class), anyString(),
+                                               anyBoolean());
+        verify(storeAdapter, never()).findContent(any(Context.class), any(CachingOptions.class), anyString());
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.engine.event.CacheClearStartedEvent;
+import org.craftercms.engine.event.SiteContextDestroyedEvent;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link PageOutputCache}.
+ *
+ * @author joseross
+ */
+public class PageOutputCacheTest {
+
+    private static final String SITE_NAME = "test";
+    private static final String OTHER_SITE_NAME = "other";
+
+    private PageOutputCache pageOutputCache;
+
+    @Before
+    public void setUp() throws Exception {
+        pageOutputCache = new PageOutputCache();
+        pageOutputCache.setEnabled(true);
+        pageOutputCache.setMaxEntriesPerSite(2);
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        CachedPageOutput output = createOutput("index");
+
+        pageOutputCache.put(SITE_NAME, "/index", output);
+
+        assertSame(output, pageOutputCache.get(SITE_NAME, "/index"));
+        assertNull(pageOutputCache.get(SITE_NAME, "/about"));
+        assertNull(pageOutputCache.get(OTHER_SITE_NAME, "/index"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        pageOutputCache.put(SITE_NAME, "/a", createOutput("a"));
+        pageOutputCache.put(SITE_NAME, "/b", createOutput("b"));
+
+        // Access /a so that /b becomes the least recently used
+        pageOutputCache.get(SITE_NAME, "/a");
+
+        pageOutputCache.put(SITE_NAME, "/c", createOutput("c"));
+
+        assertNotNull(pageOutputCache.get(SITE_NAME, "/a"));
+        assertNull(pageOutputCache.get(SITE_NAME, "/b"));
+        assertNotNull(pageOutputCache.get(SITE_NAME, "/c"));
+    }
+
+    @Test
+    public void testClearOnSiteEvents() throws Exception {
+        pageOutputCache.put(SITE_NAME, "/index", createOutput("index"));
+        pageOutputCache.put(OTHER_SITE_NAME, "/index", createOutput("index"));
+
+        pageOutputCache.onApplicationEvent(new CacheClearStartedEvent(mockSiteContext(SITE_NAME)));
+
+        assertNull(pageOutputCache.get(SITE_NAME, "/index"));
+        assertNotNull(pageOutputCache.get(OTHER_SITE_NAME, "/index"));
+
+        pageOutputCache.onApplicationEvent(new SiteContextDestroyedEvent(mockSiteContext(OTHER_SITE_NAME)));
+
+        assertNull(pageOutputCache.get(OTHER_SITE_NAME, "/index"));
+    }
+
+    private CachedPageOutput createOutput(String content) {
+        return new CachedPageOutput(200, "text/html;charset=UTF-8", Collections.emptyMap(),
+                                    content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SiteContext mockSiteContext(String siteName) {
+        SiteContext siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn(siteName);
+
+        return siteContext;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.ContentStoreService;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link PreloadedFolder} and {@link PreloadedFolderIndex}.
+ *
+ * @author joseross
+ */
+public class PreloadedFolderTest {
+
+    private static final List<String> DESCENDANTS = Arrays.asList("/site/website",
+                                                                  "/site/website/index.xml",
+                                                                  "/site/website/about",
+                                                                  "/site/website/about/index.xml",
+                                                                  "/site/website/about-us",
+                                                                  "/site/website/about-us/index.xml");
+
+    @Test
+    public void testExistsWithDepth() {
+        PreloadedFolder folder = new PreloadedFolder("/site", 3, DESCENDANTS);
+
+        assertTrue(folder.exists("/site/website/about/index.xml"));
+        assertTrue(folder.exists("/site/website/about-us"));
+        assertFalse(folder.exists("/site/website/contact"));
+        assertFalse(folder.exists("/site/website/about/contact.xml"));
+        assertNull(folder.exists("/site/website/about/team/index.xml"));
+    }
+
+    @Test
+    public void testExistsWithUnlimitedDepth() {
+        PreloadedFolder folder = new PreloadedFolder("/site/", ContentStoreService.UNLIMITED_TREE_DEPTH,
+                                                     DESCENDANTS);
+
+        assertTrue(folder.exists("/site/website/index.xml"));
+        assertFalse(folder.exists("/site/website/about/team/index.xml"));
+        assertEquals(new TreeSet<>(DESCENDANTS), folder.getDescendants());
+    }
+
+    @Test
+    public void testIndexFindsClosestAncestor() {
+        PreloadedFolder site = new PreloadedFolder("/site", 3, DESCENDANTS);
+        PreloadedFolder otherSite = new PreloadedFolder("/site", 1, DESCENDANTS);
+        PreloadedFolder about = new PreloadedFolder("/site/website/about", 1, DESCENDANTS);
+        PreloadedFolder scripts = new PreloadedFolder("/scripts", 2, DESCENDANTS);
+        PreloadedFolderIndex index = new PreloadedFolderIndex(Arrays.asList(site, otherSite, about, scripts));
+
+        assertSame(site, index.findAncestor("/site/website/index.xml"));
+        assertSame(about, index.findAncestor("/site/website/about/index.xml"));
+        assertSame(site, index.findAncestor("/site/website/about"));
+        assertSame(scripts, index.findAncestor("/scripts/rest/test.get.groovy"));
+        assertNull(index.findAncestor("/site"));
+        assertNull(index.findAncestor("/scripts-old/test.groovy"));
+        assertNull(index.findAncestor("/templates/web/page.ftl"));
+    }
+
+}
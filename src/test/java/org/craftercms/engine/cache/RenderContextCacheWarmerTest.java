@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link RenderContextCacheWarmer}.
+ *
+ * @author joseross
+ */
+public class RenderContextCacheWarmerTest {
+
+    private RenderContextCacheWarmer cacheWarmer;
+
+    @Before
+    public void setUp() {
+        cacheWarmer = new RenderContextCacheWarmer();
+        cacheWarmer.setPagesPath("/site/website");
+    }
+
+    @Test
+    public void testPageUrls() {
+        assertEquals("/", cacheWarmer.getPageUrl("/site/website/index.xml"));
+        assertEquals("/about", cacheWarmer.getPageUrl("/site/website/about/index.xml"));
+        assertEquals("/articles/2020/hello", cacheWarmer.getPageUrl("/site/website/articles/2020/hello.xml"));
+        assertNull(cacheWarmer.getPageUrl("/site/components/header.xml"));
+        assertNull(cacheWarmer.getPageUrl("/site/websites/index.xml"));
+        assertNull(cacheWarmer.getPageUrl("/site/website/logo.png"));
+    }
+
+    @Test
+    public void testWarmUpIsResolvedByToken() {
+        SiteContext siteContext = mock(SiteContext.class);
+        Context context = mock(Context.class);
+
+        String token = cacheWarmer.startWarmUp(siteContext, context);
+        String otherToken = cacheWarmer.startWarmUp(siteContext, context);
+
+        assertNotEquals(token, otherToken);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        assertNull(cacheWarmer.getWarmUp(request));
+
+        request.addHeader(RenderContextCacheWarmer.WARM_UP_TOKEN_HEADER_NAME, "invalid");
+        assertNull(cacheWarmer.getWarmUp(request));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(RenderContextCacheWarmer.WARM_UP_TOKEN_HEADER_NAME, token);
+
+        RenderContextCacheWarmer.WarmUp warmUp = cacheWarmer.getWarmUp(request);
+        assertSame(siteContext, warmUp.getSiteContext());
+        assertSame(context, warmUp.getContext());
+
+        cacheWarmer.finishWarmUp(token);
+
+        assertNull(cacheWarmer.getWarmUp(request));
+    }
+
+}
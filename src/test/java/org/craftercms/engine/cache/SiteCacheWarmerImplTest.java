@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyCollectionOf;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SiteCacheWarmerImpl}.
+ *
+ * @author joseross
+ */
+public class SiteCacheWarmerImplTest {
+
+    private Context context;
+    private SiteContext siteContext;
+    private CacheService cacheService;
+    private ContextCacheWarmer contextCacheWarmer;
+    private SiteCacheWarmerImpl siteCacheWarmer;
+
+    @Before
+    public void setUp() throws Exception {
+        context = mock(Context.class);
+
+        siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn("test");
+        when(siteContext.getContext()).thenReturn(context);
+
+        List<Object> keys = Arrays.asList("findItem:/site/website/index.xml:true",
+                                          "findItems:/site/website",
+                                          "getTree:/site:3",
+                                          "findItem:/site/website/about/index.xml:true",
+                                          "findContent:/static-assets/css/main.css",
+                                          PreloadedFoldersAwareContext.PRELOADED_FOLDERS_CACHE_KEY);
+
+        cacheService = mock(CacheService.class);
+        doReturn(keys).when(cacheService).getKeys(context);
+        when(cacheService.remove(any(Context.class), any())).thenReturn(true);
+
+        contextCacheWarmer = mock(ContextCacheWarmer.class);
+        when(contextCacheWarmer.warmUpPaths(any(Context.class), anyCollectionOf(String.class))).thenReturn(true);
+
+        siteCacheWarmer = new SiteCacheWarmerImpl();
+        siteCacheWarmer.setCacheService(cacheService);
+        siteCacheWarmer.setContextCacheWarmers(Collections.singletonList(contextCacheWarmer));
+        siteCacheWarmer.setMaxIncrementalPaths(2);
+        siteCacheWarmer.setIncrementalExcludedPaths(new String[] { "^/config/.*", "^/site/components/.*" });
+    }
+
+    @Test
+    public void testChangedPathsAndParentsAreEvicted() {
+        Collection<String> changedPaths = Collections.singletonList("/site/website/index.xml");
+
+        assertTrue(siteCacheWarmer.warmUpCache(siteContext, changedPaths));
+
+        verify(cacheService).remove(context, "findItem:/site/website/index.xml:true");
+        verify(cacheService).remove(context, "findItems:/site/website");
+        verify(cacheService).remove(context, "getTree:/site:3");
+        verify(cacheService, never()).remove(context, "findItem:/site/website/about/index.xml:true");
+        verify(cacheService, never()).remove(context, "findContent:/static-assets/css/main.css");
+        verify(cacheService, never()).remove(context, PreloadedFoldersAwareContext.PRELOADED_FOLDERS_CACHE_KEY);
+        verify(contextCacheWarmer).warmUpPaths(context, changedPaths);
+    }
+
+    @Test
+    public void testTooManyOrExcludedPathsRequireSwitch() {
+        assertFalse(siteCacheWarmer.warmUpCache(siteContext, Arrays.asList("/site/a.xml", "/site/b.xml",
+                                                                           "/site/c.xml")));
+        assertFalse(siteCacheWarmer.warmUpCache(siteContext,
+                                                Collections.singletonList("/config/engine/site-config.xml")));
+        assertFalse(siteCacheWarmer.warmUpCache(siteContext,
+                                                Collections.singletonList("/site/components/header.xml")));
+
+        verify(cacheService, never()).remove(any(Context.class), any());
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SiteSnapshotStore}.
+ *
+ * @author joseross
+ */
+public class SiteSnapshotStoreTest {
+
+    private static final String SNAPSHOT_NAME = "test";
+    private static final String[] SNAPSHOT_VALUE = { "/api/1/a.json", "/api/1/{id}/b.json" };
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path gitFolder;
+    private SiteContext siteContext;
+    private SiteSnapshotStore snapshotStore;
+
+    @Before
+    public void setUp() throws Exception {
+        File rootFolder = tempFolder.newFolder("site");
+        gitFolder = rootFolder.toPath().resolve(".git");
+
+        Files.createDirectories(gitFolder.resolve("refs/heads"));
+        write(gitFolder.resolve("HEAD"), "ref: refs/heads/master");
+        write(gitFolder.resolve("refs/heads/master"), "1111111111111111111111111111111111111111");
+
+        siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn("site");
+        when(siteContext.getRootFolderPath()).thenReturn("file:" + rootFolder.getAbsolutePath());
+
+        snapshotStore = new SiteSnapshotStore();
+        snapshotStore.setSnapshotFolder(tempFolder.newFolder("snapshots").getAbsolutePath());
+    }
+
+    @Test
+    public void testSnapshotIsReusedForSameVersion() throws Exception {
+        snapshotStore.save(siteContext, SNAPSHOT_NAME, SNAPSHOT_VALUE);
+
+        assertArrayEquals(SNAPSHOT_VALUE, snapshotStore.load(siteContext, SNAPSHOT_NAME, String[].class));
+    }
+
+    @Test
+    public void testSnapshotIsIgnoredForNewVersion() throws Exception {
+        snapshotStore.save(siteContext, SNAPSHOT_NAME, SNAPSHOT_VALUE);
+
+        write(gitFolder.resolve("refs/heads/master"), "2222222222222222222222222222222222222222");
+
+        assertNull(snapshotStore.load(siteContext, SNAPSHOT_NAME, String[].class));
+    }
+
+    @Test
+    public void testVersionIsResolvedFromPackedRefs() throws Exception {
+        Files.delete(gitFolder.resolve("refs/heads/master"));
+        write(gitFolder.resolve("packed-refs"), "# pack-refs with: peeled fully-peeled sorted\n" +
+                                                "3333333333333333333333333333333333333333 refs/heads/master");
+
+        snapshotStore.save(siteContext, SNAPSHOT_NAME, SNAPSHOT_VALUE);
+
+        assertArrayEquals(SNAPSHOT_VALUE, snapshotStore.load(siteContext, SNAPSHOT_NAME, String[].class));
+    }
+
+    @Test
+    public void testSnapshotIsIgnoredWithoutGitRepository() throws Exception {
+        snapshotStore.save(siteContext, SNAPSHOT_NAME, SNAPSHOT_VALUE);
+
+        when(siteContext.getRootFolderPath()).thenReturn("file:" + tempFolder.newFolder("other").getAbsolutePath());
+
+        assertNull(snapshotStore.load(siteContext, SNAPSHOT_NAME, String[].class));
+    }
+
+    private void write(Path file, String content) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link TopKSketch}.
+ *
+ * @author joseross
+ */
+public class TopKSketchTest {
+
+    @Test
+    public void testFrequentElementsAreKept() {
+        TopKSketch sketch = new TopKSketch(10);
+
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("/site/website/index.xml");
+            if (i % 2 == 0) {
+                sketch.add("/templates/web/page.ftl");
+            }
+            // A long tail of paths requested only once
+            sketch.add("/site/website/article-" + i + ".xml");
+        }
+
+        Map<String, Long> top = sketch.getTop(2);
+
+        assertEquals(10, sketch.size());
+        assertEquals(Arrays.asList("/site/website/index.xml", "/templates/web/page.ftl"),
+                     new ArrayList<>(top.keySet()));
+        assertTrue(top.get("/site/website/index.xml") >= 1000);
+        assertTrue(top.get("/templates/web/page.ftl") >= 500);
+    }
+
+    @Test
+    public void testCountsAreAdded() {
+        TopKSketch sketch = new TopKSketch(2);
+        sketch.add("/a", 5);
+        sketch.add("/b", 3);
+        sketch.add("/a");
+        sketch.add("/c");
+
+        Map<String, Long> top = sketch.getTop(2);
+
+        assertEquals(Long.valueOf(6), top.get("/a"));
+        // /c replaced /b and inherited its count
+        assertEquals(Long.valueOf(4), top.get("/c"));
+    }
+
+}
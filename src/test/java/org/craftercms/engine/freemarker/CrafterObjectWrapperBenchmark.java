@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import freemarker.template.TemplateModelException;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.craftercms.commons.converters.Converter;
+import org.craftercms.commons.converters.impl.StringToIntegerConverter;
+import org.craftercms.commons.converters.impl.StringToStringConverter;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.ContentModelUtils;
+import org.craftercms.engine.util.converters.ElementSuffixBasedConverter;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the field conversion of {@link CrafterObjectWrapper} for a template loop that reads the same fields on
+ * every iteration, with the content cache of the site on (conversions are remembered for the request) and off. Run
+ * it with the {@code main} method, it's not part of the unit tests.
+ *
+ * @author joseross
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrafterObjectWrapperBenchmark {
+
+    private static final int LOOP_SIZE = 50;
+
+    @Param({ "true", "false" })
+    public boolean cacheOn;
+
+    private MockHttpServletRequest request;
+    private List<Element> fields;
+    private CrafterObjectWrapper objectWrapper;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        Map<String, Converter<String, ?>> suffixMappedConverters = new HashMap<>();
+        suffixMappedConverters.put("i", new StringToIntegerConverter());
+        suffixMappedConverters.put("s", new StringToStringConverter());
+
+        ElementSuffixBasedConverter converter = new ElementSuffixBasedConverter();
+        converter.setSuffixMappedConverters(suffixMappedConverters);
+
+        ApplicationContext globalApplicationContext = mock(ApplicationContext.class);
+        when(globalApplicationContext.getBean(ContentModelUtils.FIELD_CONVERTER_BEAN_NAME, Converter.class))
+            .thenReturn(converter);
+
+        Context context = mock(Context.class);
+        when(context.isCacheOn()).thenReturn(cacheOn);
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setGlobalApplicationContext(globalApplicationContext);
+        siteContext.setConfig(mock(HierarchicalConfiguration.class));
+        siteContext.setContext(context);
+
+        request = new MockHttpServletRequest();
+
+        SiteContext.setCurrent(siteContext);
+        RequestContext.setCurrent(new RequestContext(request, null, null));
+
+        Element page = DocumentHelper.parseText("<page><title_s>Home</title_s><order_i>1</order_i></page>")
+                                     .getRootElement();
+        fields = Arrays.asList(page.element("title_s"), page.element("order_i"));
+        objectWrapper = new CrafterObjectWrapper(false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContext.clear();
+        SiteContext.clear();
+    }
+
+    @Benchmark
+    public void wrapFieldsInLoop(Blackhole blackhole) throws TemplateModelException {
+        // Every invocation is a new request
+        request.removeAttribute(CrafterObjectWrapper.CONVERTED_FIELDS_ATTRIBUTE);
+
+        for (int i = 0; i < LOOP_SIZE; i++) {
+            for (Element field : fields) {
+                blackhole.consume(objectWrapper.wrap(field));
+            }
+        }
+    }
+
+    public static void main(String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CrafterObjectWrapperBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import freemarker.template.TemplateScalarModel;
+import org.apache.commons.configuration2.HierarchicalConfiguration;
+import org.craftercms.commons.converters.Converter;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.core.service.Context;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.util.ContentModelUtils;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the field conversion of {@link CrafterObjectWrapper}.
+ *
+ * @author joseross
+ */
+public class CrafterObjectWrapperTest {
+
+    private static final int LOOP_SIZE = 100;
+
+    private AtomicInteger conversions;
+    private ApplicationContext globalApplicationContext;
+    private Context context;
+    private CrafterObjectWrapper objectWrapper;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        conversions = new AtomicInteger();
+
+        Converter<Element, Object> converter = mock(Converter.class);
+        when(converter.convert(any(Element.class))).then(invocation -> {
+            conversions.incrementAndGet();
+            return ((Element) invocation.getArguments()[0]).getText();
+        });
+
+        globalApplicationContext = mock(ApplicationContext.class);
+        when(globalApplicationContext.getBean(ContentModelUtils.FIELD_CONVERTER_BEAN_NAME, Converter.class))
+            .thenReturn(converter);
+
+        context = mock(Context.class);
+        when(context.isCacheOn()).thenReturn(true);
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setGlobalApplicationContext(globalApplicationContext);
+        siteContext.setConfig(mock(HierarchicalConfiguration.class));
+        siteContext.setContext(context);
+
+        SiteContext.setCurrent(siteContext);
+        RequestContext.setCurrent(new RequestContext(new MockHttpServletRequest(), null, null));
+
+        objectWrapper = new CrafterObjectWrapper(false);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RequestContext.clear();
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testRepeatedWrapsAreConvertedOnce() throws Exception {
+        Element field = DocumentHelper.parseText("<title_s>Home</title_s>").getRootElement();
+
+        // Simulates a template loop that reads the same field on every iteration
+        for (int i = 0; i < LOOP_SIZE; i++) {
+            assertEquals("Home", ((TemplateScalarModel) objectWrapper.wrap(field)).getAsString());
+        }
+
+        assertEquals(1, conversions.get());
+        verify(globalApplicationContext, times(1)).getBean(ContentModelUtils.FIELD_CONVERTER_BEAN_NAME,
+                                                           Converter.class);
+    }
+
+    @Test
+    public void testChangedFieldsAreConvertedAgainWithoutCache() throws Exception {
+        when(context.isCacheOn()).thenReturn(false);
+
+        Element field = DocumentHelper.parseText("<title_s>Home</title_s>").getRootElement();
+
+        assertEquals("Home", ((TemplateScalarModel) objectWrapper.wrap(field)).getAsString());
+
+        // A script changes the content of the request
+        field.setText("About");
+
+        assertEquals("About", ((TemplateScalarModel) objectWrapper.wrap(field)).getAsString());
+        assertEquals(2, conversions.get());
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ParallelComponentWriter}.
+ *
+ * @author joseross
+ */
+public class ParallelComponentWriterTest {
+
+    private ExecutorService executor;
+    private StringWriter out;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(4);
+        out = new StringWriter();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOutputIsInDocumentOrder() throws Exception {
+        CountDownLatch firstComponentLatch = new CountDownLatch(1);
+        ParallelComponentWriter writer = new ParallelComponentWriter(out, executor, 4);
+
+        writer.write("<header/>");
+        writer.submit(output -> {
+            try {
+                // The first component finishes after the second one
+                firstComponentLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            output.write("<first/>");
+        });
+        writer.write("<middle/>");
+        writer.submit(output -> {
+            output.write("<second/>");
+            firstComponentLatch.countDown();
+        });
+        writer.write("<footer/>");
+
+        writer.finish(null);
+
+        assertEquals("<header/><first/><middle/><second/><footer/>", out.toString());
+    }
+
+    @Test
+    public void testFlushDoesNotWaitForPendingComponents() throws Exception {
+        CountDownLatch componentLatch = new CountDownLatch(1);
+        ParallelComponentWriter writer = new ParallelComponentWriter(out, executor, 4);
+
+        writer.write("<header/>");
+        writer.submit(output -> {
+            try {
+                componentLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            output.write("<component/>");
+        });
+        writer.write("<footer/>");
+        writer.flush();
+
+        assertEquals("<header/>", out.toString());
+
+        componentLatch.countDown();
+        writer.finish(null);
+
+        assertEquals("<header/><component/><footer/>", out.toString());
+    }
+
+    @Test
+    public void testRejectedComponentsAreRenderedInline() throws Exception {
+        ParallelComponentWriter writer = new ParallelComponentWriter(out, command -> {
+            throw new RejectedExecutionException();
+        }, 4);
+
+        writer.write("<header/>");
+        writer.submit(output -> output.write("<component/>"));
+        writer.write("<footer/>");
+
+        writer.finish(null);
+
+        assertEquals("<header/><component/><footer/>", out.toString());
+    }
+
+    @Test
+    public void testCancelWaitsForRunningComponents() throws Exception {
+        CountDownLatch componentStarted = new CountDownLatch(1);
+        AtomicBoolean componentFinished = new AtomicBoolean();
+        ParallelComponentWriter writer = new ParallelComponentWriter(out, executor, 4);
+
+        writer.submit(output -> {
+            componentStarted.countDown();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            componentFinished.set(true);
+        });
+
+        assertTrue(componentStarted.await(5, TimeUnit.SECONDS));
+
+        writer.cancel();
+
+        // The component can't be using the response after the page is cancelled
+        assertTrue(componentFinished.get());
+    }
+
+    @Test
+    public void testPendingComponentsAreSkippedAfterCancel() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        AtomicBoolean componentRendered = new AtomicBoolean();
+        ParallelComponentWriter writer = new ParallelComponentWriter(out, tasks::add, 4);
+
+        writer.submit(output -> componentRendered.set(true));
+        writer.cancel();
+
+        tasks.forEach(Runnable::run);
+
+        assertFalse(componentRendered.get());
+    }
+
+}
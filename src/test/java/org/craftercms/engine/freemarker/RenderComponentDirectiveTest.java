@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.SimpleHash;
+import org.craftercms.commons.http.RequestContext;
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.model.SiteItem;
+import org.craftercms.engine.scripting.SiteItemScriptResolver;
+import org.craftercms.engine.service.SiteItemService;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the fragment cache of {@link RenderComponentDirective}.
+ *
+ * @author joseross
+ */
+public class RenderComponentDirectiveTest {
+
+    private static final String TEMPLATE_XPATH_QUERY = "display-template";
+    private static final String FRAGMENT_CACHE_XPATH_QUERY = "cacheFragment";
+    private static final String COMPONENT_PATH = "/site/components/greeting.xml";
+    private static final String PARENT_PATH = "/site/components/parent.xml";
+
+    private Map<List<Object>, Object> cache;
+    private Configuration configuration;
+    private RenderComponentDirective directive;
+
+    @Before
+    public void setUp() throws Exception {
+        StringTemplateLoader templateLoader = new StringTemplateLoader();
+        templateLoader.putTemplate("templates/web/greeting.ftl", "Hello ${name!'world'}");
+        templateLoader.putTemplate("templates/web/parent.ftl",
+                                   "<@renderComponent componentPath='" + COMPONENT_PATH + "'/>!");
+
+        configuration = new Configuration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS);
+        configuration.setTemplateLoader(templateLoader);
+
+        SiteItemService siteItemService = mock(SiteItemService.class);
+        SiteItem component = component(COMPONENT_PATH, "/templates/web/greeting.ftl");
+        SiteItem parent = component(PARENT_PATH, "/templates/web/parent.ftl");
+        when(siteItemService.getSiteItem(COMPONENT_PATH)).thenReturn(component);
+        when(siteItemService.getSiteItem(PARENT_PATH)).thenReturn(parent);
+
+        directive = new RenderComponentDirective();
+        directive.setSiteItemService(siteItemService);
+        directive.setModelFactory(() -> {
+            SimpleHash model = new SimpleHash(configuration.getObjectWrapper());
+            model.put("renderComponent", directive);
+
+            return model;
+        });
+        directive.setTemplateXPathQuery(TEMPLATE_XPATH_QUERY);
+        directive.setTemplateNamePrefix("");
+        directive.setTemplateNameSuffix("");
+        directive.setScriptResolver(mock(SiteItemScriptResolver.class));
+        directive.setFragmentCacheXPathQuery(FRAGMENT_CACHE_XPATH_QUERY);
+
+        cache = new HashMap<>();
+
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(mock(Context.class));
+        siteContext.setCacheTemplate(createCacheTemplate());
+
+        SiteContext.setCurrent(siteContext);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+        RequestContext.clear();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testFragmentIsCached() throws Exception {
+        assertEquals("Hello world", render(COMPONENT_PATH, null));
+        assertEquals("Hello world", render(COMPONENT_PATH, null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testFragmentIsCachedPerQueryString() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContext.setCurrent(new RequestContext(request, null, null));
+
+        request.setQueryString("page=1");
+        render(COMPONENT_PATH, null);
+        request.setQueryString("page=2");
+        render(COMPONENT_PATH, null);
+
+        // The scripts of the component can use the request params, so each query string gets its own fragment
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testFragmentWithAdditionalModelIsNotCached() throws Exception {
+        assertEquals("Hello John", render(COMPONENT_PATH, "John"));
+        assertEquals("Hello Jane", render(COMPONENT_PATH, "Jane"));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testFragmentOfAuthenticatedUserIsNotCached() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+            new UsernamePasswordAuthenticationToken("john", null, Collections.emptyList()));
+
+        assertEquals("Hello world", render(COMPONENT_PATH, null));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testFragmentWithNestedComponentsIsNotCached() throws Exception {
+        assertEquals("Hello world!", render(PARENT_PATH, null));
+
+        // Only the nested component is cached, so a change in it is never hidden by the parent
+        assertEquals(1, cache.size());
+        assertTrue(cache.keySet().iterator().next().toString().contains(COMPONENT_PATH));
+    }
+
+    private String render(String componentPath, String name) throws Exception {
+        Map<String, Object> model = new HashMap<>();
+        model.put("renderComponent", directive);
+        model.put("componentPath", componentPath);
+        model.put("name", name);
+
+        String source = name != null?
+            "<@renderComponent componentPath=componentPath additionalModel={'name': name}/>" :
+            "<@renderComponent componentPath=componentPath/>";
+
+        StringWriter out = new StringWriter();
+        new freemarker.template.Template("page", source, configuration).process(model, out);
+
+        return out.toString();
+    }
+
+    private SiteItem component(String storeUrl, String templateName) {
+        SiteItem component = mock(SiteItem.class);
+        when(component.getStoreUrl()).thenReturn(storeUrl);
+        when(component.queryValue(TEMPLATE_XPATH_QUERY)).thenReturn(templateName);
+        when(component.queryValue(FRAGMENT_CACHE_XPATH_QUERY)).thenReturn("true");
+
+        return component;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheTemplate createCacheTemplate() {
+        CacheTemplate cacheTemplate = mock(CacheTemplate.class);
+        when(cacheTemplate.getObject(any(Context.class), any(Callback.class), anyVararg())).then(invocation -> {
+            Object[] args = invocation.getArguments();
+            List<Object> key = Arrays.asList(args[0], Arrays.asList(Arrays.copyOfRange(args, 2, args.length)));
+
+            Object item = cache.get(key);
+            if (item == null) {
+                item = ((Callback<?>) args[1]).execute();
+                cache.put(key, item);
+            }
+
+            return item;
+        });
+
+        return cacheTemplate;
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.freemarker;
+
+import freemarker.cache.StringTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.apache.commons.configuration2.BaseHierarchicalConfiguration;
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.core.service.Tree;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.service.context.SiteContext;
+import org.craftercms.engine.targeting.impl.ConfigAwareCookieLocaleResolver;
+import org.craftercms.engine.util.freemarker.CrafterCacheAwareConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.view.freemarker.FreeMarkerConfig;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link TemplatePreParser}.
+ *
+ * @author joseross
+ */
+public class TemplatePreParserTest {
+
+    private static final String TEMPLATES_PATH = "/templates";
+
+    private Map<List<Object>, Object> cache;
+    private Configuration configuration;
+    private SiteContext siteContext;
+    private TemplatePreParser preParser;
+
+    @Before
+    public void setUp() throws Exception {
+        StringTemplateLoader templateLoader = new StringTemplateLoader();
+        templateLoader.putTemplate("templates/web/page.ftl", "<h1>${title!''}</h1>");
+        templateLoader.putTemplate("templates/web/broken.ftl", "<#if>");
+
+        cache = new HashMap<>();
+        configuration = new CrafterCacheAwareConfiguration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS, true);
+        configuration.setTemplateLoader(templateLoader);
+
+        FreeMarkerConfig freeMarkerConfig = mock(FreeMarkerConfig.class);
+        when(freeMarkerConfig.getConfiguration()).thenReturn(configuration);
+
+        Tree web = mock(Tree.class);
+        when(web.getChildren()).thenReturn(Arrays.asList(
+            item("page.ftl", "/templates/web/page.ftl"),
+            item("broken.ftl", "/templates/web/broken.ftl"),
+            item("README.txt", "/templates/web/README.txt")));
+
+        Tree root = mock(Tree.class);
+        when(root.getChildren()).thenReturn(Collections.singletonList(web));
+
+        Context context = mock(Context.class);
+        ContentStoreService storeService = mock(ContentStoreService.class);
+        when(storeService.findTree(context, TEMPLATES_PATH)).thenReturn(root);
+
+        siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(context);
+        siteContext.setStoreService(storeService);
+        siteContext.setTemplatesPath(TEMPLATES_PATH);
+        siteContext.setFreeMarkerConfig(freeMarkerConfig);
+        siteContext.setCacheTemplate(createCacheTemplate());
+
+        preParser = new TemplatePreParser();
+        preParser.setExecutor(Runnable::run);
+
+        SiteContext.setCurrent(siteContext);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testPreParse() throws Exception {
+        TemplatePreParseResult result = preParser.preParse(siteContext);
+
+        assertEquals(2, result.getTemplateCount());
+        assertTrue(result.getTemplateTimes().containsKey("/templates/web/page.ftl"));
+        assertEquals(Collections.singleton("/templates/web/broken.ftl"), result.getFailedTemplates().keySet());
+    }
+
+    @Test
+    public void testViewLookupHitsPreParsedTemplate() throws Exception {
+        BaseHierarchicalConfiguration config = new BaseHierarchicalConfiguration();
+        config.addProperty(ConfigAwareCookieLocaleResolver.DEFAULT_LOCALE_CONFIG_KEY, "es");
+        siteContext.setConfig(config);
+
+        preParser.preParse(siteContext);
+
+        // Only the valid template, for the default locale of the site
+        assertEquals(1, cache.size());
+
+        // Get the template like the view of a page does, with the locale resolved for the request
+        SiteContext.setCurrent(siteContext);
+        Locale locale = new ConfigAwareCookieLocaleResolver().resolveLocale(new MockHttpServletRequest());
+        Template template = configuration.getTemplate("/templates/web/page.ftl", locale);
+
+        assertEquals(new Locale("es"), locale);
+        assertEquals(1, cache.size());
+        assertSame(template, configuration.getTemplate("/templates/web/page.ftl", locale));
+    }
+
+    private Item item(String name, String url) {
+        Item item = mock(Item.class);
+        when(item.getName()).thenReturn(name);
+        when(item.getUrl()).thenReturn(url);
+
+        return item;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheTemplate createCacheTemplate() {
+        CacheTemplate cacheTemplate = mock(CacheTemplate.class);
+        when(cacheTemplate.getObject(any(Context.class), any(Callback.class), anyVararg())).then(invocation -> {
+            Object[] args = invocation.getArguments();
+            List<Object> key = Arrays.asList(args[0], Arrays.asList(Arrays.copyOfRange(args, 2, args.length)));
+
+            Object item = cache.get(key);
+            if (item == null) {
+                item = ((Callback<?>) args[1]).execute();
+                cache.put(key, item);
+            }
+
+            return item;
+        });
+
+        return cacheTemplate;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.model;
+
+import org.craftercms.commons.converters.Converter;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link FieldSnapshot}.
+ *
+ * @author joseross
+ */
+public class FieldSnapshotTest {
+
+    private static final String XML =
+        "<page>" +
+        "<title_s>Home</title_s>" +
+        "<count_i>5</count_i>" +
+        "<date_dt>1000</date_dt>" +
+        "<header_o><item>a</item></header_o>" +
+        "<tag>x</tag>" +
+        "<tag>y</tag>" +
+        "</page>";
+
+    private Element root;
+    private AtomicInteger conversions;
+    private Converter<Element, Object> converter;
+
+    @Before
+    public void setUp() throws Exception {
+        root = DocumentHelper.parseText(XML).getRootElement();
+        conversions = new AtomicInteger();
+        converter = new Converter<Element, Object>() {
+
+            @Override
+            public Class<?> getSourceClass() {
+                return Element.class;
+            }
+
+            @Override
+            public Class<?> getTargetClass() {
+                return Object.class;
+            }
+
+            @Override
+            public Object convert(Element source) {
+                conversions.incrementAndGet();
+
+                if (source.getName().endsWith("_dt")) {
+                    return new Date(Long.parseLong(source.getText()));
+                } else if (source.getName().endsWith("_i")) {
+                    return Integer.parseInt(source.getText());
+                } else if (source.getName().endsWith("_s")) {
+                    return source.getText();
+                } else {
+                    return source;
+                }
+            }
+
+        };
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        FieldSnapshot snapshot = FieldSnapshot.of(root, converter);
+
+        assertTrue(snapshot.hasValue("title_s"));
+        assertEquals("Home", snapshot.getValue("title_s"));
+        assertEquals(5, snapshot.getValue("count_i"));
+        assertEquals(new Date(1000), snapshot.getValue("date_dt"));
+        assertTrue(snapshot.hasValue("missing_s"));
+        assertNull(snapshot.getValue("missing_s"));
+    }
+
+    @Test
+    public void testValuesThatReferenceTheDomAreNotKept() throws Exception {
+        FieldSnapshot snapshot = FieldSnapshot.of(root, converter);
+
+        assertFalse(snapshot.hasValue("header_o"));
+        assertNull(snapshot.getValue("header_o"));
+        assertFalse(snapshot.hasValue("tag"));
+        assertNull(snapshot.getValue("tag"));
+    }
+
+    @Test
+    public void testDatesAreCopied() throws Exception {
+        FieldSnapshot snapshot = FieldSnapshot.of(root, converter);
+
+        ((Date) snapshot.getValue("date_dt")).setTime(0);
+
+        assertEquals(new Date(1000), snapshot.getValue("date_dt"));
+    }
+
+    @Test
+    public void testTexts() throws Exception {
+        FieldSnapshot snapshot = FieldSnapshot.of(root, converter);
+
+        assertEquals("x", snapshot.getText("tag"));
+        assertEquals(Arrays.asList("x", "y"), snapshot.getTexts("tag"));
+        assertEquals(Collections.singletonList("5"), snapshot.getTexts("count_i"));
+        assertNull(snapshot.getText("missing_s"));
+        assertTrue(snapshot.getTexts("missing_s").isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsBuiltOnce() throws Exception {
+        FieldSnapshot snapshot = FieldSnapshot.of(root, converter);
+        int conversionsAfterBuild = conversions.get();
+
+        assertSame(snapshot, FieldSnapshot.of(root, converter));
+        assertEquals(conversionsAfterBuild, conversions.get());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsImmutable() throws Exception {
+        FieldSnapshot.of(root, converter).getTexts("tag").clear();
+    }
+
+}
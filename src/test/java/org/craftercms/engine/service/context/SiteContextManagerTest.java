@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import org.craftercms.engine.exception.SiteContextInitializationException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the startup order, rebuild and eviction of contexts in {@link SiteContextManager}.
+ *
+ * @author joseross
+ */
+public class SiteContextManagerTest {
+
+    private static final String SITE_NAME = "test";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private SiteContextFactory contextFactory;
+    private SiteContext oldSiteContext;
+    private SiteContext newSiteContext;
+    private SiteContextManager contextManager;
+
+    @Before
+    public void setUp() throws Exception {
+        contextFactory = mock(SiteContextFactory.class);
+        oldSiteContext = mock(SiteContext.class);
+        newSiteContext = mock(SiteContext.class);
+
+        when(contextFactory.createContext(SITE_NAME)).thenReturn(newSiteContext);
+
+        contextManager = new SiteContextManager();
+        contextManager.setContextFactory(contextFactory);
+        contextManager.setDefaultSiteName("default");
+        contextManager.contextRegistry.put(SITE_NAME, oldSiteContext);
+    }
+
+    @Test
+    public void testContextIsSwappedWhenReady() throws Exception {
+        when(newSiteContext.getState()).thenReturn(SiteContext.State.READY);
+
+        contextManager.rebuildContext(SITE_NAME, false);
+
+        assertSame(newSiteContext, contextManager.contextRegistry.get(SITE_NAME));
+
+        verify(newSiteContext).init(true);
+        verify(oldSiteContext).destroy();
+    }
+
+    @Test
+    public void testOldContextIsKeptWhenInitFails() throws Exception {
+        doThrow(new SiteContextInitializationException("Init failed", null)).when(newSiteContext).init(true);
+        when(newSiteContext.getState()).thenReturn(SiteContext.State.DESTROYED);
+
+        contextManager.rebuildContext(SITE_NAME, false);
+
+        assertSame(oldSiteContext, contextManager.contextRegistry.get(SITE_NAME));
+
+        verify(oldSiteContext, never()).destroy();
+    }
+
+    @Test
+    public void testDeletedSiteIsNotRestoredByRebuild() throws Exception {
+        when(newSiteContext.getState()).thenReturn(SiteContext.State.READY);
+        doAnswer(invocation -> {
+            contextManager.destroyContext(SITE_NAME);
+            return null;
+        }).when(newSiteContext).init(true);
+
+        contextManager.rebuildContext(SITE_NAME, false);
+
+        assertNull(contextManager.contextRegistry.get(SITE_NAME));
+
+        verify(oldSiteContext).destroy();
+        verify(newSiteContext).destroy();
+    }
+
+    @Test
+    public void testEvictedSiteIsNotRestoredByRebuild() throws Exception {
+        when(newSiteContext.getState()).thenReturn(SiteContext.State.READY);
+        when(oldSiteContext.getSiteName()).thenReturn(SITE_NAME);
+        doAnswer(invocation -> {
+            contextManager.evictContext(oldSiteContext, Long.MAX_VALUE);
+            return null;
+        }).when(newSiteContext).init(true);
+
+        contextManager.rebuildContext(SITE_NAME, false);
+
+        assertNull(contextManager.contextRegistry.get(SITE_NAME));
+        assertTrue(contextManager.evictedSiteNames.contains(SITE_NAME));
+
+        verify(newSiteContext).destroy();
+    }
+
+    @Test
+    public void testIdleContextsAreEvicted() throws Exception {
+        long idleAccessTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
+        SiteContext idleSiteContext = createReadyContext("idle", idleAccessTime);
+        SiteContext pinnedSiteContext = createReadyContext("pinned", idleAccessTime);
+        SiteContext activeSiteContext = createReadyContext("active", System.currentTimeMillis());
+
+        when(pinnedSiteContext.isPinned()).thenReturn(true);
+
+        contextManager.contextRegistry.clear();
+        contextManager.contextRegistry.put("idle", idleSiteContext);
+        contextManager.contextRegistry.put("pinned", pinnedSiteContext);
+        contextManager.contextRegistry.put("active", activeSiteContext);
+        contextManager.setContextMaxIdleTime(60);
+
+        contextManager.evictContexts();
+
+        assertFalse(contextManager.contextRegistry.containsKey("idle"));
+        assertTrue(contextManager.contextRegistry.containsKey("pinned"));
+        assertTrue(contextManager.contextRegistry.containsKey("active"));
+
+        verify(idleSiteContext).destroy();
+        verify(pinnedSiteContext, never()).destroy();
+        verify(activeSiteContext, never()).destroy();
+    }
+
+    @Test
+    public void testContextAccessedSinceSelectionIsNotEvicted() throws Exception {
+        long minAccessTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        SiteContext siteContext = createReadyContext(SITE_NAME, System.currentTimeMillis());
+
+        contextManager.contextRegistry.put(SITE_NAME, siteContext);
+
+        assertFalse(contextManager.evictContext(siteContext, minAccessTime));
+        assertSame(siteContext, contextManager.contextRegistry.get(SITE_NAME));
+
+        verify(siteContext, never()).destroy();
+    }
+
+    @Test
+    public void testGetContextDoesNotTouchContext() throws Exception {
+        when(oldSiteContext.isValid()).thenReturn(true);
+
+        // Lookups like the ones of the sync are not accesses, only the requests are
+        assertSame(oldSiteContext, contextManager.getContext(SITE_NAME, false));
+
+        verify(oldSiteContext, never()).touch();
+    }
+
+    @Test
+    public void testStartupOrder() throws Exception {
+        Properties requestCounts = new Properties();
+        requestCounts.setProperty("a", "5");
+        requestCounts.setProperty("b", "1");
+        requestCounts.setProperty("c", "10");
+
+        File requestCountsFile = tempFolder.newFile();
+        try (OutputStream out = new FileOutputStream(requestCountsFile)) {
+            requestCounts.store(out, null);
+        }
+
+        contextManager.setStartupPrioritySites(new String[] { "d", "b" });
+        contextManager.setRequestCountsFile(requestCountsFile.getAbsolutePath());
+
+        // Priority sites first, in their order, then the rest by their number of requests
+        assertEquals(Arrays.asList("d", "b", "c", "a", "e"),
+                     contextManager.getSitesInStartupOrder(Arrays.asList("a", "b", "c", "d", "e")));
+    }
+
+    @Test
+    public void testSavedRequestCountsKeepPreviousCounts() throws Exception {
+        Properties requestCounts = new Properties();
+        requestCounts.setProperty("a", "10");
+
+        File requestCountsFile = tempFolder.newFile();
+        try (OutputStream out = new FileOutputStream(requestCountsFile)) {
+            requestCounts.store(out, null);
+        }
+
+        contextManager.setRequestCountsFile(requestCountsFile.getAbsolutePath());
+
+        // The contexts weren't created on startup, so the previous counts haven't been loaded yet
+        contextManager.countRequest("a");
+        contextManager.countRequest("b");
+        contextManager.countRequest("b");
+        contextManager.saveRequestCounts();
+
+        Properties savedCounts = new Properties();
+        try (InputStream in = new FileInputStream(requestCountsFile)) {
+            savedCounts.load(in);
+        }
+
+        assertEquals("6", savedCounts.getProperty("a"));
+        assertEquals("2", savedCounts.getProperty("b"));
+    }
+
+    @Test
+    public void testSlowSiteIsPendingUntilInitialized() throws Exception {
+        AtomicReference<SiteContext.State> state = new AtomicReference<>(SiteContext.State.INITIALIZING);
+        AtomicInteger waits = new AtomicInteger();
+        AtomicBoolean permitReleased = new AtomicBoolean();
+        SiteContextsStartupProgress progress = new SiteContextsStartupProgress(1);
+
+        when(oldSiteContext.isValid()).thenReturn(true);
+        when(oldSiteContext.getState()).then(invocation -> state.get());
+        when(oldSiteContext.awaitInitialization()).then(invocation -> {
+            // The first wait reaches the init timeout, the site finishes during the second one
+            if (waits.incrementAndGet() > 1) {
+                assertTrue(permitReleased.get());
+                assertEquals(1, progress.getPending());
+
+                state.set(SiteContext.State.READY);
+            }
+
+            return state.get() == SiteContext.State.READY;
+        });
+
+        contextManager.createStartupContext(SITE_NAME, progress, () -> permitReleased.set(true));
+
+        assertEquals(1, progress.getReady());
+        assertEquals(0, progress.getFailed());
+    }
+
+    @Test
+    public void testUnthrottledStartupOverlapsInitializations() throws Exception {
+        SiteContext otherSiteContext = mock(SiteContext.class);
+        SiteListResolver siteListResolver = mock(SiteListResolver.class);
+
+        when(siteListResolver.getSiteList()).thenReturn(Arrays.asList(SITE_NAME, "other"));
+        when(oldSiteContext.isValid()).thenReturn(true);
+        when(otherSiteContext.isValid()).thenReturn(true);
+        when(otherSiteContext.awaitInitialization()).thenReturn(true);
+        when(oldSiteContext.awaitInitialization()).then(invocation -> {
+            // The next site was already started while this one is still initializing
+            verify(otherSiteContext).isValid();
+            return true;
+        });
+
+        contextManager.contextRegistry.put("other", otherSiteContext);
+        contextManager.setSiteListResolver(siteListResolver);
+        contextManager.setWaitForContextInit(true);
+        contextManager.setStartupConcurrency(0);
+
+        contextManager.createContexts(false);
+
+        SiteContextsStartupProgress progress = contextManager.getStartupProgress();
+
+        assertEquals(2, progress.getReady());
+        assertEquals(0, progress.getFailed());
+    }
+
+    private SiteContext createReadyContext(String siteName, long lastAccessTime) {
+        SiteContext siteContext = mock(SiteContext.class);
+        when(siteContext.getSiteName()).thenReturn(siteName);
+        when(siteContext.getState()).thenReturn(SiteContext.State.READY);
+        when(siteContext.getLastAccessTime()).thenReturn(lastAccessTime);
+
+        return siteContext;
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.service.context;
+
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.CacheService;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.cache.StaleCacheScope;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the stale-while-revalidate mode of {@link SiteContext#getFromCache(Callback, Object...)} and the
+ * coalescing of concurrent loads, the background validation of the content store, the concurrent init phases, the
+ * lazy application context and the tracking of active requests.
+ *
+ * @author joseross
+ */
+public class SiteContextTest {
+
+    private static final String KEY = "/site/website/index.xml";
+
+    private Map<List<Object>, Object> cache;
+    private volatile Runnable beforeStore;
+    private CacheService cacheService;
+    private Context currentContext;
+    private Context staleContext;
+    private SiteContext siteContext;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ConcurrentHashMap<>();
+        cacheService = mock(CacheService.class);
+        currentContext = mock(Context.class);
+        staleContext = mock(Context.class);
+
+        siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(currentContext);
+        siteContext.setCacheTemplate(createCacheTemplate());
+        siteContext.setCacheMaxStaleness(60000);
+        siteContext.setCacheRefreshExecutor(Runnable::run);
+    }
+
+    @Test
+    public void testStaleItemIsServedAndRefreshed() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        cache.put(createKey(staleContext, KEY), "stale");
+        siteContext.staleCacheScope = new StaleCacheScope(staleContext, 60000);
+
+        // The refresh is executed synchronously, so the stale item is returned only once
+        assertEquals("stale", siteContext.getFromCache(() -> "fresh" + loads.incrementAndGet(), KEY));
+        assertEquals("fresh1", siteContext.getFromCache(() -> "fresh" + loads.incrementAndGet(), KEY));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testItemNotInStaleCacheIsLoaded() throws Exception {
+        siteContext.staleCacheScope = new StaleCacheScope(staleContext, 60000);
+
+        assertEquals("fresh", siteContext.getFromCache(() -> "fresh", KEY));
+        assertEquals("fresh", cache.get(createKey(currentContext, KEY)));
+    }
+
+    @Test
+    public void testStaleItemIsNotServedForOtherContext() throws Exception {
+        Context otherContext = mock(Context.class);
+        cache.put(createKey(staleContext, KEY), "stale");
+        siteContext.staleCacheScope = new StaleCacheScope(staleContext, 60000);
+
+        // Like a store adapter lookup for a cache version that's being warmed up
+        assertEquals("fresh", siteContext.getFromCache(otherContext, null, () -> "fresh", KEY));
+        assertEquals("stale", siteContext.getFromCache(currentContext, null, () -> "fresh", KEY));
+    }
+
+    @Test
+    public void testExpiredStaleCacheIsRemoved() throws Exception {
+        cache.put(createKey(staleContext, KEY), "stale");
+        siteContext.staleCacheScope = new StaleCacheScope(staleContext, -1);
+
+        assertEquals("fresh", siteContext.getFromCache(() -> "fresh", KEY));
+        assertNull(siteContext.getStaleCacheScope());
+
+        verify(cacheService).removeScope(staleContext);
+    }
+
+    @Test
+    public void testLoadIsCoalescedUntilItemIsCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<Future<String>> otherRequest = new AtomicReference<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Like the real cache template, the mock doesn't lock the key, so another request can miss the cache
+            // after the item is loaded but before it's stored
+            beforeStore = () -> {
+                beforeStore = null;
+                otherRequest.set(executor.submit(
+                    () -> siteContext.getFromCache(() -> "fresh" + loads.incrementAndGet(), KEY)));
+
+                // Wait till the other request is actually waiting for this one
+                long deadline = System.currentTimeMillis() + 5000;
+                while (siteContext.getCacheLoadCoalescer().getCoalescedLoadCount() == 0 &&
+                       !otherRequest.get().isDone() && System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+
+            assertEquals("fresh1", siteContext.getFromCache(() -> "fresh" + loads.incrementAndGet(), KEY));
+            assertEquals("fresh1", otherRequest.get().get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertEquals(1, siteContext.getCacheLoadCoalescer().getCoalescedLoadCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStoreIsValidatedInBackground() throws Exception {
+        ContentStoreService storeService = mock(ContentStoreService.class);
+        when(storeService.validate(currentContext)).thenReturn(false, true);
+
+        siteContext.setStoreService(storeService);
+        siteContext.setStoreValidationInterval(30000);
+        siteContext.setStoreValidationExecutor(mock(ScheduledExecutorService.class));
+
+        // Until the first validation the last known state is returned, without hitting the store
+        assertTrue(siteContext.isStoreValid());
+
+        siteContext.validateStore();
+        assertFalse(siteContext.isStoreValid());
+
+        siteContext.validateStore();
+        assertTrue(siteContext.isStoreValid());
+
+        verify(storeService, times(2)).validate(currentContext);
+    }
+
+    @Test
+    public void testInitPhasesRunAfterTheirDependencies() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<String> phases = Collections.synchronizedList(new ArrayList<>());
+            Map<String, Long> phaseTimes = Collections.synchronizedMap(new HashMap<>());
+            CountDownLatch latch = new CountDownLatch(1);
+
+            CompletableFuture<Void> first = siteContext.runInitPhase("first", () -> {
+                try {
+                    // The second phase needs to start before the first one finishes
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                phases.add("first");
+            }, executor, phaseTimes);
+            CompletableFuture<Void> second = siteContext.runInitPhase("second", () -> {
+                phases.add("second");
+                latch.countDown();
+            }, executor, phaseTimes);
+            CompletableFuture<Void> last = siteContext.runInitPhase("last", () -> phases.add("last"), executor,
+                                                                    phaseTimes, first, second);
+
+            last.join();
+
+            assertEquals(Arrays.asList("second", "first", "last"), phases);
+            assertEquals(3, phaseTimes.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testApplicationContextIsCreatedOnFirstAccess() throws Exception {
+        ConfigurableApplicationContext appContext = mock(ConfigurableApplicationContext.class);
+        AtomicInteger loads = new AtomicInteger();
+
+        siteContext.setApplicationContextLoader(() -> {
+            loads.incrementAndGet();
+            return appContext;
+        });
+
+        assertFalse(siteContext.isApplicationContextLoaded());
+        assertEquals(0, loads.get());
+
+        assertSame(appContext, siteContext.getApplicationContext());
+        assertSame(appContext, siteContext.getApplicationContext());
+        assertTrue(siteContext.isApplicationContextLoaded());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testActiveRequestsAreCounted() throws Exception {
+        siteContext.requestStarted();
+        siteContext.requestStarted();
+        siteContext.requestFinished();
+
+        assertEquals(1, siteContext.getActiveRequests());
+
+        siteContext.requestFinished();
+
+        assertEquals(0, siteContext.getActiveRequests());
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheTemplate createCacheTemplate() {
+        CacheTemplate cacheTemplate = mock(CacheTemplate.class);
+        when(cacheTemplate.getCacheService()).thenReturn(cacheService);
+        when(cacheTemplate.getObject(any(Context.class), any(Callback.class), anyVararg())).then(invocation -> {
+            Object[] args = invocation.getArguments();
+            List<Object> key = createKey((Context) args[0], Arrays.copyOfRange(args, 2, args.length));
+
+            Object item = cache.get(key);
+            if (item == null) {
+                item = ((Callback<?>) args[1]).execute();
+
+                Runnable hook = beforeStore;
+                if (hook != null) {
+                    hook.run();
+                }
+
+                cache.put(key, item);
+            }
+
+            return item;
+        });
+
+        return cacheTemplate;
+    }
+
+    private List<Object> createKey(Context context, Object... keyElements) {
+        return Arrays.asList(context, Arrays.asList(keyElements));
+    }
+
+}
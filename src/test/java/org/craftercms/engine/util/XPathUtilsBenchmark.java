@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.craftercms.core.util.XmlUtils;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the queries of {@link XPathUtils} with the ones of {@link XmlUtils}, which compile the XPath expression on
+ * every call. Run it with the {@code main} method, it's not part of the unit tests.
+ *
+ * @author joseross
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPathUtilsBenchmark {
+
+    private static final String XML =
+        "<page>" +
+        "<title_s>Home</title_s>" +
+        "<header_o><item><component><title_s>Header</title_s></component></item></header_o>" +
+        "<tags_o><item><value_smv>a</value_smv></item><item><value_smv>b</value_smv></item></tags_o>" +
+        "</page>";
+
+    @Param({ "title_s", "header_o/item/component/title_s", "tags_o/item[2]/value_smv" })
+    public String xpathQuery;
+
+    private Element root;
+
+    @Setup
+    public void setUp() throws Exception {
+        root = DocumentHelper.parseText(XML).getRootElement();
+    }
+
+    @Benchmark
+    public Object xmlUtils() {
+        return XmlUtils.selectObject(root, xpathQuery);
+    }
+
+    @Benchmark
+    public Object xpathUtils() {
+        return XPathUtils.selectObject(root, xpathQuery);
+    }
+
+    public static void main(String... args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(XPathUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
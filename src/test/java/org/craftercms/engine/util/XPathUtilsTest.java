@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link XPathUtils}.
+ *
+ * @author joseross
+ */
+public class XPathUtilsTest {
+
+    private static final String XML =
+        "<page>" +
+        "<title_s>Home</title_s>" +
+        "<tags_o><item><value_smv>a</value_smv></item><item><value_smv>b</value_smv></item></tags_o>" +
+        "<ns:meta xmlns:ns=\"http://example.com/ns\">meta</ns:meta>" +
+        "</page>";
+
+    private Document document;
+    private Element root;
+
+    @Before
+    public void setUp() throws Exception {
+        XPathUtils.clearCache();
+
+        document = DocumentHelper.parseText(XML);
+        root = document.getRootElement();
+    }
+
+    @Test
+    public void testSimpleElementName() throws Exception {
+        assertEquals("Home", XPathUtils.selectSingleNodeValue(root, "title_s"));
+        assertEquals(Collections.singletonList("Home"), XPathUtils.selectNodeValues(root, "title_s"));
+        assertSame(root.element("title_s"), XPathUtils.selectObject(root, "title_s"));
+        assertNull(XPathUtils.selectObject(root, "missing_s"));
+        assertNull(XPathUtils.selectSingleNodeValue(root, "missing_s"));
+        assertTrue(XPathUtils.selectNodeValues(root, "missing_s").isEmpty());
+    }
+
+    @Test
+    public void testSimpleElementNameWithMultipleMatches() throws Exception {
+        Element tags = root.element("tags_o");
+
+        Object result = XPathUtils.selectObject(tags, "item");
+
+        assertTrue(result instanceof List);
+        assertEquals(2, ((List<?>) result).size());
+        assertEquals(tags.selectObject("item"), result);
+    }
+
+    @Test
+    public void testSimpleElementNameOnDocument() throws Exception {
+        assertSame(root, XPathUtils.selectObject(document, "page"));
+    }
+
+    @Test
+    public void testPathExpression() throws Exception {
+        assertEquals(Arrays.asList("a", "b"), XPathUtils.selectNodeValues(root, "tags_o/item/value_smv"));
+        assertEquals("b", XPathUtils.selectSingleNodeValue(root, "tags_o/item[2]/value_smv"));
+        assertEquals("Home", XPathUtils.selectSingleNodeValue(document, "/page/title_s"));
+    }
+
+    @Test
+    public void testNamespacedExpression() throws Exception {
+        assertEquals("meta", XPathUtils.selectSingleNodeValue(root, "ns:meta"));
+        assertEquals("meta", XPathUtils.selectSingleNodeValue(root, "x:meta",
+                                                              Collections.singletonMap("x", "http://example.com/ns")));
+        // Unprefixed names only match elements with no namespace
+        assertNull(XPathUtils.selectObject(root, "meta"));
+    }
+
+    @Test
+    public void testExpressionsAreCached() throws Exception {
+        XPathUtils.selectSingleNodeValue(root, "title_s");
+        XPathUtils.selectSingleNodeValue(root, "title_s");
+        XPathUtils.selectNodeValues(root, "tags_o/item/value_smv");
+        // Not cached since it contains a prefix
+        XPathUtils.selectSingleNodeValue(root, "ns:meta");
+
+        assertEquals(2, XPathUtils.getCachedExpressionCount());
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link RateLimiter}.
+ *
+ * @author joseross
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void testOperationsAreSpacedAcrossThreads() throws Exception {
+        List<Long> waits = Collections.synchronizedList(new ArrayList<>());
+
+        // Use a clock that doesn't move, so the waits only depend on the slots reserved by the threads
+        RateLimiter rateLimiter = new RateLimiter(50) {
+
+            @Override
+            protected long nanoTime() {
+                return 0;
+            }
+
+            @Override
+            protected void sleep(long nanos) {
+                waits.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            }
+
+        };
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 5; j++) {
+                    rateLimiter.acquire();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 20 operations at 50 per second: the first one is immediate and the others are 20ms apart
+        List<Long> expectedWaits = new ArrayList<>();
+        for (long wait = 20; wait < 400; wait += 20) {
+            expectedWaits.add(wait);
+        }
+
+        Collections.sort(waits);
+
+        assertEquals(expectedWaits, waits);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPermitsMustBePositive() {
+        new RateLimiter(0);
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SerialExecutorService}.
+ *
+ * @author joseross
+ */
+public class SerialExecutorServiceTest {
+
+    private ExecutorService sharedExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        sharedExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sharedExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testTasksAreExecutedInOrder() throws Exception {
+        SerialExecutorService executor = new SerialExecutorService(sharedExecutor);
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            int task = i;
+            executor.execute(() -> executed.add(task));
+            expected.add(i);
+        }
+
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(expected, executed);
+    }
+
+    @Test
+    public void testShutdownNowReturnsPendingTasks() throws Exception {
+        SerialExecutorService executor = new SerialExecutorService(sharedExecutor);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        executor.execute(() -> {});
+        executor.execute(() -> {});
+
+        started.await();
+
+        assertEquals(2, executor.shutdownNow().size());
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdownNowDoesNotLeakInterruptToSharedThread() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interruptedAfterTask = new AtomicBoolean(true);
+
+        // Check the thread once it's given back by the executor, like a shared pool would reuse it
+        SerialExecutorService executor = new SerialExecutorService(command -> new Thread(() -> {
+            command.run();
+
+            interruptedAfterTask.set(Thread.currentThread().isInterrupted());
+            finished.countDown();
+        }).start());
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                // Well behaved tasks restore the interrupt
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        started.await();
+        executor.shutdownNow();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertFalse(interruptedAfterTask.get());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testTasksAreRejectedAfterShutdown() throws Exception {
+        SerialExecutorService executor = new SerialExecutorService(sharedExecutor);
+        executor.shutdown();
+        executor.execute(() -> {});
+    }
+
+}
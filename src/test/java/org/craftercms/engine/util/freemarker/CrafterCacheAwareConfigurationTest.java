@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.freemarker;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.freemarker.CrafterFreeMarkerTemplateLoader;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link CrafterCacheAwareConfiguration}.
+ *
+ * @author joseross
+ */
+public class CrafterCacheAwareConfigurationTest {
+
+    private static final String TEMPLATE_NAME = "page.ftl";
+    private static final String TEMPLATE_PATH = "/templates/web/page.ftl";
+
+    private Map<List<Object>, Object> cache;
+    private ContentStoreService storeService;
+    private Context currentContext;
+    private Context newContext;
+    private SiteContext siteContext;
+    private CrafterCacheAwareConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new HashMap<>();
+        currentContext = mock(Context.class);
+        newContext = mock(Context.class);
+
+        // Both versions have the same last modified date, so Freemarker can't tell them apart
+        Content oldContent = createContent("old");
+        Content newContent = createContent("new");
+
+        storeService = mock(ContentStoreService.class);
+        when(storeService.findContent(currentContext, TEMPLATE_PATH)).thenReturn(oldContent);
+        when(storeService.findContent(newContext, TEMPLATE_PATH)).thenReturn(newContent);
+
+        siteContext = new SiteContext();
+        siteContext.setSiteName("test");
+        siteContext.setContext(currentContext);
+        siteContext.setCacheTemplate(createCacheTemplate());
+        siteContext.setTemplatesPath("/templates/web");
+        siteContext.setAllowedTemplatePaths(new String[0]);
+
+        CrafterFreeMarkerTemplateLoader templateLoader = new CrafterFreeMarkerTemplateLoader();
+        templateLoader.setContentStoreService(storeService);
+        templateLoader.setGlobalAllowedPaths(new String[0]);
+
+        configuration = new CrafterCacheAwareConfiguration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS, true);
+        configuration.setTemplateLoader(templateLoader);
+        configuration.setLocalizedLookup(false);
+
+        SiteContext.setCurrent(siteContext);
+    }
+
+    @After
+    public void tearDown() {
+        SiteContext.clear();
+    }
+
+    @Test
+    public void testTemplateChangedByDeploymentIsFreshAfterSwitch() throws Exception {
+        assertEquals("old", render());
+
+        // Warm up renders see the new version, without affecting the current one
+        siteContext.overrideContext(newContext);
+        try {
+            assertEquals("new", render());
+        } finally {
+            siteContext.clearContextOverride();
+        }
+
+        assertEquals("old", render());
+
+        // Switch the cache versions, like the site cache warmer does
+        siteContext.setContext(newContext);
+        configuration.clearTemplateCache();
+
+        assertEquals("new", render());
+
+        // The template compiled during the warm up is served from the new version
+        verify(storeService, times(1)).findContent(newContext, TEMPLATE_PATH);
+    }
+
+    private String render() throws Exception {
+        Template template = configuration.getTemplate(TEMPLATE_NAME);
+        StringWriter out = new StringWriter();
+
+        template.process(Collections.emptyMap(), out);
+
+        return out.toString();
+    }
+
+    private Content createContent(String source) throws Exception {
+        Content content = mock(Content.class);
+        when(content.getLastModified()).thenReturn(1000L);
+        when(content.getInputStream()).then(
+            invocation -> new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+
+        return content;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheTemplate createCacheTemplate() {
+        CacheTemplate cacheTemplate = mock(CacheTemplate.class);
+        when(cacheTemplate.getObject(any(Context.class), any(Callback.class), anyVararg())).then(invocation -> {
+            Object[] args = invocation.getArguments();
+            List<Object> key = Arrays.asList(args[0], Arrays.asList(Arrays.copyOfRange(args, 2, args.length)));
+
+            Object item = cache.get(key);
+            if (item == null) {
+                item = ((Callback<?>) args[1]).execute();
+                cache.put(key, item);
+            }
+
+            return item;
+        });
+
+        return cacheTemplate;
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.util.GroovyScriptEngine;
+import groovy.util.ResourceException;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link ScriptSources}.
+ *
+ * @author joseross
+ */
+public class ScriptSourcesTest {
+
+    private static final String SCRIPT_PATH = "/scripts/rest/test.get.groovy";
+    private static final String CLASS_PATH = "/scripts/classes/org/test/Greeter.groovy";
+
+    @Test
+    public void testFingerprintDependsOnContent() {
+        ScriptSources sources = new ScriptSources(createSources("Hello"));
+
+        assertEquals(sources.getFingerprint(), new ScriptSources(createSources("Hello")).getFingerprint());
+        assertNotEquals(sources.getFingerprint(), new ScriptSources(createSources("Bye")).getFingerprint());
+    }
+
+    @Test
+    public void testScriptsAreCompiledFromSources() throws Exception {
+        ScriptSources sources = new ScriptSources(createSources("Hello"));
+        GroovyClassLoader classLoader = new GroovyClassLoader(getClass().getClassLoader());
+        classLoader.setResourceLoader(sources.getGroovyResourceLoader("/scripts/classes"));
+        GroovyScriptEngine scriptEngine = new GroovyScriptEngine(sources, classLoader);
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("name", "site");
+
+        Object result = InvokerHelper.createScript(scriptEngine.loadScriptByName(SCRIPT_PATH),
+                                                   new Binding(variables)).run();
+
+        assertEquals("Hello site", result.toString());
+    }
+
+    @Test
+    public void testMissingScriptIsNotFound() {
+        ScriptSources sources = new ScriptSources(createSources("Hello"));
+
+        try {
+            sources.getResourceConnection("/scripts/rest/missing.get.groovy");
+            fail("ResourceException expected");
+        } catch (ResourceException e) {
+            assertTrue(e.getCause() instanceof FileNotFoundException);
+        }
+    }
+
+    private Map<String, byte[]> createSources(String greeting) {
+        Map<String, byte[]> sources = new HashMap<>();
+        sources.put(SCRIPT_PATH, "new org.test.Greeter().greet(name)".getBytes(StandardCharsets.UTF_8));
+        sources.put(CLASS_PATH, ("package org.test\n" +
+                                 "class Greeter {\n" +
+                                 "    def greet(name) { \"" + greeting + " ${name}\" }\n" +
+                                 "}").getBytes(StandardCharsets.UTF_8));
+
+        return sources;
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.groovy;
+
+import org.craftercms.commons.lang.Callback;
+import org.craftercms.core.exception.PathNotFoundException;
+import org.craftercms.core.service.CachingOptions;
+import org.craftercms.core.service.Content;
+import org.craftercms.core.service.ContentStoreService;
+import org.craftercms.core.service.Context;
+import org.craftercms.core.service.Item;
+import org.craftercms.core.service.ItemFilter;
+import org.craftercms.core.service.ItemProcessor;
+import org.craftercms.core.util.cache.CacheTemplate;
+import org.craftercms.engine.scripting.impl.GroovyScriptFactory;
+import org.craftercms.engine.service.context.SiteContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link SharedGroovyClasses}.
+ *
+ * @author joseross
+ */
+public class SharedGroovyClassesTest {
+
+    private static final String SCRIPT_PATH = "/scripts/rest/test.get.groovy";
+    private static final String CLASS_PATH = "/scripts/classes/org/test/Greeter.groovy";
+
+    private SharedGroovyClasses sharedClasses;
+    private Map<String, String> filesA;
+    private Map<String, String> filesB;
+    private Map<List<Object>, Object> cacheB;
+    private SiteContext siteA;
+    private SiteContext siteB;
+    private URLClassLoader classLoaderA;
+    private URLClassLoader classLoaderB;
+
+    @Before
+    public void setUp() throws Exception {
+        sharedClasses = new SharedGroovyClasses();
+        sharedClasses.setEnabled(true);
+        sharedClasses.setScriptsFolder("/scripts");
+        sharedClasses.setGroovyClassesPath("/scripts/classes");
+        sharedClasses.setEnableScriptSandbox(false);
+
+        filesA = createFiles("Hello");
+        filesB = createFiles("Hello");
+        cacheB = new HashMap<>();
+        siteA = createSiteContext("siteA", filesA, new HashMap<>());
+        siteB = createSiteContext("siteB", filesB, cacheB);
+
+        classLoaderA = sharedClasses.getClassLoader(siteA);
+        classLoaderB = sharedClasses.getClassLoader(siteB);
+        siteA.setClassLoader(classLoaderA);
+        siteB.setClassLoader(classLoaderB);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SiteContext.clear();
+        classLoaderA.close();
+        classLoaderB.close();
+    }
+
+    @Test
+    public void testSitesWithSameScriptsShareClassSpace() throws Exception {
+        SharedGroovyClasses.ClassSpace classSpace = getClassSpace(classLoaderA);
+
+        assertSame(classSpace, getClassSpace(classLoaderB));
+        assertEquals(1, sharedClasses.getClassSpaceCount());
+        assertTrue(classSpace.isShared(siteA, SCRIPT_PATH));
+        assertTrue(classSpace.isShared(siteB, SCRIPT_PATH));
+
+        assertEquals("Hello siteA", execute(siteA, classLoaderA));
+        assertEquals("Hello siteB", execute(siteB, classLoaderB));
+    }
+
+    @Test
+    public void testDivergedSiteDoesNotUseSharedClasses() throws Exception {
+        SharedGroovyClasses.ClassSpace classSpace = getClassSpace(classLoaderA);
+
+        // Deploy a change of a class to site B and clear its cache
+        filesB.putAll(createFiles("Bye"));
+        cacheB.clear();
+
+        assertTrue(classSpace.isShared(siteA, SCRIPT_PATH));
+        assertFalse(classSpace.isShared(siteB, SCRIPT_PATH));
+
+        assertEquals("Hello siteA", execute(siteA, classLoaderA));
+        assertEquals("Bye siteB", execute(siteB, classLoaderB));
+    }
+
+    @Test
+    public void testScriptsWithMutableStaticFieldsAreNotShared() throws Exception {
+        Map<String, String> files = createFiles("Hello");
+        files.put(CLASS_PATH, "package org.test\n" +
+                              "class Greeter {\n" +
+                              "    static final String PREFIX = 'Hello'\n" +
+                              "    static int count = 0\n" +
+                              "    def greet(name) { count++; \"${PREFIX} ${name}\" }\n" +
+                              "}");
+
+        assertNull(sharedClasses.getClassLoader(createSiteContext("siteC", files, new HashMap<>())));
+        assertEquals(1, sharedClasses.getClassSpaceCount());
+    }
+
+    @Test
+    public void testFingerprintIsCalculatedByWarmUp() throws Exception {
+        SharedGroovyClasses.ClassSpace classSpace = getClassSpace(classLoaderB);
+        Context newContext = mock(Context.class);
+
+        SiteContext.setCurrent(siteB);
+        sharedClasses.warmUpCache(newContext);
+
+        assertEquals(classSpace.getFingerprint(),
+                     cacheB.get(createKey(newContext, SharedGroovyClasses.SCRIPTS_FINGERPRINT_CACHE_KEY_ELEM)));
+
+        assertFalse(sharedClasses.warmUpPaths(newContext, Collections.singletonList(CLASS_PATH)));
+        assertTrue(sharedClasses.warmUpPaths(newContext, Collections.singletonList("/site/website/index.xml")));
+    }
+
+    private Object execute(SiteContext siteContext, URLClassLoader classLoader) {
+        // Create the script factory like the SiteContextFactory does
+        GroovyScriptFactory scriptFactory = new GroovyScriptFactory(
+            siteContext, new ContentStoreResourceConnector(siteContext),
+            sharedClasses.createIsolatedClassLoader(siteContext), Collections.emptyMap(), false,
+            getClassSpace(classLoader));
+
+        return scriptFactory.getScript(SCRIPT_PATH)
+                            .execute(Collections.singletonMap("name", siteContext.getSiteName()))
+                            .toString();
+    }
+
+    private SharedGroovyClasses.ClassSpace getClassSpace(URLClassLoader classLoader) {
+        return ((SharedGroovyClasses.SiteClassLoader) classLoader).getClassSpace();
+    }
+
+    private Map<String, String> createFiles(String greeting) {
+        Map<String, String> files = new HashMap<>();
+        files.put(SCRIPT_PATH, "new org.test.Greeter().greet(name)");
+        files.put(CLASS_PATH, "package org.test\n" +
+                              "class Greeter {\n" +
+                              "    def greet(name) { \"" + greeting + " ${name}\" }\n" +
+                              "}");
+
+        return files;
+    }
+
+    private SiteContext createSiteContext(String siteName, Map<String, String> files,
+                                          Map<List<Object>, Object> cache) throws Exception {
+        SiteContext siteContext = new SiteContext();
+        siteContext.setSiteName(siteName);
+        siteContext.setContext(mock(Context.class));
+        siteContext.setStoreService(createStoreService(files));
+        siteContext.setCacheTemplate(createCacheTemplate(cache));
+
+        return siteContext;
+    }
+
+    private ContentStoreService createStoreService(Map<String, String> files) throws Exception {
+        ContentStoreService storeService = mock(ContentStoreService.class);
+
+        when(storeService.exists(any(Context.class), anyString())).then(
+            invocation -> files.containsKey((String) invocation.getArguments()[1]));
+        when(storeService.getContent(any(Context.class), anyString())).then(invocation -> {
+            String path = (String) invocation.getArguments()[1];
+            if (!files.containsKey(path)) {
+                throw new PathNotFoundException();
+            }
+
+            return createContent(files.get(path));
+        });
+        when(storeService.findChildren(any(Context.class), any(CachingOptions.class), anyString(),
+                                       any(ItemFilter.class), any(ItemProcessor.class))).then(invocation -> {
+            String folder = (String) invocation.getArguments()[2];
+            Map<String, Item> children = new LinkedHashMap<>();
+
+            for (String path : files.keySet()) {
+                if (path.startsWith(folder + "/")) {
+                    String name = path.substring(folder.length() + 1).split("/")[0];
+                    Item child = new Item();
+                    child.setName(name);
+                    child.setUrl(folder + "/" + name);
+                    child.setFolder(!path.equals(child.getUrl()));
+
+                    children.putIfAbsent(name, child);
+                }
+            }
+
+            return new ArrayList<>(children.values());
+        });
+
+        return storeService;
+    }
+
+    private Content createContent(String source) {
+        byte[] data = source.getBytes(StandardCharsets.UTF_8);
+
+        return new Content() {
+
+            @Override
+            public long getLastModified() {
+                return 1000L;
+            }
+
+            @Override
+            public long getLength() {
+                return data.length;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(data);
+            }
+
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheTemplate createCacheTemplate(Map<List<Object>, Object> cache) {
+        CacheTemplate cacheTemplate = mock(CacheTemplate.class);
+        when(cacheTemplate.getObject(any(Context.class), any(Callback.class), anyVararg())).then(invocation -> {
+            Object[] args = invocation.getArguments();
+            List<Object> key = createKey((Context) args[0], Arrays.copyOfRange(args, 2, args.length));
+
+            Object item = cache.get(key);
+            if (item == null) {
+                item = ((Callback<?>) args[1]).execute();
+                cache.put(key, item);
+            }
+
+            return item;
+        });
+
+        return cacheTemplate;
+    }
+
+    private List<Object> createKey(Context context, Object... keyElements) {
+        return Arrays.asList(context, Arrays.asList(keyElements));
+    }
+
+}
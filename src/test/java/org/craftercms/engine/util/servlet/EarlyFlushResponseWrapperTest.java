@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.servlet;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link EarlyFlushResponseWrapper}.
+ *
+ * @author joseross
+ */
+public class EarlyFlushResponseWrapperTest {
+
+    @Test
+    public void testPageWithoutFlushKeepsETag() throws Exception {
+        MockHttpServletResponse response = render(false);
+
+        assertEquals("<head></head><body></body>", response.getContentAsString());
+        assertNotNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void testFlushedPageIsStreamed() throws Exception {
+        MockHttpServletResponse response = render(true);
+
+        assertEquals("<head></head><body></body>", response.getContentAsString());
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    private MockHttpServletResponse render(boolean flush) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new ShallowEtagHeaderFilter().doFilter(request, response, (req, res) -> {
+            EarlyFlushResponseWrapper wrapper = new EarlyFlushResponseWrapper((HttpServletRequest) req,
+                                                                              (HttpServletResponse) res);
+            PrintWriter writer = wrapper.getWriter();
+
+            writer.write("<head></head>");
+            if (flush) {
+                writer.flush();
+
+                // The head reaches the client before the rest of the page is rendered
+                assertTrue(wrapper.isFlushed());
+                assertTrue(response.isCommitted());
+                assertEquals("<head></head>", response.getContentAsString());
+            } else {
+                assertFalse(wrapper.isFlushed());
+            }
+
+            writer.write("<body></body>");
+            wrapper.finish();
+        });
+
+        return response;
+    }
+
+}
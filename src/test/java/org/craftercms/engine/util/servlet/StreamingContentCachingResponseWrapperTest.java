@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2007-2020 Crafter Software Corporation. All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.craftercms.engine.util.servlet;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link StreamingContentCachingResponseWrapper}.
+ *
+ * @author joseross
+ */
+public class StreamingContentCachingResponseWrapperTest {
+
+    @Test
+    public void testContentIsStreamedAndCopied() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        StreamingContentCachingResponseWrapper wrapper = new StreamingContentCachingResponseWrapper(response);
+        PrintWriter writer = wrapper.getWriter();
+
+        writer.write("<head></head>");
+        wrapper.flushBuffer();
+
+        // The head reaches the client before the rest of the page is rendered
+        assertTrue(response.isCommitted());
+        assertEquals("<head></head>", response.getContentAsString());
+
+        writer.write("<body>ñ</body>");
+        wrapper.flushBuffer();
+
+        assertEquals("<head></head><body>ñ</body>", response.getContentAsString());
+        assertEquals("<head></head><body>ñ</body>",
+                     new String(wrapper.getContentAsByteArray(), StandardCharsets.UTF_8));
+    }
+
+}